@@ -43,10 +43,13 @@
 import de.bluecolored.bluemap.core.resources.pack.datapack.DataPack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.storage.Storage;
+import de.bluecolored.bluemap.core.util.DeletingPathVisitor;
 import de.bluecolored.bluemap.core.util.FileHelper;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.World;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.chunk.ChunkDiskCache;
+import de.bluecolored.bluemap.core.world.mca.region.LinearRegion;
 import org.jetbrains.annotations.Nullable;
 import org.spongepowered.configurate.ConfigurateException;
 import org.spongepowered.configurate.ConfigurationNode;
@@ -61,6 +64,7 @@
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -78,6 +82,8 @@ public class BlueMapService implements Closeable {
     private final Map<String, BmMap> maps;
     private final Map<String, Storage> storages;
 
+    private boolean chunkDiskCacheCleaned = false;
+
 
     public BlueMapService(BlueMapConfiguration configuration, @Nullable ResourcePack preloadedResourcePack) {
         this(configuration);
@@ -92,6 +98,9 @@ public BlueMapService(BlueMapConfiguration configuration) {
         this.maps = new ConcurrentHashMap<>();
         this.storages = new ConcurrentHashMap<>();
 
+        // the cache of decompressed linear regions is shared by all worlds, so it is only sized once here
+        LinearRegion.setDecompressedCacheSize(Math.max(config.getCoreConfig().getLinearRegionCacheSize(), 1) * 1024L * 1024L);
+
         StateDumper.global().register(this);
     }
 
@@ -224,7 +233,15 @@ private synchronized void loadMap(String id, MapConfig mapConfig) throws Configu
         if (world == null) {
             try {
                 Logger.global.logDebug("Loading world " + worldId + " ...");
-                world = MCAWorld.load(worldFolder, dimension, loadDataPack(worldFolder));
+                long chunkCacheSize = config.getCoreConfig().resolveChunkCacheSize();
+                MCAWorld mcaWorld = MCAWorld.load(worldFolder, dimension, loadDataPack(worldFolder), chunkCacheSize);
+                cleanupChunkDiskCache();
+                if (config.getCoreConfig().isChunkDiskCache()) {
+                    mcaWorld.enableChunkDiskCache(getChunkDiskCacheFolder()
+                            .resolve(worldId.replaceAll("[^\\w.\\-]", "_")),
+                            Math.max(config.getCoreConfig().getChunkDiskCacheSize(), 1) * 1024L * 1024L);
+                }
+                world = mcaWorld;
                 worlds.put(worldId, world);
             } catch (IOException ex) {
                 throw new ConfigurationException(
@@ -275,6 +292,31 @@ private synchronized void loadMap(String id, MapConfig mapConfig) throws Configu
         }
     }
 
+    /**
+     * Deletes the whole chunk disk-cache if it is disabled, or otherwise the caches of worlds that have
+     * not been used for a long time (e.g. because they have been removed). This only happens once.
+     */
+    private synchronized void cleanupChunkDiskCache() {
+        if (chunkDiskCacheCleaned) return;
+        chunkDiskCacheCleaned = true;
+
+        Path cacheFolder = getChunkDiskCacheFolder();
+        try {
+            if (!config.getCoreConfig().isChunkDiskCache()) {
+                if (Files.exists(cacheFolder))
+                    Files.walkFileTree(cacheFolder, DeletingPathVisitor.INSTANCE);
+            } else {
+                ChunkDiskCache.deleteStaleCaches(cacheFolder, TimeUnit.DAYS.toMillis(30));
+            }
+        } catch (IOException ex) {
+            Logger.global.logWarning("Failed to clean up the chunk disk-cache '" + cacheFolder + "': " + ex);
+        }
+    }
+
+    private Path getChunkDiskCacheFolder() {
+        return config.getCoreConfig().getData().resolve("chunk-cache");
+    }
+
     public synchronized Storage getOrLoadStorage(String storageId) throws ConfigurationException, InterruptedException {
         Storage storage = storages.get(storageId);
 
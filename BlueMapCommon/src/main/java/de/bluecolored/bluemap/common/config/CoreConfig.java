@@ -24,6 +24,7 @@
  */
 package de.bluecolored.bluemap.common.config;
 
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import org.spongepowered.configurate.objectmapping.ConfigSerializable;
 
 import java.nio.file.Path;
@@ -42,6 +43,14 @@ public class CoreConfig {
 
     private boolean scanForModResources = true;
 
+    private int chunkCacheSize = 0;
+
+    private int linearRegionCacheSize = 256;
+
+    private boolean chunkDiskCache = false;
+
+    private int chunkDiskCacheSize = 4096;
+
     private LogConfig log = new LogConfig();
 
     public boolean isAcceptDownload() {
@@ -69,6 +78,42 @@ public boolean isScanForModResources() {
         return scanForModResources;
     }
 
+    /**
+     * The maximum memory (in MiB) each world is allowed to use for caching decoded chunks.<br>
+     * Zero or a negative value means that the size is chosen automatically.
+     */
+    public int getChunkCacheSize() {
+        return chunkCacheSize;
+    }
+
+    /**
+     * The maximum memory (in bytes) each world is allowed to use for caching decoded chunks.<br>
+     * If not configured, this is enough to hold the chunks of the regions that the render-threads work on at the
+     * same time (at most two, while one of them is finishing), limited by the maximum heap-size.
+     */
+    public long resolveChunkCacheSize() {
+        if (chunkCacheSize > 0) return chunkCacheSize * 1024L * 1024L;
+        return MCAWorld.estimateChunkCacheSize(Math.min(resolveRenderThreadCount(), 2));
+    }
+
+    /**
+     * The maximum memory (in MiB) that decompressed linear region-files are allowed to use, shared by all worlds.
+     */
+    public int getLinearRegionCacheSize() {
+        return linearRegionCacheSize;
+    }
+
+    public boolean isChunkDiskCache() {
+        return chunkDiskCache;
+    }
+
+    /**
+     * The maximum disk-space (in MiB) each world is allowed to use for its chunk disk-cache.
+     */
+    public int getChunkDiskCacheSize() {
+        return chunkDiskCacheSize;
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -76,6 +76,12 @@ public class MapConfig implements MapSettings {
 
     private boolean saveHiresLayer = true;
 
+    private boolean lowresOnly = false;
+
+    private boolean mergeFaces = false;
+
+    private boolean chunkContentHashing = false;
+
     private String storage = "file";
 
     private boolean ignoreMissingLightData = false;
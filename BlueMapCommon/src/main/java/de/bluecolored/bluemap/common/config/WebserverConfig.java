@@ -41,6 +41,10 @@ public class WebserverConfig {
     private String ip = "0.0.0.0";
     private int port = 8100;
 
+    private int requestHandlerThreadCount = 0;
+    private int requestQueueSize = 1024;
+    private boolean virtualThreads = true;
+
     private LogConfig log = new LogConfig();
 
     public boolean isEnabled() {
@@ -69,6 +73,23 @@ public int getPort() {
         return port;
     }
 
+    public int getRequestHandlerThreadCount() {
+        return requestHandlerThreadCount;
+    }
+
+    public int resolveRequestHandlerThreadCount() {
+        if (requestHandlerThreadCount > 0) return requestHandlerThreadCount;
+        return Math.max(Runtime.getRuntime().availableProcessors() * 2 + requestHandlerThreadCount, 1);
+    }
+
+    public int getRequestQueueSize() {
+        return requestQueueSize;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
     public LogConfig getLog() {
         return log;
     }
@@ -40,6 +40,7 @@
 import de.bluecolored.bluemap.common.serverinterface.ServerEventListener;
 import de.bluecolored.bluemap.common.serverinterface.ServerWorld;
 import de.bluecolored.bluemap.common.web.*;
+import de.bluecolored.bluemap.common.web.http.HttpRequestExecutor;
 import de.bluecolored.bluemap.common.web.http.HttpServer;
 import de.bluecolored.bluemap.common.metrics.Metrics;
 import de.bluecolored.bluemap.core.logger.Logger;
@@ -230,11 +231,18 @@ private void load(@Nullable ResourcePack preloadedResourcePack) throws IOExcepti
                     webLogger = Logger.combine(webLoggerList);
 
                     try {
-                        webServer = new HttpServer(new LoggingRequestHandler(
-                                webRequestHandler,
-                                webserverConfig.getLog().getFormat(),
-                                webLogger
-                        ));
+                        webServer = new HttpServer(
+                                new LoggingRequestHandler(
+                                        webRequestHandler,
+                                        webserverConfig.getLog().getFormat(),
+                                        webLogger
+                                ),
+                                new HttpRequestExecutor(
+                                        webserverConfig.resolveRequestHandlerThreadCount(),
+                                        webserverConfig.getRequestQueueSize(),
+                                        webserverConfig.isVirtualThreads()
+                                )
+                        );
                         webServer.bind(new InetSocketAddress(
                                 webserverConfig.resolveIp(),
                                 webserverConfig.getPort()
@@ -49,15 +49,15 @@ public MapState getMapState(BmMap map) {
         return maps.computeIfAbsent(map.getId(), k -> new MapState());
     }
 
-    public void addHiddenPlayer(UUID player) {
+    public synchronized void addHiddenPlayer(UUID player) {
         hiddenPlayers.add(player);
     }
 
-    public void removeHiddenPlayer(UUID player) {
+    public synchronized void removeHiddenPlayer(UUID player) {
         hiddenPlayers.remove(player);
     }
 
-    public boolean isPlayerHidden(UUID player) {
+    public synchronized boolean isPlayerHidden(UUID player) {
         return hiddenPlayers.contains(player);
     }
 
@@ -28,6 +28,7 @@
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3d;
 import com.flowpowered.math.vector.Vector3i;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.ArgumentType;
@@ -61,6 +62,7 @@
 import de.bluecolored.bluemap.core.world.World;
 import de.bluecolored.bluemap.core.world.block.Block;
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -951,6 +953,14 @@ public int worldsCommand(CommandContext<S> context) {
         source.sendMessage(Text.of(TextColor.BLUE, "Worlds loaded by BlueMap:"));
         for (var entry : plugin.getBlueMap().getWorlds().entrySet()) {
             source.sendMessage(Text.of(TextColor.GRAY, " - ", TextColor.WHITE, entry.getKey()));
+
+            if (entry.getValue() instanceof MCAWorld mcaWorld) {
+                CacheStats stats = mcaWorld.getChunkCacheStats();
+                source.sendMessage(Text.of(TextColor.GRAY, "\u00A0\u00A0\u00A0Chunk-Cache: ",
+                        TextColor.DARK_GRAY, (mcaWorld.getChunkCacheWeight() >> 20) + " / " + (mcaWorld.getChunkCacheSize() >> 20) + " MiB, " +
+                                String.format("%.1f", stats.hitRate() * 100) + "% hits (" + stats.hitCount() + " hits, " +
+                                stats.missCount() + " misses, " + stats.evictionCount() + " evictions)"));
+            }
         }
 
         return 1;
@@ -25,6 +25,7 @@
 package de.bluecolored.bluemap.common.rendermanager;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
 public class CombinedRenderTask<T extends RenderTask> implements RenderTask {
 
@@ -56,6 +57,15 @@ public void doWork() throws Exception {
         task.doWork();
     }
 
+    @Override
+    public void prepareAsync(Executor executor) {
+        int currentTask = this.currentTaskIndex;
+        int end = Math.min(currentTask + 1 + PREPARE_AHEAD_TASKS, this.tasks.size());
+        for (int i = currentTask; i < end; i++) {
+            this.tasks.get(i).prepareAsync(executor);
+        }
+    }
+
     @Override
     public synchronized boolean hasMoreWork() {
         return this.currentTaskIndex < this.tasks.size();
@@ -77,6 +87,31 @@ public void cancel() {
         for (T task : tasks) task.cancel();
     }
 
+    @Override
+    public boolean canOverlap(RenderTask other) {
+        for (T task : tasks) {
+            if (!task.canOverlap(other)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Optional<RenderTask> getRetryTask() {
+        List<RenderTask> retryTasks = new ArrayList<>();
+        for (T task : tasks) task.getRetryTask().ifPresent(retryTasks::add);
+
+        if (retryTasks.isEmpty()) return Optional.empty();
+        if (retryTasks.size() == 1) return Optional.of(retryTasks.get(0));
+        return Optional.of(new CombinedRenderTask<>(description, retryTasks));
+    }
+
+    @Override
+    public long getRetryDelay() {
+        long delay = 0;
+        for (T task : tasks) delay = Math.max(delay, task.getRetryDelay());
+        return delay;
+    }
+
     @Override
     public boolean contains(RenderTask task) {
         if (this.equals(task)) return true;
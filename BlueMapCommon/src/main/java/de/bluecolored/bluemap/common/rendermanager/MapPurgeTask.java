@@ -26,6 +26,8 @@
 
 import de.bluecolored.bluemap.common.debug.DebugDump;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.chunk.ChunkDiskCache;
 
 import java.util.Objects;
 
@@ -64,6 +66,13 @@ public void doWork() throws Exception {
         map.resetTextureGallery();
         map.getMapTileState().reset();
         map.getMapChunkState().reset();
+        map.getRegionIndex().reset();
+
+        // a purge starts over from scratch, so the cached chunks of the world are dropped as well
+        if (map.getWorld() instanceof MCAWorld mcaWorld) {
+            ChunkDiskCache chunkDiskCache = mcaWorld.getChunkDiskCache();
+            if (chunkDiskCache != null) chunkDiskCache.clear();
+        }
     }
 
     @Override
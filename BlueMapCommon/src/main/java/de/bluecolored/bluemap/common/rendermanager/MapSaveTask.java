@@ -55,6 +55,11 @@ public void cancel() {
         this.saved.set(true);
     }
 
+    @Override
+    public boolean canOverlap(RenderTask other) {
+        return true;
+    }
+
     @Override
     public String getDescription() {
         return "Save map '" + map.getId() + "'";
@@ -27,12 +27,14 @@
 import com.flowpowered.math.vector.Vector2i;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.renderstate.MapRegionIndex;
 import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
 import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
 import de.bluecolored.bluemap.core.map.renderstate.TileState;
 import de.bluecolored.bluemap.core.storage.GridStorage;
 import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
 import de.bluecolored.bluemap.core.util.Grid;
+import de.bluecolored.bluemap.core.world.RegionFileInfo;
 import de.bluecolored.bluemap.core.world.World;
 
 import java.io.IOException;
@@ -46,19 +48,19 @@ public class MapUpdateTask extends CombinedRenderTask<RenderTask> {
     private final Collection<Vector2i> regions;
 
     public MapUpdateTask(BmMap map) {
-        this(map, getRegions(map));
+        this(map, s -> false);
     }
 
     public MapUpdateTask(BmMap map, Predicate<TileState> force) {
-        this(map, getRegions(map), force);
+        this(map, getRegions(map, force), force);
     }
 
     public MapUpdateTask(BmMap map, Vector2i center, int radius) {
-        this(map, getRegions(map, center, radius));
+        this(map, center, radius, s -> false);
     }
 
     public MapUpdateTask(BmMap map, Vector2i center, int radius, Predicate<TileState> force) {
-        this(map, getRegions(map, center, radius), force);
+        this(map, getRegions(map, center, radius, force), force);
     }
 
     public MapUpdateTask(BmMap map, Collection<Vector2i> regions) {
@@ -101,11 +103,11 @@ private static Collection<RenderTask> createTasks(BmMap map, Collection<Vector2i
         return tasks;
     }
 
-    private static Collection<Vector2i> getRegions(BmMap map) {
-        return getRegions(map, null, -1);
+    private static Collection<Vector2i> getRegions(BmMap map, Predicate<TileState> force) {
+        return getRegions(map, null, -1, force);
     }
 
-    private static Collection<Vector2i> getRegions(BmMap map, Vector2i center, int radius) {
+    private static Collection<Vector2i> getRegions(BmMap map, Vector2i center, int radius, Predicate<TileState> force) {
         World world = map.getWorld();
         Grid regionGrid = world.getRegionGrid();
 
@@ -123,41 +125,52 @@ private static Collection<Vector2i> getRegions(BmMap map, Vector2i center, int r
             };
         }
 
+        // regions whose files did not change since they were last rendered can be skipped,
+        // unless tiles are forced to update or the result also depends on chunks of neighbouring regions
+        MapRegionIndex regionIndex = map.getRegionIndex();
+        boolean useRegionIndex =
+                TileState.REGISTRY.values().stream().noneMatch(force) &&
+                (map.getMapSettings().getMinInhabitedTime() <= 0 || map.getMapSettings().getMinInhabitedTimeRadius() <= 0);
+
         Set<Vector2i> regions = new HashSet<>();
+        Set<Vector2i> listedRegions = new HashSet<>();
+        int skippedRegions = 0;
 
         // update all regions in the world-files
-        world.listRegions().stream()
-                .filter(regionBoundsFilter)
-                .filter(regionRadiusFilter)
-                .forEach(regions::add);
+        for (Map.Entry<Vector2i, RegionFileInfo> regionFile : world.listRegionFiles().entrySet()) {
+            Vector2i region = regionFile.getKey();
+            if (!regionBoundsFilter.test(region) || !regionRadiusFilter.test(region)) continue;
+            listedRegions.add(region);
+
+            if (useRegionIndex && isUnchanged(world, regionIndex, region, regionFile.getValue())) {
+                skippedRegions++;
+                continue;
+            }
+
+            regions.add(region);
+        }
+
+        if (skippedRegions > 0)
+            Logger.global.logDebug("Skipping " + skippedRegions + " unchanged regions for map '" + map.getId() + "'");
 
         // also update regions that are present as map-tile-state files (they might have been rendered before but deleted now)
         // (a little hacky as we are operating on raw tile-state files -> maybe find a better way?)
         Grid tileGrid = map.getHiresModelManager().getTileGrid();
         Grid cellGrid = MapTileState.GRID.multiply(tileGrid);
         try (Stream<GridStorage.Cell> stream = map.getStorage().tileState().stream()) {
-            stream
-                    .filter(c -> {
-                        // filter out files that are fully UNKNOWN/NOT_GENERATED
-                        // this avoids unnecessarily converting UNKNOWN tiles into NOT_GENERATED tiles on force-updates
-                        try (CompressedInputStream in = c.read()) {
-                            if (in == null) return false;
-                            TileState[] states = TileInfoRegion.loadPalette(in.decompress());
-                            for (TileState state : states) {
-                                if (
-                                        state != TileState.UNKNOWN &&
-                                        state != TileState.NOT_GENERATED
-                                ) return true;
-                            }
-                            return false;
-                        } catch (IOException ignore) {
-                            return true;
-                        }
-                    })
-                    .map(c -> new Vector2i(c.getX(), c.getZ()))
-                    .flatMap(v -> cellGrid.getIntersecting(v, regionGrid).stream())
-                    .filter(regionRadiusFilter)
-                    .forEach(regions::add);
+            stream.forEach(c -> {
+                // only regions that are not in the world-files (anymore) are relevant here
+                List<Vector2i> missingRegions = cellGrid.getIntersecting(new Vector2i(c.getX(), c.getZ()), regionGrid).stream()
+                        .filter(r -> !listedRegions.contains(r))
+                        .filter(regionRadiusFilter)
+                        .toList();
+                if (missingRegions.isEmpty()) return;
+
+                // filter out files that are fully UNKNOWN/NOT_GENERATED
+                // this avoids unnecessarily converting UNKNOWN tiles into NOT_GENERATED tiles on force-updates
+                if (hasRenderedTiles(c))
+                    regions.addAll(missingRegions);
+            });
         } catch (IOException ex) {
             Logger.global.logError("Failed to load map tile state!", ex);
         }
@@ -165,4 +178,44 @@ private static Collection<Vector2i> getRegions(BmMap map, Vector2i center, int r
         return regions;
     }
 
+    private static boolean hasRenderedTiles(GridStorage.Cell cell) {
+        try (CompressedInputStream in = cell.read()) {
+            if (in == null) return false;
+            TileState[] states = TileInfoRegion.loadPalette(in.decompress());
+            for (TileState state : states) {
+                if (
+                        state != TileState.UNKNOWN &&
+                        state != TileState.NOT_GENERATED
+                ) return true;
+            }
+            return false;
+        } catch (IOException ignore) {
+            return true;
+        }
+    }
+
+    /**
+     * Checks if the region-file is still in the same state as when the region was last rendered.
+     * If only the modification-time of the file changed, the region-header is compared to make sure no chunks changed.
+     */
+    private static boolean isUnchanged(World world, MapRegionIndex regionIndex, Vector2i region, RegionFileInfo fileInfo) {
+        MapRegionIndex.Entry entry = regionIndex.get(region);
+        if (entry == null || !fileInfo.isKnown()) return false;
+        if (entry.matches(fileInfo)) return true;
+
+        if (entry.size() != fileInfo.size() || entry.headerChecksum() == 0) return false;
+
+        long headerChecksum;
+        try {
+            headerChecksum = world.getRegion(region.getX(), region.getY()).getHeaderChecksum();
+        } catch (IOException ex) {
+            return false;
+        }
+        if (headerChecksum != entry.headerChecksum()) return false;
+
+        // the file has only been touched, update the index so the header does not need to be read again next time
+        regionIndex.set(region, new MapRegionIndex.Entry(fileInfo, headerChecksum));
+        return true;
+    }
+
 }
@@ -25,9 +25,12 @@
 package de.bluecolored.bluemap.common.rendermanager;
 
 import de.bluecolored.bluemap.core.logger.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
@@ -42,12 +45,17 @@ public class RenderManager {
     private final AtomicInteger nextWorkerThreadIndex;
     private final Collection<WorkerThread> workerThreads;
     private final AtomicInteger busyCount;
+    private volatile ExecutorService prepareExecutor;
+    private Timer retryTimer;
 
     private ProgressTracker progressTracker;
     private volatile boolean newTask;
 
     private final LinkedList<RenderTask> renderTasks;
 
+    // the tasks that have been started by a worker, mapped to the amount of workers that are currently working on them
+    private final Map<RenderTask, Integer> startedTasks;
+
     public RenderManager() {
         this.id = nextRenderManagerIndex.getAndIncrement();
         this.nextWorkerThreadIndex = new AtomicInteger(0);
@@ -62,6 +70,7 @@ public RenderManager() {
         this.newTask = true;
 
         this.renderTasks = new LinkedList<>();
+        this.startedTasks = new IdentityHashMap<>();
     }
 
     public void start(int threadCount) throws IllegalStateException {
@@ -76,6 +85,13 @@ public void start(int threadCount) throws IllegalStateException {
             progressTracker = new ProgressTracker(5000, 12); // 5-sec steps over one minute
             this.newTask = true;
 
+            if (prepareExecutor != null) prepareExecutor.shutdown();
+            prepareExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "RenderManager-" + RenderManager.this.id + "-Prepare");
+                thread.setDaemon(true);
+                return thread;
+            });
+
             this.running = true;
 
             for (int i = 0; i < threadCount; i++) {
@@ -91,6 +107,12 @@ public void stop() {
             this.running = false;
             for (WorkerThread worker : workerThreads) worker.interrupt();
             if (progressTracker != null) progressTracker.cancel();
+            if (prepareExecutor != null) prepareExecutor.shutdown();
+        }
+
+        synchronized (this.renderTasks) {
+            if (retryTimer != null) retryTimer.cancel();
+            retryTimer = null;
         }
     }
 
@@ -159,11 +181,12 @@ public int scheduleRenderTasks(Collection<RenderTask> tasks) {
 
     public boolean scheduleRenderTaskNext(RenderTask task) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() <= 1) return scheduleRenderTask(task);
+            int nextIndex = countTasksInProgress();
+            if (renderTasks.size() <= nextIndex) return scheduleRenderTask(task);
             if (containsRenderTask(task)) return false;
 
             removeTasksThatAreContainedIn(task);
-            renderTasks.add(1, task);
+            renderTasks.add(countTasksInProgress(), task);
             renderTasks.notifyAll();
             return true;
         }
@@ -171,50 +194,45 @@ public boolean scheduleRenderTaskNext(RenderTask task) {
 
     public void reorderRenderTasks(Comparator<RenderTask> taskComparator) {
         synchronized (this.renderTasks) {
-            if (renderTasks.size() <= 2) return;
+            int inProgress = countTasksInProgress();
+            if (renderTasks.size() <= inProgress + 1) return;
 
-            RenderTask currentTask = renderTasks.removeFirst();
-            renderTasks.sort(taskComparator);
-            renderTasks.addFirst(currentTask);
+            renderTasks.subList(inProgress, renderTasks.size()).sort(taskComparator);
         }
     }
 
     public boolean removeRenderTask(RenderTask task) {
         synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return false;
+            Iterator<RenderTask> iterator = renderTasks.iterator();
+            while (iterator.hasNext()) {
+                RenderTask scheduledTask = iterator.next();
+                if (!scheduledTask.equals(task)) continue;
 
-            // cancel the task if it is currently processed
-            RenderTask first = renderTasks.getFirst();
-            if (first.equals(task)) {
-                first.cancel();
+                // cancel the task if it is currently processed, else remove it
+                if (isInProgress(scheduledTask)) scheduledTask.cancel();
+                else iterator.remove();
                 return true;
             }
 
-            // else remove it
-            return renderTasks.remove(task);
+            return false;
         }
     }
 
     public void removeRenderTasksIf(Predicate<RenderTask> removeCondition) {
         synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return;
+            Iterator<RenderTask> iterator = renderTasks.iterator();
+            while (iterator.hasNext()) {
+                RenderTask task = iterator.next();
+                if (!removeCondition.test(task)) continue;
 
-            RenderTask first = renderTasks.removeFirst();
-            if (removeCondition.test(first)) first.cancel();
-            renderTasks.removeIf(removeCondition);
-            renderTasks.addFirst(first);
+                if (isInProgress(task)) task.cancel();
+                else iterator.remove();
+            }
         }
     }
 
     public void removeAllRenderTasks() {
-        synchronized (this.renderTasks) {
-            if (this.renderTasks.isEmpty()) return;
-
-            RenderTask first = renderTasks.removeFirst();
-            first.cancel();
-            renderTasks.clear();
-            renderTasks.addFirst(first);
-        }
+        removeRenderTasksIf(task -> true);
     }
 
     public long estimateCurrentRenderTaskTimeRemaining() {
@@ -249,13 +267,10 @@ public int getScheduledRenderTaskCount() {
 
     public boolean containsRenderTask(RenderTask task) {
         synchronized (this.renderTasks) {
-            // checking all scheduled renderTasks except the first one, since that is already being processed
-            Iterator<RenderTask> iterator = renderTasks.iterator();
-            if (!iterator.hasNext()) return false;
-            iterator.next(); // skip first
-
-            while(iterator.hasNext()) {
-                if (iterator.next().contains(task)) return true;
+            // checking all scheduled renderTasks except the ones that are already being processed
+            for (RenderTask scheduledTask : renderTasks) {
+                if (isInProgress(scheduledTask)) continue;
+                if (scheduledTask.contains(task)) return true;
             }
 
             return false;
@@ -273,51 +288,67 @@ public long getLastTimeBusy() {
     private void removeTasksThatAreContainedIn(RenderTask containingTask) {
         synchronized (this.renderTasks) {
             if (renderTasks.size() < 2) return;
-            RenderTask first = renderTasks.removeFirst();
-            if (containingTask.contains(first)) first.cancel();
-            renderTasks.removeIf(containingTask::contains);
-            renderTasks.addFirst(first);
+            removeRenderTasksIf(containingTask::contains);
+        }
+    }
+
+    /**
+     * A task is in progress if it is the first task or any worker has already started working on it.
+     */
+    private boolean isInProgress(RenderTask task) {
+        return startedTasks.containsKey(task) || task == renderTasks.peekFirst();
+    }
+
+    private int countTasksInProgress() {
+        int count = 0;
+        for (RenderTask task : renderTasks) {
+            if (!isInProgress(task)) break;
+            count++;
         }
+        return count;
     }
 
     private void doWork() throws Exception {
         RenderTask task;
+        RenderTask[] prepareTasks;
 
         synchronized (this.renderTasks) {
             while (this.renderTasks.isEmpty())
                 this.renderTasks.wait(10000);
 
-            task = this.renderTasks.getFirst();
-            if (this.newTask) {
+            task = nextTask();
+
+            if (this.newTask && !this.renderTasks.isEmpty()) {
                 this.newTask = false;
-                this.progressTracker.resetAndStart(task::estimateProgress);
+                this.progressTracker.resetAndStart(this.renderTasks.getFirst()::estimateProgress);
             }
 
-            // the following is making sure every render-thread is done working on this task (no thread is "busy")
-            // before continuing working on the next RenderTask
-            if (!task.hasMoreWork()) {
-                if (busyCount.get() <= 0) {
-                    this.renderTasks.removeFirst();
-                    this.renderTasks.notifyAll();
-
-                    this.newTask = true;
-
-                    busyCount.set(0);
-                } else {
-                    this.renderTasks.wait(10000);
-                }
-
+            if (task == null) {
+                this.renderTasks.wait(10000);
                 return;
             }
 
+            this.startedTasks.merge(task, 1, Integer::sum);
             this.busyCount.incrementAndGet();
             this.lastTimeBusy = System.currentTimeMillis();
+
+            prepareTasks = this.renderTasks.stream()
+                    .limit(countTasksInProgress() + RenderTask.PREPARE_AHEAD_TASKS)
+                    .toArray(RenderTask[]::new);
+        }
+
+        // make sure the current and next few tasks are being prepared
+        ExecutorService prepareExecutor = this.prepareExecutor;
+        if (prepareExecutor != null) {
+            for (RenderTask prepareTask : prepareTasks)
+                prepareTask.prepareAsync(prepareExecutor);
         }
 
         try {
             task.doWork();
         } finally {
             synchronized (renderTasks) {
+                this.startedTasks.merge(task, -1, Integer::sum);
                 int busyCount = this.busyCount.decrementAndGet();
                 if (busyCount > 0) this.lastTimeBusy = System.currentTimeMillis();
                 this.renderTasks.notifyAll();
@@ -325,6 +356,70 @@ private void doWork() throws Exception {
         }
     }
 
+    /**
+     * Finds the next task that a worker should work on, and removes all tasks that are fully done on the way.<br>
+     * If the first tasks have no more work but are still being finished by other workers, an idle worker is allowed
+     * to continue with the following task, as long as it {@link RenderTask#canOverlap(RenderTask) can overlap} with
+     * all those tasks.
+     * A task is only removed once no worker is working on it anymore.
+     */
+    private @Nullable RenderTask nextTask() {
+        boolean isFirst = true;
+        List<RenderTask> finishingTasks = new ArrayList<>();
+
+        Iterator<RenderTask> iterator = renderTasks.iterator();
+        while (iterator.hasNext()) {
+            RenderTask task = iterator.next();
+
+            if (task.hasMoreWork()) {
+                if (isFirst) return task;
+                for (RenderTask finishingTask : finishingTasks) {
+                    if (!task.canOverlap(finishingTask) || !finishingTask.canOverlap(task)) return null;
+                }
+                return task;
+            }
+
+            // remove the task if no worker is working on it anymore
+            if (startedTasks.getOrDefault(task, 0) <= 0) {
+                iterator.remove();
+                startedTasks.remove(task);
+                scheduleRetry(task);
+                if (isFirst) this.newTask = true;
+                this.renderTasks.notifyAll();
+                continue;
+            }
+
+            // the task is still being finished by other workers
+            isFirst = false;
+            finishingTasks.add(task);
+        }
+
+        return null;
+    }
+
+    /**
+     * Schedules the {@link RenderTask#getRetryTask() retry-task} of the given (done) task after its delay,
+     * without blocking any worker in the meantime.<br>
+     * Must be called while holding the lock on {@link #renderTasks}, like {@link #stop()} does to cancel the timer.
+     */
+    private void scheduleRetry(RenderTask task) {
+        if (!this.running) return;
+
+        RenderTask retryTask = task.getRetryTask().orElse(null);
+        if (retryTask == null) return;
+
+        long delay = Math.max(retryTask.getRetryDelay(), 0);
+        if (retryTimer == null) retryTimer = new Timer("RenderManager-" + this.id + "-RetryTimer", true);
+        retryTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                scheduleRenderTask(retryTask);
+            }
+        }, delay);
+
+        Logger.global.logDebug("Scheduled '" + retryTask.getDescription() + "' in " + delay + "ms");
+    }
+
     public class WorkerThread extends Thread {
 
         private final int id;
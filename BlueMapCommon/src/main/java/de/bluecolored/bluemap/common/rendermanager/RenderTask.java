@@ -25,11 +25,25 @@
 package de.bluecolored.bluemap.common.rendermanager;
 
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 public interface RenderTask {
 
+    /**
+     * The amount of tasks following the current task that are {@link #prepareAsync(Executor) prepared} ahead of time.
+     */
+    int PREPARE_AHEAD_TASKS = 2;
+
     void doWork() throws Exception;
 
+    /**
+     * Starts preparing this task (e.g. loading the data it needs) using the given executor, so that it is ready to be
+     * worked on when it is up.<br>
+     * This might be called multiple times and concurrently with {@link #doWork()}, so implementations must make sure
+     * they only prepare once, and that {@link #doWork()} waits for (or does) the preparation if it is not done yet.
+     */
+    default void prepareAsync(Executor executor) {}
+
     /**
      * Whether this task is requesting more calls to its {@link #doWork()} method.<br>
      * This can be false because the task is finished, OR because the task got cancelled and decides to interrupt.
@@ -48,6 +62,32 @@ default double estimateProgress() {
      */
     void cancel();
 
+    /**
+     * Whether idle workers may already start working on this task while the other task (scheduled before it) is still
+     * being finished by other workers, or the other way around.<br>
+     * This should only be true if running both tasks at the same time is safe.
+     * Two tasks are only run at the same time if both of them allow it.
+     */
+    default boolean canOverlap(RenderTask other) {
+        return false;
+    }
+
+    /**
+     * A task that retries the parts of the work of this task that failed because of a (likely) temporary error,
+     * e.g. tiles with chunks that could not be loaded.<br>
+     * Once this task is done, the {@link RenderManager} schedules the retry-task after its {@link #getRetryDelay()}.
+     */
+    default Optional<RenderTask> getRetryTask() {
+        return Optional.empty();
+    }
+
+    /**
+     * If this task is a {@link #getRetryTask() retry-task}, the delay in milliseconds before it should be scheduled.
+     */
+    default long getRetryDelay() {
+        return 0;
+    }
+
     /**
      * Checks if the given task is somehow included with this task
      */
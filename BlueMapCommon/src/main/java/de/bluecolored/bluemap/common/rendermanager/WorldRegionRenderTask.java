@@ -29,6 +29,7 @@
 import de.bluecolored.bluemap.common.debug.DebugDump;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.map.BmMap;
+import de.bluecolored.bluemap.core.map.renderstate.MapRegionIndex;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.ActionAndNextState;
 import de.bluecolored.bluemap.core.map.renderstate.TileActionResolver.BoundsSituation;
 import de.bluecolored.bluemap.core.map.renderstate.TileInfoRegion;
@@ -36,11 +37,18 @@
 import de.bluecolored.bluemap.core.util.Grid;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
+import de.bluecolored.bluemap.core.world.ChunkContentHash;
+import de.bluecolored.bluemap.core.world.ChunkMeta;
+import de.bluecolored.bluemap.core.world.RegionFileInfo;
 import lombok.Getter;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 
@@ -49,20 +57,35 @@
 
 public class WorldRegionRenderTask implements RenderTask {
 
+    // tiles that could not be rendered because of chunk-errors are retried up to this many times,
+    // with a delay that starts at RETRY_DELAY and doubles with every attempt
+    private static final int MAX_RETRIES = 3;
+    private static final long RETRY_DELAY = TimeUnit.SECONDS.toMillis(5);
+    private static final Predicate<TileState> RETRY_FORCE = state -> state == TileState.CHUNK_ERROR;
+
     @Getter private final BmMap map;
     @Getter private final Vector2i regionPos;
     @Getter private final Predicate<TileState> force;
+    @Getter private final int attempt;
 
     private Grid regionGrid, chunkGrid, tileGrid;
     private Vector2i chunkMin, chunkMax, chunksSize;
     private Vector2i tileMin, tileMax, tileSize;
 
+    private RegionFileInfo regionFileInfo;
+    private long regionHeaderChecksum;
+
     private int[] chunkHashes;
+    private long @Nullable [] chunkContentHashes;
     private ActionAndNextState[] tileActions;
+    private boolean hasTileWork, preloadChunks;
 
     private volatile int nextTileX, nextTileZ;
     private volatile int atWork;
-    private volatile boolean completed, cancelled;
+    private volatile boolean started, completed, cancelled;
+    private volatile boolean chunkErrors, renderErrors;
+
+    private CompletableFuture<Void> preparation;
 
     public WorldRegionRenderTask(BmMap map, Vector2i regionPos) {
         this(map, regionPos, false);
@@ -73,19 +96,69 @@ public WorldRegionRenderTask(BmMap map, Vector2i regionPos, boolean force) {
     }
 
     public WorldRegionRenderTask(BmMap map, Vector2i regionPos, Predicate<TileState> force) {
+        this(map, regionPos, force, 0);
+    }
+
+    private WorldRegionRenderTask(BmMap map, Vector2i regionPos, Predicate<TileState> force, int attempt) {
         this.map = map;
         this.regionPos = regionPos;
         this.force = force;
+        this.attempt = attempt;
 
         this.nextTileX = 0;
         this.nextTileZ = 0;
 
         this.atWork = 0;
+        this.started = false;
         this.completed = false;
         this.cancelled = false;
+        this.chunkErrors = false;
+        this.renderErrors = false;
     }
 
-    private synchronized void init() {
+    @Override
+    public void prepareAsync(Executor executor) {
+        synchronized (this) {
+            if (preparation != null || cancelled) return;
+
+            try {
+                preparation = CompletableFuture.runAsync(this::prepare, executor);
+            } catch (RejectedExecutionException ignore) {
+                // the task will be prepared on the first call to doWork() instead
+            }
+        }
+    }
+
+    private void awaitPreparation() {
+        CompletableFuture<Void> preparation;
+        boolean prepareNow = false;
+
+        synchronized (this) {
+            if (this.preparation == null) {
+                this.preparation = new CompletableFuture<>();
+                prepareNow = true;
+            }
+            preparation = this.preparation;
+        }
+
+        if (prepareNow) {
+            prepare();
+            preparation.complete(null);
+        }
+
+        preparation.join();
+    }
+
+    private void prepare() {
+        try {
+            init();
+        } catch (RuntimeException ex) {
+            Logger.global.logError("Failed to prepare region " + regionPos + " for map '" + map.getId() + "'", ex);
+            cancel();
+        }
+    }
+
+    private void init() {
 
         // calculate bounds
         this.regionGrid = map.getWorld().getRegionGrid();
@@ -98,6 +171,17 @@ private synchronized void init() {
         this.tileMax = regionGrid.getCellMax(regionPos, tileGrid);
         this.tileSize = tileMax.sub(tileMin).add(1, 1);
 
+        // remember the state of the region-file before reading it, so changes during the render are not missed
+        this.regionFileInfo = map.getWorld().getRegionFileInfo(regionPos.getX(), regionPos.getY());
+        this.regionHeaderChecksum = 0;
+        if (regionFileInfo.isKnown()) {
+            try {
+                this.regionHeaderChecksum = map.getWorld().getRegion(regionPos.getX(), regionPos.getY()).getHeaderChecksum();
+            } catch (IOException ex) {
+                Logger.global.logDebug("Failed to read region-header of region " + regionPos + ": " + ex);
+            }
+        }
+
         // load chunk-hash array
         int chunkMaxCount = chunksSize.getX() * chunksSize.getY();
         try {
@@ -115,6 +199,10 @@ private synchronized void init() {
             cancel();
         }
 
+        // content-hashes are only calculated for chunks with a changed timestamp, when they are needed
+        if (map.getMapSettings().isChunkContentHashing())
+            chunkContentHashes = new long[chunkMaxCount];
+
         // check tile actions
         int tileMaxCount = tileSize.getX() * tileSize.getY();
         int tileRenderCount = 0;
@@ -138,31 +226,49 @@ private synchronized void init() {
             }
         }
 
-        if (tileRenderCount >= tileMaxCount * 0.75)
-            map.getWorld().preloadRegionChunks(regionPos.getX(), regionPos.getY());
+        // this might run ahead of time, so the chunks are only preloaded once the task actually starts
+        this.hasTileWork = tileRenderCount + tileDeleteCount > 0;
+        this.preloadChunks = tileRenderCount >= tileMaxCount * 0.75;
+
+    }
 
-        if (tileRenderCount + tileDeleteCount == 0)
+    /**
+     * Called by the first worker that actually works on this task (after it has been prepared)
+     */
+    private void start() {
+        started = true;
+
+        if (!hasTileWork) {
             completed = true;
+            complete();
+            return;
+        }
 
+        if (preloadChunks)
+            map.getWorld().preloadRegionChunks(regionPos.getX(), regionPos.getY());
     }
 
     @Override
     public void doWork() {
         if (cancelled || completed) return;
 
+        // the region is usually already prepared ahead of time,
+        // this only waits if the preparation is still running (or does it now if it has never been started)
+        awaitPreparation();
+
         int tileX, tileZ;
 
         synchronized (this) {
             if (cancelled || completed) return;
 
+            if (!started) {
+                start();
+                if (completed) return;
+            }
+
             tileX = nextTileX;
             tileZ = nextTileZ;
 
-            if (tileX == 0 && tileZ == 0) {
-                init();
-                if (cancelled || completed) return;
-            }
-
             nextTileX = tileX + 1;
             if (nextTileX >= tileSize.getX()) {
                 nextTileZ = tileZ + 1;
@@ -200,6 +306,7 @@ private void processTile(int x, int z) {
                 case RENDER -> {
                     TileState failedState = checkTileRenderPreconditions(tile);
                     if (failedState != null){
+                        if (failedState == TileState.CHUNK_ERROR) chunkErrors = true;
                         map.unrenderTile(tile);
                         yield failedState;
                     }
@@ -218,6 +325,7 @@ private void processTile(int x, int z) {
         } catch (Exception ex) {
 
             Logger.global.logError("Error while processing map-tile " + tile + " for map '" + map.getId() + "'", ex);
+            renderErrors = true;
 
         } finally {
 
@@ -237,10 +345,26 @@ private synchronized void complete() {
             for (int x = 0; x < chunksSize.getX(); x++) {
                 for (int z = 0; z < chunksSize.getY(); z++) {
                     int hash = chunkHashes[chunkIndex(x, z)];
-                    map.getMapChunkState().set(chunkMin.getX() + x, chunkMin.getY() + z, hash);
+                    int previousHash = map.getMapChunkState().set(chunkMin.getX() + x, chunkMin.getY() + z, hash);
+
+                    // changed chunks get their new content-hash, or their (now outdated) content-hash reset if they were not hashed
+                    if (previousHash != hash) {
+                        long contentHash = chunkContentHashes != null ? chunkContentHashes[chunkIndex(x, z)] : ChunkContentHash.NONE;
+                        map.getMapChunkState().setContentHash(chunkMin.getX() + x, chunkMin.getY() + z, contentHash);
+                    }
                 }
             }
             chunkHashes = null;
+            chunkContentHashes = null;
+        }
+
+        // remember the region-file state, so the next map-update can skip this region if the file did not change
+        if (!chunkErrors && !renderErrors) {
+            if (regionFileInfo.isKnown()) {
+                map.getRegionIndex().set(regionPos, new MapRegionIndex.Entry(regionFileInfo, regionHeaderChecksum));
+            } else {
+                map.getRegionIndex().remove(regionPos);
+            }
         }
 
         // save map (at most, every minute)
@@ -265,6 +389,28 @@ public void cancel() {
         this.cancelled = true;
     }
 
+    @Override
+    public boolean canOverlap(RenderTask other) {
+        // two tasks rendering the same region of the same map would write the same tiles and states
+        if (other instanceof WorldRegionRenderTask task)
+            return !(map.getId().equals(task.map.getId()) && regionPos.equals(task.regionPos));
+        if (other instanceof CombinedRenderTask<?> combined)
+            return combined.canOverlap(this);
+        return true;
+    }
+
+    @Override
+    public Optional<RenderTask> getRetryTask() {
+        if (cancelled || !chunkErrors || attempt >= MAX_RETRIES) return Optional.empty();
+        return Optional.of(new WorldRegionRenderTask(map, regionPos, RETRY_FORCE, attempt + 1));
+    }
+
+    @Override
+    public long getRetryDelay() {
+        if (attempt <= 0) return 0;
+        return RETRY_DELAY << (attempt - 1);
+    }
+
     @Override
     public String getDescription() {
         return "Update region " + regionPos + " for map '" + map.getId() + "'";
@@ -297,8 +443,13 @@ private boolean checkChunksHaveChanges(Vector2i tile) {
                 minZ = tileGrid.getCellMinY(tile.getY(), chunkGrid),
                 maxZ = tileGrid.getCellMaxY(tile.getY(), chunkGrid);
 
+        // with content-hashing, all changed chunks of the tile are hashed, even after the first actual change was found:
+        // the tile is rendered anyway, and chunks without a content-hash would be re-rendered again after a restart
+        boolean changed = false;
         for (int chunkX = minX; chunkX <= maxX; chunkX++) {
             for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                if (changed && chunkContentHashes == null) return true;
+
                 int dx = chunkX - chunkMin.getX();
                 int dz = chunkZ - chunkMin.getY();
 
@@ -310,12 +461,34 @@ private boolean checkChunksHaveChanges(Vector2i tile) {
                     int hash = chunkHashes[chunkIndex(dx, dz)];
                     int lastHash = map.getMapChunkState().get(chunkX, chunkZ);
 
-                    if (lastHash != hash) return true;
+                    if (lastHash != hash && !isContentUnchanged(chunkX, chunkZ, chunkIndex(dx, dz)))
+                        changed = true;
                 }
             }
         }
 
-        return false;
+        return changed;
+    }
+
+    /**
+     * Checks if the content-hash of a chunk (with a changed timestamp) is still the same as when it was last rendered.
+     * Always false if content-hashing is disabled for this map.
+     */
+    private boolean isContentUnchanged(int chunkX, int chunkZ, int chunkIndex) {
+        if (chunkContentHashes == null) return false;
+
+        long contentHash = chunkContentHashes[chunkIndex];
+        if (contentHash == ChunkContentHash.NONE) {
+            Chunk chunk = map.getWorld().getChunk(chunkX, chunkZ);
+            if (chunk == Chunk.ERRORED_CHUNK) return false;
+
+            contentHash = ChunkContentHash.of(chunk);
+            chunkContentHashes[chunkIndex] = contentHash;
+        }
+
+        return
+                contentHash != ChunkContentHash.NONE &&
+                contentHash == map.getMapChunkState().getContentHash(chunkX, chunkZ);
     }
 
     private BoundsSituation checkTileBounds(Vector2i tile) {
@@ -349,11 +522,12 @@ private BoundsSituation checkTileBounds(Vector2i tile) {
         }
 
         // second pass for increased inhabited-time-radius
+        // (only needs the chunk-meta, since the chunks around the tile are not rendered)
         if (!chunksAreInhabited && minInhabitedTimeRadius > 0) {
             inhabitedRadiusCheck:
             for (int chunkX = minX - minInhabitedTimeRadius; chunkX <= maxX + minInhabitedTimeRadius; chunkX++) {
                 for (int chunkZ = minZ - minInhabitedTimeRadius; chunkZ <= maxZ + minInhabitedTimeRadius; chunkZ++) {
-                    Chunk chunk = map.getWorld().getChunk(chunkX, chunkZ);
+                    ChunkMeta chunk = map.getWorld().getChunkMeta(chunkX, chunkZ);
                     if (chunk.getInhabitedTime() >= minInhabitedTime) {
                         chunksAreInhabited = true;
                         break inhabitedRadiusCheck;
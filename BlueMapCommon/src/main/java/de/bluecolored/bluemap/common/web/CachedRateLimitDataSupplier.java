@@ -34,8 +34,8 @@ public class CachedRateLimitDataSupplier implements Supplier<String> {
     private final Supplier<String> delegate;
     private final long rateLimitMillis;
 
-    private long updateTime = -1;
-    private String data = null;
+    private volatile long updateTime = -1;
+    private volatile String data = null;
 
     public CachedRateLimitDataSupplier(Supplier<String> delegate, long rateLimitMillis) {
         this.delegate = delegate;
@@ -49,15 +49,18 @@ public String get() {
     }
 
     protected void update() {
-        if (lock.tryLock()) {
-            try {
-                long now = System.currentTimeMillis();
-                if (data != null && now < updateTime + this.rateLimitMillis) return;
-                this.data = delegate.get();
-                this.updateTime = now;
-            } finally {
-                lock.unlock();
-            }
+        // requests are handled concurrently: until there is any data all callers wait for it to be loaded,
+        // afterwards they just return the current data while another thread is updating it
+        if (data == null) lock.lock();
+        else if (!lock.tryLock()) return;
+
+        try {
+            long now = System.currentTimeMillis();
+            if (data != null && now < updateTime + this.rateLimitMillis) return;
+            this.data = delegate.get();
+            this.updateTime = now;
+        } finally {
+            lock.unlock();
         }
     }
 
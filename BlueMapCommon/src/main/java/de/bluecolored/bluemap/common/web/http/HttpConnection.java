@@ -30,12 +30,10 @@
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.nio.channels.Channel;
-import java.nio.channels.SelectableChannel;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.SocketChannel;
+import java.nio.channels.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class HttpConnection implements SelectionConsumer {
 
@@ -43,7 +41,7 @@ public class HttpConnection implements SelectionConsumer {
     private final Executor responseHandlerExecutor;
     private HttpRequest request;
     private CompletableFuture<HttpResponse> futureResponse;
-    private HttpResponse response;
+    private volatile HttpResponse response;
 
     public HttpConnection(HttpRequestHandler requestHandler) {
         this(requestHandler, Runnable::run); //run synchronously
@@ -83,27 +81,36 @@ public void accept(SelectionKey selectionKey) {
 
             // process request
             if (futureResponse == null) {
-                futureResponse = CompletableFuture.supplyAsync(
-                        () -> requestHandler.handle(request),
-                        responseHandlerExecutor
-                );
+                // don't select this connection until the response is ready,
+                // this makes sure that requests on one connection are processed in order
+                selectionKey.interestOps(0);
+
+                futureResponse = handleRequest(request);
                 futureResponse.handle((response, error) -> {
                     if (error != null) {
                         Logger.global.logError("Unexpected error handling request", error);
                         response = new HttpResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
                     }
 
+                    this.response = response;
+
+                    // hand the response back to the selector-thread for sending
                     try {
-                        response.read(channel); // do an initial read to trigger response sending intent
-                        this.response = response;
-                    } catch (IOException e) {
-                        handleIOException(channel, e);
+                        selectionKey.interestOps(SelectionKey.OP_WRITE);
+                        selectionKey.selector().wakeup();
+                    } catch (CancelledKeyException ex) {
+                        try {
+                            response.close();
+                        } catch (IOException e) {
+                            Logger.global.logWarning("Failed to close response: " + e);
+                        }
                     }
 
                     return null;
                 });
             }
 
+            HttpResponse response = this.response;
             if (response == null) return;
             if (!selectionKey.isValid()) return;
 
@@ -117,7 +124,7 @@ public void accept(SelectionKey selectionKey) {
             request.clear();
             response.close();
             futureResponse = null;
-            response = null;
+            this.response = null;
             selectionKey.interestOps(SelectionKey.OP_READ);
 
         } catch (IOException e) {
@@ -125,6 +132,20 @@ public void accept(SelectionKey selectionKey) {
         }
     }
 
+    private CompletableFuture<HttpResponse> handleRequest(HttpRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> requestHandler.handle(request),
+                    responseHandlerExecutor
+            );
+        } catch (RejectedExecutionException ex) {
+            // too many pending requests, ask the client to come back later
+            HttpResponse response = new HttpResponse(HttpStatusCode.SERVICE_UNAVAILABLE);
+            response.addHeader("Retry-After", "1");
+            return CompletableFuture.completedFuture(response);
+        }
+    }
+
     private void handleIOException(Channel channel, IOException e) {
         request.clear();
 
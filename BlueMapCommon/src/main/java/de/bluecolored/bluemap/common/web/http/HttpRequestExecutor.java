@@ -0,0 +1,124 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.common.web.http;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded {@link Executor} for handling {@link HttpRequest}s off the selector-thread.<br>
+ * At most <code>threadCount</code> requests are handled at the same time, and at most <code>queueSize</code> additional
+ * requests are waiting to be handled. If both are exhausted, {@link #execute(Runnable)} throws a
+ * {@link RejectedExecutionException}.<br>
+ * If requested and supported by the runtime, requests are handled on virtual threads.
+ */
+public class HttpRequestExecutor implements Executor, Closeable {
+
+    private static final AtomicInteger ID = new AtomicInteger(0);
+
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final @Nullable Semaphore concurrency;
+
+    public HttpRequestExecutor(int threadCount, int queueSize, boolean virtualThreads) {
+        if (threadCount < 1) throw new IllegalArgumentException("threadCount has to be at least 1");
+
+        this.admission = new Semaphore(threadCount + Math.max(queueSize, 0));
+
+        ExecutorService virtualThreadExecutor = virtualThreads ? createVirtualThreadExecutor() : null;
+        if (virtualThreadExecutor != null) {
+            this.executor = virtualThreadExecutor;
+            this.concurrency = new Semaphore(threadCount);
+        } else {
+            int id = ID.getAndIncrement();
+            AtomicInteger threadId = new AtomicInteger(0);
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                    threadCount, threadCount,
+                    1, TimeUnit.MINUTES,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "BlueMap-WebServer-" + id + "-" + threadId.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+            );
+            threadPool.allowCoreThreadTimeOut(true);
+            this.executor = threadPool;
+            this.concurrency = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (!admission.tryAcquire())
+            throw new RejectedExecutionException("Too many pending requests");
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (concurrency != null) concurrency.acquireUninterruptibly();
+                    try {
+                        command.run();
+                    } finally {
+                        if (concurrency != null) concurrency.release();
+                    }
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            admission.release();
+            throw ex;
+        }
+    }
+
+    public boolean isVirtual() {
+        return concurrency != null;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates a new virtual-thread-per-task executor if the runtime supports it (Java 21+), or returns null otherwise.
+     */
+    private static @Nullable ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            Logger.global.logDebug("Virtual threads are not supported by this runtime: " + ex);
+            return null;
+        }
+    }
+
+}
@@ -27,20 +27,44 @@
 import lombok.Getter;
 import lombok.Setter;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 public class HttpServer extends Server {
 
     @Getter @Setter
     private HttpRequestHandler requestHandler;
 
+    @Getter
+    private final Executor requestHandlerExecutor;
+
     public HttpServer(HttpRequestHandler requestHandler) throws IOException {
+        this(requestHandler, Runnable::run); //run synchronously
+    }
+
+    /**
+     * Creates a new HttpServer that handles all requests using the given executor.<br>
+     * The server takes ownership of the executor, if it is {@link Closeable} it will be closed when the server closes.
+     */
+    public HttpServer(HttpRequestHandler requestHandler, Executor requestHandlerExecutor) throws IOException {
         this.requestHandler = requestHandler;
+        this.requestHandlerExecutor = requestHandlerExecutor;
     }
 
     @Override
     public SelectionConsumer createConnectionHandler() {
-        return new HttpConnection(requestHandler);
+        return new HttpConnection(requestHandler, requestHandlerExecutor);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (requestHandlerExecutor instanceof Closeable)
+                ((Closeable) requestHandlerExecutor).close();
+        }
     }
 
 }
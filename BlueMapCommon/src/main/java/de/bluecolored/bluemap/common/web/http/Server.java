@@ -96,7 +96,7 @@ private void accept(SelectionKey selectionKey) {
             SocketChannel channel = serverSocketChannel.accept();
             if (channel == null) return;
             channel.configureBlocking(false);
-            channel.register(selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE, createConnectionHandler());
+            channel.register(selector, SelectionKey.OP_READ, createConnectionHandler());
         } catch (IOException e) {
             Logger.global.logDebug("Failed to accept connection: " + e);
         }
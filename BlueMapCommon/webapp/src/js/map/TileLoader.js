@@ -79,6 +79,15 @@ export class TileLoader {
                     object.position.set(tileX * tileSize.x + translate.x, 0, tileZ * tileSize.z + translate.z);
                     object.scale.set(scale.x, 1, scale.z);
 
+                    // quantized positions are stored relative to an offset and with a scale
+                    let quantization = geometry.userData.positionQuantization;
+                    if (quantization) {
+                        object.position.x += quantization.offset[0] * scale.x;
+                        object.position.y += quantization.offset[1];
+                        object.position.z += quantization.offset[2] * scale.z;
+                        object.scale.multiplyScalar(quantization.scale);
+                    }
+
                     object.userData.tileUrl = tileUrl;
                     object.userData.tileType = "hires";
 
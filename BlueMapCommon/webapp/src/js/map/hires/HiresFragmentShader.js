@@ -52,11 +52,26 @@ varying float vSunlight;
 varying float vBlocklight;
 //varying float vDistance;
 
+// merged faces have uvs outside of [0, 1] and repeat their texture once per block
+vec4 textureFrame(vec2 uv, float frameIndex) {
+	vec2 frameUv = vec2(uv.x, animationFrameHeight * (uv.y + frameIndex));
+	#if __VERSION__ >= 300
+		// use the gradients of the unwrapped uvs, so the mipmap-level doesn't jump where the texture repeats
+		vec2 frameScale = vec2(1.0, animationFrameHeight);
+		return textureGrad(textureImage, frameUv, dFdx(vUv) * frameScale, dFdy(vUv) * frameScale);
+	#else
+		return texture(textureImage, frameUv);
+	#endif
+}
+
 void main() {
 
-	vec4 color = texture(textureImage, vec2(vUv.x, animationFrameHeight * (vUv.y + animationFrameIndex)));
+	// wrap uvs above 1 into (0, 1] and uvs below 0 (mirrored faces) into [0, 1), uvs that are already in [0, 1] stay unchanged
+	vec2 uv = vUv - max(ceil(vUv) - 1.0, 0.0) - min(floor(vUv), 0.0);
+
+	vec4 color = textureFrame(uv, animationFrameIndex);
 	if (animationInterpolation > 0.0) {
-		color = mix(color, texture(textureImage, vec2(vUv.x, animationFrameHeight * (vUv.y + animationInterpolationFrameIndex))), animationInterpolation);
+		color = mix(color, textureFrame(uv, animationInterpolationFrameIndex), animationInterpolation);
 	}
 	
 	if (color.a <= 0.01) discard;
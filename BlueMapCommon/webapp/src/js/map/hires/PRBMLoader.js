@@ -138,7 +138,7 @@ function decodePrwm( buffer, offset ) {
 
     if ( version === 0 ) {
         throw new Error( 'PRWM decoder: Invalid format version: 0' );
-    } else if ( version !== 1 ) {
+    } else if ( version !== 1 && version !== 2 ) {
         throw new Error( 'PRWM decoder: Unsupported format version: ' + version );
     }
 
@@ -161,6 +161,8 @@ function decodePrwm( buffer, offset ) {
         cardinality,
         encodingType,
         normalized,
+        quantized,
+        quantization,
         arrayType,
         values,
         indices,
@@ -192,9 +194,27 @@ function decodePrwm( buffer, offset ) {
 
         pos ++;
 
+        // since version 2, a byte follows that tells if the values are quantized
+        quantized = false;
+        if ( version >= 2 ) {
+            quantized = array[ pos ] === 1;
+            pos ++;
+        }
+
         // padding to next multiple of 4
         pos = Math.ceil( pos / 4 ) * 4;
 
+        // quantized values are followed by a scale and an offset per component: value = offset + scale * quantizedValue
+        quantization = null;
+        if ( quantized ) {
+            let quantizationValues = copyFromBuffer( buffer, Float32Array, pos + offset, cardinality + 1, bigEndian );
+            quantization = {
+                scale: quantizationValues[ 0 ],
+                offset: Array.from( quantizationValues.subarray( 1 ) )
+            };
+            pos += 4 * ( cardinality + 1 );
+        }
+
         values = copyFromBuffer( buffer, arrayType, pos + offset, cardinality * valuesNumber, bigEndian );
 
         pos += arrayType.BYTES_PER_ELEMENT * cardinality * valuesNumber;
@@ -203,7 +223,8 @@ function decodePrwm( buffer, offset ) {
             type: attributeType,
             cardinality: cardinality,
             values: values,
-            normalized: normalized === 1
+            normalized: normalized === 1,
+            quantization: quantization
         };
     }
 
@@ -217,6 +238,7 @@ function decodePrwm( buffer, offset ) {
             indicesNumber,
             bigEndian
         );
+        pos += indices.BYTES_PER_ELEMENT * indicesNumber;
     }
 
     // read groups
@@ -244,6 +266,25 @@ function decodePrwm( buffer, offset ) {
     };
 }
 
+/**
+ * @param attribute {{cardinality: number, values: ArrayLike<number>, quantization: {scale: number, offset: number[]}}}
+ * @returns {Float32Array}
+ */
+function dequantize( attribute ) {
+    let values = attribute.values,
+        cardinality = attribute.cardinality,
+        scale = attribute.quantization.scale,
+        offset = attribute.quantization.offset,
+        result = new Float32Array( values.length ),
+        i;
+
+    for ( i = 0; i < values.length; i ++ ) {
+        result[ i ] = offset[ i % cardinality ] + scale * values[ i ];
+    }
+
+    return result;
+}
+
 function read4ByteInt(array, pos) {
     return array[pos] |
         array[pos + 1] << 8 |
@@ -281,12 +322,24 @@ export class PRBMLoader {
             attributesKey = Object.keys( data.attributes ),
             bufferGeometry = new BufferGeometry(),
             attribute,
+            values,
             bufferAttribute,
             i;
 
         for ( i = 0; i < attributesKey.length; i ++ ) {
             attribute = data.attributes[ attributesKey[ i ] ];
-            bufferAttribute = new BufferAttribute( attribute.values, attribute.cardinality, attribute.normalized );
+            values = attribute.values;
+
+            if ( attribute.quantization !== null ) {
+                if ( attributesKey[ i ] === 'position' ) {
+                    // applied to the transform of the mesh (see TileLoader), so the compact values can be uploaded as they are
+                    bufferGeometry.userData.positionQuantization = attribute.quantization;
+                } else {
+                    values = dequantize( attribute );
+                }
+            }
+
+            bufferAttribute = new BufferAttribute( values, attribute.cardinality, attribute.normalized );
             bufferAttribute.gpuType = FloatType;
             bufferGeometry.setAttribute( attributesKey[ i ], bufferAttribute );
         }
@@ -34,6 +34,7 @@
 import de.bluecolored.bluemap.core.map.hires.HiresModelManager;
 import de.bluecolored.bluemap.core.map.lowres.LowresTileManager;
 import de.bluecolored.bluemap.core.map.renderstate.MapChunkState;
+import de.bluecolored.bluemap.core.map.renderstate.MapRegionIndex;
 import de.bluecolored.bluemap.core.map.renderstate.MapTileState;
 import de.bluecolored.bluemap.core.resources.adapter.ResourcesGson;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
@@ -73,6 +74,7 @@ public class BmMap {
 
     private final MapTileState mapTileState;
     private final MapChunkState mapChunkState;
+    private final MapRegionIndex regionIndex;
 
     private final HiresModelManager hiresModelManager;
     private final LowresTileManager lowresTileManager;
@@ -97,6 +99,8 @@ public BmMap(String id, String name, World world, MapStorage storage, ResourcePa
         this.mapTileState = new MapTileState(storage.tileState());
         this.mapTileState.load();
         this.mapChunkState = new MapChunkState(storage.chunkState());
+        this.regionIndex = new MapRegionIndex(storage.regionIndex());
+        this.regionIndex.load(MapRegionIndex.settingsHash(settings));
 
         if (Thread.interrupted()) throw new InterruptedException();
 
@@ -136,7 +140,11 @@ public void renderTile(Vector2i tile) {
 
         long start = System.nanoTime();
 
-        hiresModelManager.render(world, tile, lowresTileManager, mapSettings.isSaveHiresLayer());
+        if (mapSettings.isLowresOnly()) {
+            hiresModelManager.renderLowres(world, tile, lowresTileManager);
+        } else {
+            hiresModelManager.render(world, tile, lowresTileManager, mapSettings.isSaveHiresLayer());
+        }
 
         long end = System.nanoTime();
         long delta = end - start;
@@ -162,6 +170,7 @@ public synchronized void save() {
         lowresTileManager.save();
         mapTileState.save();
         mapChunkState.save();
+        regionIndex.save();
         saveMarkerState();
         savePlayerState();
         saveMapSettings();
@@ -199,6 +208,7 @@ private void saveTextureGallery() {
     public synchronized void resetTextureGallery() {
         this.textureGallery.clear();
         this.textureGallery.put(this.resourcePack);
+        this.hiresModelManager.clearModelCache();
     }
 
     private void saveMapSettings() {
@@ -42,6 +42,14 @@ public interface MapSettings extends RenderSettings {
 
     int getMinInhabitedTimeRadius();
 
+    /**
+     * If this is true, chunks with a changed timestamp are only re-rendered if the
+     * {@link de.bluecolored.bluemap.core.world.ChunkContentHash content-hash} of the chunk changed as well.
+     */
+    default boolean isChunkContentHashing() {
+        return false;
+    }
+
     int getHiresTileSize();
 
     int getLowresTileSize();
@@ -58,6 +58,13 @@ public HiresModelManager(GridStorage storage, HiresModelRenderer renderer, Grid
         this.tileGrid = tileGrid;
     }
 
+    /**
+     * Clears all cached compiled block-models of the renderer, e.g. because the texture-gallery has changed.
+     */
+    public void clearModelCache() {
+        renderer.clearModelCache();
+    }
+
     /**
      * Renders the given world tile with the provided render-settings
      */
@@ -73,6 +80,8 @@ public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer
         renderer.render(world, modelMin, modelMax, model, tileMetaConsumer);
 
         if (save){
+            if (renderer.getRenderSettings().isMergeFaces())
+                TileModelFaceMerger.merge(model);
             model.sort();
             save(model, tile);
         }
@@ -80,6 +89,20 @@ public void render(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer
         TileModel.instancePool().recycleInstance(model);
     }
 
+    /**
+     * Renders only the lowres-data (color, height and light) of the given world tile, without building or saving
+     * a hires-model.
+     */
+    public void renderLowres(World world, Vector2i tile, TileMetaConsumer tileMetaConsumer) {
+        Vector2i tileMin = tileGrid.getCellMin(tile);
+        Vector2i tileMax = tileGrid.getCellMax(tile);
+
+        Vector3i modelMin = new Vector3i(tileMin.getX(), Integer.MIN_VALUE, tileMin.getY());
+        Vector3i modelMax = new Vector3i(tileMax.getX(), Integer.MAX_VALUE, tileMax.getY());
+
+        renderer.renderColumns(world, modelMin, modelMax, tileMetaConsumer);
+    }
+
     /**
      * Un-renders a tile.
      * The hires tile is deleted and the tileMetaConsumer (lowres) is updated with default values in the tiles area.
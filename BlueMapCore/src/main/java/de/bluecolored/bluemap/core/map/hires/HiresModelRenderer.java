@@ -27,23 +27,37 @@
 import com.flowpowered.math.vector.Vector3i;
 import de.bluecolored.bluemap.core.map.TextureGallery;
 import de.bluecolored.bluemap.core.map.TileMetaConsumer;
+import de.bluecolored.bluemap.core.map.hires.blockmodel.BlockStateColorFactory;
 import de.bluecolored.bluemap.core.map.hires.blockmodel.BlockStateModelFactory;
+import de.bluecolored.bluemap.core.map.hires.blockmodel.CompiledModelCache;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.ChunkWindow;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
 import de.bluecolored.bluemap.core.world.World;
+import lombok.Getter;
 
 public class HiresModelRenderer {
 
     private final ResourcePack resourcePack;
     private final TextureGallery textureGallery;
-    private final RenderSettings renderSettings;
+    @Getter private final RenderSettings renderSettings;
+    private final CompiledModelCache modelCache;
 
     public HiresModelRenderer(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
         this.resourcePack = resourcePack;
         this.textureGallery = textureGallery;
         this.renderSettings = renderSettings;
+        this.modelCache = new CompiledModelCache(resourcePack, textureGallery);
+    }
+
+    /**
+     * Clears all cached compiled block-models, e.g. because the texture-gallery has changed.
+     */
+    public void clearModelCache() {
+        modelCache.clear();
     }
 
     public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel model) {
@@ -51,12 +65,14 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
     }
 
     public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel model, TileMetaConsumer tileMetaConsumer) {
+        world = createChunkWindow(world, modelMin, modelMax);
+
         Vector3i min = modelMin.max(renderSettings.getMinPos());
         Vector3i max = modelMax.min(renderSettings.getMaxPos());
         Vector3i modelAnchor = new Vector3i(modelMin.getX(), 0, modelMin.getZ());
 
         // create new for each tile-render since the factory is not threadsafe
-        BlockStateModelFactory modelFactory = new BlockStateModelFactory(resourcePack, textureGallery, renderSettings);
+        BlockStateModelFactory modelFactory = new BlockStateModelFactory(resourcePack, textureGallery, renderSettings, modelCache);
 
         int maxHeight, minY, maxY;
         double topBlockLight;
@@ -75,10 +91,23 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
 
                 if (renderSettings.isInsideRenderBoundaries(x, z)) {
                     Chunk chunk = world.getChunkAtBlock(x, z);
-                    minY = Math.max(min.getY(), chunk.getMinY(x, z));
+                    minY = Math.max(min.getY(), chunk.getMinNonAirY(x, z));
                     maxY = Math.min(max.getY(), chunk.getMaxY(x, z));
 
+                    // air above the highest non-air block doesn't render, only its light is sampled
+                    int topY = Math.min(maxY, chunk.getMaxNonAirY(x, z));
+                    topBlockLight = sampleAirLight(chunk, block, x, z, maxY, Math.max(topY + 1, Math.max(min.getY(), chunk.getMinY(x, z))));
+                    maxY = topY;
+
                     for (y = maxY; y >= minY; y--) {
+
+                        // skip sections containing only air, once nothing below is visible on the lowres-layer anymore
+                        if ((y == maxY || (y & 0xF) == 0xF) && columnColor.a >= 1f &&
+                                chunk.getSectionOccupancy(y >> 4) == SectionOccupancy.EMPTY) {
+                            y &= ~0xF;
+                            continue;
+                        }
+
                         block.set(x, y, z);
                         if (!block.isInsideRenderBounds()) continue;
 
@@ -112,4 +141,101 @@ public void render(World world, Vector3i modelMin, Vector3i modelMax, TileModel
             }
         }
     }
+
+    /**
+     * Only calculates the color, height and light of each block-column for the lowres-layer, without building
+     * any hires-model.<br>
+     * Columns are only scanned down from the world-surface heightmap (if available) until they are fully opaque.
+     */
+    public void renderColumns(World world, Vector3i modelMin, Vector3i modelMax, TileMetaConsumer tileMetaConsumer) {
+        world = createChunkWindow(world, modelMin, modelMax);
+
+        Vector3i min = modelMin.max(renderSettings.getMinPos());
+        Vector3i max = modelMax.min(renderSettings.getMaxPos());
+
+        // create new for each tile-render since the factory is not threadsafe
+        BlockStateColorFactory colorFactory = new BlockStateColorFactory(resourcePack, renderSettings, modelCache);
+
+        int maxHeight, minY, maxY;
+        double topBlockLight;
+        Color columnColor = new Color(), blockColor = new Color();
+        BlockNeighborhood<?> block = new BlockNeighborhood<>(resourcePack, renderSettings, world, 0, 0, 0);
+
+        int x, y, z;
+        for (x = modelMin.getX(); x <= modelMax.getX(); x++){
+            for (z = modelMin.getZ(); z <= modelMax.getZ(); z++){
+
+                maxHeight = Integer.MIN_VALUE;
+                topBlockLight = 0;
+
+                columnColor.set(0, 0, 0, 0, true);
+
+                if (renderSettings.isInsideRenderBoundaries(x, z)) {
+                    Chunk chunk = world.getChunkAtBlock(x, z);
+                    minY = Math.max(min.getY(), chunk.getMinY(x, z));
+                    maxY = Math.min(max.getY(), chunk.getMaxY(x, z));
+
+                    // everything above the world-surface is air, which doesn't render, only its light is sampled
+                    int topY = Math.min(maxY, chunk.getMaxNonAirY(x, z));
+                    if (chunk.hasWorldSurfaceHeights())
+                        topY = Math.min(topY, chunk.getWorldSurfaceY(x, z));
+                    topBlockLight = sampleAirLight(chunk, block, x, z, maxY, Math.max(topY + 1, minY));
+                    maxY = topY;
+
+                    for (y = maxY; y >= minY; y--) {
+                        block.set(x, y, z);
+                        if (!block.isInsideRenderBounds()) continue;
+
+                        colorFactory.render(block, blockColor);
+
+                        //update topBlockLight
+                        topBlockLight = Math.max(topBlockLight, block.getBlockLightLevel() * (1 - columnColor.a));
+
+                        //update color and height (only if not 100% translucent)
+                        if (blockColor.a > 0) {
+                            if (maxHeight < y) maxHeight = y;
+                            columnColor.underlay(blockColor.premultiplied());
+                        }
+
+                        // nothing below will be visible anymore
+                        if (columnColor.a >= 1f) break;
+                    }
+                }
+
+                if (maxHeight == Integer.MIN_VALUE)
+                    maxHeight = 0;
+
+                tileMetaConsumer.set(x, z, columnColor, maxHeight, (int) topBlockLight);
+            }
+        }
+    }
+
+    /**
+     * Returns the highest block-light level of the (air-)blocks from maxY down to minY,
+     * so columns keep the light of e.g. a neighboring light-source above their top-block.<br>
+     * Only sections that contain any block-light are sampled block by block.
+     */
+    private static double sampleAirLight(Chunk chunk, BlockNeighborhood<?> block, int x, int z, int maxY, int minY) {
+        int light = 0;
+        for (int y = maxY; y >= minY && light < 15; y--) {
+            if (!chunk.hasBlockLight(y >> 4)) {
+                y &= ~0xF; // continue with the top of the section below
+                continue;
+            }
+
+            block.set(x, y, z);
+            if (!block.isInsideRenderBounds()) continue;
+            light = Math.max(light, block.getBlockLightLevel());
+        }
+        return light;
+    }
+
+    /**
+     * Pins all chunks of the rendered area (plus a margin of one chunk for neighbors and biome-blending) for the
+     * duration of the render, so that block-lookups don't have to go through the chunk-cache of the world.
+     */
+    private World createChunkWindow(World world, Vector3i modelMin, Vector3i modelMax) {
+        return new ChunkWindow(world, modelMin.toVector2(true), modelMax.toVector2(true), 1);
+    }
+
 }
@@ -30,13 +30,16 @@
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 
 @SuppressWarnings("unused")
 public class PRBMWriter implements Closeable {
 
-    private static final int FORMAT_VERSION = 1;
-    private static final int HEADER_BITS = 0b0_0_0_00111; // indexed (no) _ indices-type (-) _ endianness (little) _ attribute-nr (7)
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_BITS = 0b1_0_0_00111; // indexed (yes) _ indices-type (16bit) _ endianness (little) _ attribute-nr (7)
+    private static final int HEADER_INDICES_32BIT = 1 << 6;
 
     private static final int ATTRIBUTE_TYPE_FLOAT = 0;
     private static final int ATTRIBUTE_TYPE_INTEGER = 1 << 7;
@@ -57,185 +60,196 @@ public class PRBMWriter implements Closeable {
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT = 8;
     private static final int ATTRIBUTE_ENCODING_UNSIGNED_32BIT_INT = 10;
 
+    private static final int ATTRIBUTE_NOT_QUANTIZED = 0;
+    private static final int ATTRIBUTE_QUANTIZED = 1;
+
+    // positions are quantized to 16 bits if that keeps at least this many bits of sub-block precision (1/128 block)
+    private static final int MIN_POSITION_PRECISION_BITS = 7;
+    private static final int MAX_POSITION_PRECISION_BITS = 16;
+
+    // everything is written into this buffer first, and handed to the output-stream in blocks of this size
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() ->
+            ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    );
+
     private final CountingOutputStream out;
+    private final ByteBuffer buffer;
 
     public PRBMWriter(OutputStream out) {
         this.out = new CountingOutputStream(out);
+        this.buffer = BUFFER.get();
+        this.buffer.clear();
     }
 
     public void write(TileModel model) throws IOException {
-        out.write(FORMAT_VERSION); // version - 1 byte
-        out.write(HEADER_BITS); // format info - 1 byte
-        write3byteValue(model.size * 3); // number of values - 3 bytes
-        write3byteValue(0); // number of indices (0 for non-indexed) - 3 bytes
-
-        writePositionArray(model);
-        writeNormalArray(model);
-        writeColorArray(model);
-        writeUvArray(model);
-        writeAoArray(model);
-        writeBlocklightArray(model);
-        writeSunlightArray(model);
+        IndexedVertices vertices = new IndexedVertices(model);
+        boolean largeIndices = vertices.count > 0xFFFF;
+
+        write1byteValue(FORMAT_VERSION); // version - 1 byte
+        write1byteValue(HEADER_BITS | (largeIndices ? HEADER_INDICES_32BIT : 0)); // format info - 1 byte
+        write3byteValue(vertices.count); // number of values - 3 bytes
+        write3byteValue(model.size * 3); // number of indices - 3 bytes
+
+        writePositionArray(vertices);
+        writeNormalArray(vertices);
+        writeColorArray(vertices);
+        writeUvArray(vertices);
+        writeAoArray(vertices);
+        writeBlocklightArray(vertices);
+        writeSunlightArray(vertices);
+
+        writeIndices(vertices, model.size * 3, largeIndices);
 
         writeMaterialGroups(model);
+
+        flush();
     }
 
     @Override
     public void close() throws IOException {
+        buffer.clear();
         out.close();
     }
 
-    private void writePositionArray(TileModel model) throws IOException {
-        float[] position = model.position;
-
-        writeString("position");
-        out.write(
-                ATTRIBUTE_TYPE_FLOAT |
-                ATTRIBUTE_NOT_NORMALIZED |
-                ATTRIBUTE_CARDINALITY_3D_VEC |
-                ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
-        );
+    private void writePositionArray(IndexedVertices vertices) throws IOException {
+        int[] position = vertices.position;
+        int posSize = vertices.count * 3;
+
+        if (vertices.positionQuantized) {
+            writeAttributeHeader("position",
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NOT_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_3D_VEC |
+                    ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT,
+                    vertices.positionScale, vertices.positionOffset
+            );
 
-        writePadding();
+            writeShorts(position, posSize);
+        } else {
+            writeAttributeHeader("position",
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NOT_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_3D_VEC |
+                    ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
+            );
 
-        int posSize = model.size * TileModel.FI_POSITION;
-        for (int i = 0; i < posSize; i++) {
-            writeFloat(position[i]);
+            writeInts(position, posSize);
         }
     }
 
-    private void writeNormalArray(TileModel model) throws IOException {
-        VectorM3f normal = new VectorM3f(0, 0, 0);
-        float[] position = model.position;
-
-        writeString("normal");
-        out.write(
+    private void writeNormalArray(IndexedVertices vertices) throws IOException {
+        writeAttributeHeader("normal",
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
                 ATTRIBUTE_ENCODING_SIGNED_8BIT_INT
         );
 
-        writePadding();
-
-        int pi, i, j;
-        for (i = 0; i < model.size; i++) {
-            pi = i * TileModel.FI_POSITION;
-            calculateSurfaceNormal(
-                    position[pi], position[pi + 1], position[pi + 2],
-                    position[pi + 3], position[pi + 4], position[pi + 5],
-                    position[pi + 6], position[pi + 7], position[pi + 8],
-                    normal
-            );
-
-            for (j = 0; j < 3; j++) { // all 3 points
-                writeNormalizedSignedByteValue(normal.x);
-                writeNormalizedSignedByteValue(normal.y);
-                writeNormalizedSignedByteValue(normal.z);
-            }
-        }
+        writeBytes(vertices.normal, vertices.count * 3);
     }
 
-    private void writeColorArray(TileModel model) throws IOException {
-        float[] color = model.color;
-
-        writeString("color");
-        out.write(
+    private void writeColorArray(IndexedVertices vertices) throws IOException {
+        writeAttributeHeader("color",
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_3D_VEC |
                 ATTRIBUTE_ENCODING_UNSIGNED_8BIT_INT
         );
 
-        writePadding();
-
-        int colorSize = model.size * TileModel.FI_COLOR, i, j;
-        for (i = 0; i < colorSize; i += 3) {
-            for (j = 0; j < 3; j++) {
-                writeNormalizedUnsignedByteValue(color[i]);
-                writeNormalizedUnsignedByteValue(color[i + 1]);
-                writeNormalizedUnsignedByteValue(color[i + 2]);
-            }
-        }
+        writeBytes(vertices.color, vertices.count * 3);
     }
 
-    private void writeUvArray(TileModel model) throws IOException {
-        float[] uv = model.uv;
+    private void writeUvArray(IndexedVertices vertices) throws IOException {
+        int[] uv = vertices.uv;
+        int uvSize = vertices.count * 2;
 
-        writeString("uv");
-        out.write(
-                ATTRIBUTE_TYPE_FLOAT |
-                ATTRIBUTE_NOT_NORMALIZED |
-                ATTRIBUTE_CARDINALITY_2D_VEC |
-                ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
-        );
+        if (vertices.uvQuantized) {
+            writeAttributeHeader("uv",
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_2D_VEC |
+                    ATTRIBUTE_ENCODING_UNSIGNED_16BIT_INT
+            );
 
-        writePadding();
+            writeShorts(uv, uvSize);
+        } else {
+            writeAttributeHeader("uv",
+                    ATTRIBUTE_TYPE_FLOAT |
+                    ATTRIBUTE_NOT_NORMALIZED |
+                    ATTRIBUTE_CARDINALITY_2D_VEC |
+                    ATTRIBUTE_ENCODING_SIGNED_32BIT_FLOAT
+            );
 
-        int uvSize = model.size * TileModel.FI_UV;
-        for (int i = 0; i < uvSize; i++) {
-            writeFloat(uv[i]);
+            writeInts(uv, uvSize);
         }
     }
 
-    private void writeAoArray(TileModel model) throws IOException {
-        float[] ao = model.ao;
-
-        writeString("ao");
-        out.write(
+    private void writeAoArray(IndexedVertices vertices) throws IOException {
+        writeAttributeHeader("ao",
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
                 ATTRIBUTE_ENCODING_UNSIGNED_8BIT_INT
         );
 
-        writePadding();
-
-        int uvSize = model.size * TileModel.FI_AO;
-        for (int i = 0; i < uvSize; i++) {
-            writeNormalizedUnsignedByteValue(ao[i]);
-        }
+        writeBytes(vertices.ao, vertices.count);
     }
 
-    private void writeBlocklightArray(TileModel model) throws IOException {
-        byte[] blocklight = model.blocklight;
-
-        writeString("blocklight");
-        out.write(
+    private void writeBlocklightArray(IndexedVertices vertices) throws IOException {
+        writeAttributeHeader("blocklight",
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
                 ATTRIBUTE_ENCODING_SIGNED_8BIT_INT
         );
 
-        writePadding();
-
-        int blSize = model.size * TileModel.FI_BLOCKLIGHT;
-        for (int i = 0; i < blSize; i++) {
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
-            out.write(blocklight[i]);
-        }
+        writeBytes(vertices.blocklight, vertices.count);
     }
 
-    private void writeSunlightArray(TileModel model) throws IOException {
-        byte[] sunlight = model.sunlight;
-
-        writeString("sunlight");
-        out.write(
+    private void writeSunlightArray(IndexedVertices vertices) throws IOException {
+        writeAttributeHeader("sunlight",
                 ATTRIBUTE_TYPE_FLOAT |
                 ATTRIBUTE_NOT_NORMALIZED |
                 ATTRIBUTE_CARDINALITY_SCALAR |
                 ATTRIBUTE_ENCODING_SIGNED_8BIT_INT
         );
 
+        writeBytes(vertices.sunlight, vertices.count);
+    }
+
+    private void writeIndices(IndexedVertices vertices, int count, boolean largeIndices) throws IOException {
+        int[] indices = vertices.indices;
+
+        writePadding();
+
+        if (largeIndices) {
+            writeInts(indices, count);
+        } else {
+            writeShorts(indices, count);
+        }
+    }
+
+    private void writeAttributeHeader(String name, int flags) throws IOException {
+        writeString(name);
+        write1byteValue(flags);
+        write1byteValue(ATTRIBUTE_NOT_QUANTIZED);
+        writePadding();
+    }
+
+    /**
+     * Writes the header of an attribute with quantized values.
+     * The actual values of this attribute are <code>offset + scale * value</code>, with one offset per component.
+     */
+    private void writeAttributeHeader(String name, int flags, float scale, float... offset) throws IOException {
+        writeString(name);
+        write1byteValue(flags);
+        write1byteValue(ATTRIBUTE_QUANTIZED);
         writePadding();
 
-        int slSize = model.size * TileModel.FI_SUNLIGHT;
-        for (int i = 0; i < slSize; i++) {
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
-            out.write(sunlight[i]);
+        writeFloat(scale);
+        for (float o : offset) {
+            writeFloat(o);
         }
     }
 
@@ -277,52 +291,98 @@ private void writeMaterialGroups(TileModel model) throws IOException {
     }
 
     private void writePadding() throws IOException {
-        int paddingBytes = (int) (-out.getCount() & 0x3);
+        int paddingBytes = (int) (-(out.getCount() + buffer.position()) & 0x3);
         for (int i = 0; i < paddingBytes; i++) {
-            out.write(0);
+            write1byteValue(0);
         }
     }
 
+    private void write1byteValue(int value) throws IOException {
+        ensureRemaining(1);
+        buffer.put((byte) value);
+    }
+
     private void write2byteValue(int value) throws IOException {
         if (value > 0xFFFF) throw new IOException("Value too high: " + value);
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
+        ensureRemaining(2);
+        buffer.putShort((short) value);
     }
 
     private void write3byteValue(int value) throws IOException {
         if (value > 0xFFFFFF) throw new IOException("Value too high: " + value);
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
-        out.write((value >> 16) & 0xFF);
+        ensureRemaining(3);
+        buffer.put((byte) value);
+        buffer.putShort((short) (value >> 8));
     }
 
     private void write4byteValue(int value) throws IOException {
-        out.write(value & 0xFF);
-        out.write((value >> 8) & 0xFF);
-        out.write((value >> 16) & 0xFF);
-        out.write((value >> 24) & 0xFF);
+        ensureRemaining(4);
+        buffer.putInt(value);
+    }
+
+    private void writeBytes(byte[] values, int length) throws IOException {
+        int offset = 0, n;
+        while (offset < length) {
+            ensureRemaining(1);
+            n = Math.min(length - offset, buffer.remaining());
+            buffer.put(values, offset, n);
+            offset += n;
+        }
+    }
+
+    /**
+     * Writes the lower 16 bits of each value
+     */
+    private void writeShorts(int[] values, int length) throws IOException {
+        int offset = 0, end;
+        while (offset < length) {
+            ensureRemaining(2);
+            end = Math.min(length, offset + (buffer.remaining() >> 1));
+            for (; offset < end; offset++) {
+                buffer.putShort((short) values[offset]);
+            }
+        }
+    }
+
+    private void writeInts(int[] values, int length) throws IOException {
+        int offset = 0, n;
+        while (offset < length) {
+            ensureRemaining(4);
+            n = Math.min(length - offset, buffer.remaining() >> 2);
+            buffer.asIntBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + (n << 2));
+            offset += n;
+        }
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) flush();
+    }
+
+    private void flush() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
     }
 
     private void writeFloat(float value) throws IOException {
         write4byteValue(Float.floatToIntBits(value));
     }
 
-    private void writeNormalizedSignedByteValue(float value) throws IOException {
-        byte normalized = (byte) (value * 0x80 - 0.5);
-        out.write(normalized & 0xFF);
+    private static byte normalizedSignedByte(float value) {
+        return (byte) (value * 0x80 - 0.5);
     }
 
-    private void writeNormalizedUnsignedByteValue(float value) throws IOException {
-        int normalized = (int) (value * 0xFF);
-        out.write(normalized & 0xFF);
+    private static byte normalizedUnsignedByte(float value) {
+        return (byte) (int) (value * 0xFF);
     }
 
     private void writeString(String value) throws IOException {
-        out.write(value.getBytes(StandardCharsets.US_ASCII));
-        out.write(0);
+        byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+        writeBytes(bytes, bytes.length);
+        write1byteValue(0);
     }
 
-    private void calculateSurfaceNormal(
+    private static void calculateSurfaceNormal(
             float p1x, float p1y, float p1z,
             float p2x, float p2y, float p2z,
             float p3x, float p3y, float p3z,
@@ -343,4 +403,195 @@ private void calculateSurfaceNormal(
         target.set(p1x, p1y, p1z);
     }
 
+    /**
+     * The vertices of a {@link TileModel} with their attributes already encoded as they are written.
+     * Identical vertices within the same material-group are only stored once and referenced through the indices.
+     * <p>
+     * Positions are quantized to 16-bit fixed-point values relative to an offset, and uvs are stored as normalized
+     * 16-bit values, as long as that is possible without losing visible precision.
+     * Otherwise, they are stored as the raw bits of their float values.
+     */
+    private static class IndexedVertices {
+
+        private final int[] position, uv;
+        private final byte[] normal, color, ao, blocklight, sunlight;
+        private final int[] indices;
+        private int count;
+
+        // open-addressing hash-table of (vertex + 1), entries of vertices from previous groups count as empty
+        private final int[] table;
+        private final int tableMask;
+        private int groupStart;
+
+        private final boolean positionQuantized, uvQuantized;
+        private final float positionScale;
+        private final float[] positionOffset;
+        private final float positionFactor;
+
+        IndexedVertices(TileModel model) {
+            int maxCount = model.size * 3;
+
+            this.position = new int[maxCount * 3];
+            this.uv = new int[maxCount * 2];
+            this.normal = new byte[maxCount * 3];
+            this.color = new byte[maxCount * 3];
+            this.ao = new byte[maxCount];
+            this.blocklight = new byte[maxCount];
+            this.sunlight = new byte[maxCount];
+            this.indices = new int[maxCount];
+            this.count = 0;
+
+            this.table = new int[Integer.highestOneBit(Math.max(maxCount, 1)) << 2];
+            this.tableMask = table.length - 1;
+            this.groupStart = 0;
+
+            float[] mPosition = model.position, mUv = model.uv, mAo = model.ao, mColor = model.color;
+
+            // find the smallest position-offset and the highest precision that fits into 16 bit
+            float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+            float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+            int posSize = model.size * TileModel.FI_POSITION, i, a;
+            for (i = 0; i < posSize; i += 3) {
+                for (a = 0; a < 3; a++) {
+                    min[a] = Math.min(min[a], mPosition[i + a]);
+                    max[a] = Math.max(max[a], mPosition[i + a]);
+                }
+            }
+
+            this.positionOffset = new float[3];
+            boolean finite = true;
+            float span = 0;
+            for (a = 0; a < 3; a++) {
+                finite &= Float.isFinite(min[a]) && Float.isFinite(max[a]);
+                positionOffset[a] = (float) Math.floor(min[a]);
+                span = Math.max(span, max[a] - positionOffset[a]);
+            }
+
+            int precisionBits = MAX_POSITION_PRECISION_BITS;
+            while (precisionBits >= MIN_POSITION_PRECISION_BITS && span * (1 << precisionBits) > 0xFFFF)
+                precisionBits--;
+
+            this.positionQuantized = finite && precisionBits >= MIN_POSITION_PRECISION_BITS;
+            this.positionFactor = 1 << precisionBits;
+            this.positionScale = 1f / positionFactor;
+
+            // uvs can be normalized if they are all inside the texture (merged faces have uvs beyond 1)
+            boolean uvInRange = true;
+            int uvSize = model.size * TileModel.FI_UV;
+            for (i = 0; i < uvSize; i++) {
+                if (!(mUv[i] >= 0f && mUv[i] <= 1f)) {
+                    uvInRange = false;
+                    break;
+                }
+            }
+            this.uvQuantized = uvInRange;
+
+            VectorM3f faceNormal = new VectorM3f(0, 0, 0);
+            int lastMaterial = model.size > 0 ? model.materialIndex[0] : 0;
+            int face, pi, ti, ci, j;
+            byte nx, ny, nz, cr, cg, cb, bl, sl;
+            for (face = 0; face < model.size; face++) {
+                if (model.materialIndex[face] != lastMaterial) {
+                    lastMaterial = model.materialIndex[face];
+                    groupStart = count;
+                }
+
+                pi = face * TileModel.FI_POSITION;
+                calculateSurfaceNormal(
+                        mPosition[pi], mPosition[pi + 1], mPosition[pi + 2],
+                        mPosition[pi + 3], mPosition[pi + 4], mPosition[pi + 5],
+                        mPosition[pi + 6], mPosition[pi + 7], mPosition[pi + 8],
+                        faceNormal
+                );
+                nx = normalizedSignedByte(faceNormal.x);
+                ny = normalizedSignedByte(faceNormal.y);
+                nz = normalizedSignedByte(faceNormal.z);
+
+                ci = face * TileModel.FI_COLOR;
+                cr = normalizedUnsignedByte(mColor[ci]);
+                cg = normalizedUnsignedByte(mColor[ci + 1]);
+                cb = normalizedUnsignedByte(mColor[ci + 2]);
+
+                bl = model.blocklight[face];
+                sl = model.sunlight[face];
+
+                ti = face * TileModel.FI_UV;
+                for (j = 0; j < 3; j++) {
+                    indices[face * 3 + j] = index(
+                            encodePosition(mPosition[pi + j * 3], 0),
+                            encodePosition(mPosition[pi + j * 3 + 1], 1),
+                            encodePosition(mPosition[pi + j * 3 + 2], 2),
+                            nx, ny, nz,
+                            cr, cg, cb,
+                            encodeUv(mUv[ti + j * 2]), encodeUv(mUv[ti + j * 2 + 1]),
+                            normalizedUnsignedByte(mAo[face * TileModel.FI_AO + j]),
+                            bl, sl
+                    );
+                }
+            }
+        }
+
+        private int encodePosition(float value, int axis) {
+            if (positionQuantized) return Math.round((value - positionOffset[axis]) * positionFactor);
+            return Float.floatToIntBits(value);
+        }
+
+        private int encodeUv(float value) {
+            if (uvQuantized) return Math.round(value * 0xFFFF);
+            return Float.floatToIntBits(value);
+        }
+
+        private int index(
+                int xb, int yb, int zb,
+                byte nx, byte ny, byte nz,
+                byte cr, byte cg, byte cb,
+                int ub, int vb,
+                byte a, byte bl, byte sl
+        ) {
+            int packed1 = (nx & 0xFF) | (ny & 0xFF) << 8 | (nz & 0xFF) << 16 | (a & 0xFF) << 24;
+            int packed2 = (cr & 0xFF) | (cg & 0xFF) << 8 | (cb & 0xFF) << 16 | (bl & 0x0F) << 24 | (sl & 0x0F) << 28;
+
+            int hash = xb;
+            hash = hash * 31 + yb;
+            hash = hash * 31 + zb;
+            hash = hash * 31 + ub;
+            hash = hash * 31 + vb;
+            hash = hash * 31 + packed1;
+            hash = hash * 31 + packed2;
+            hash ^= hash >>> 16;
+            hash *= 0x85EBCA6B;
+            hash ^= hash >>> 13;
+
+            int slot = hash & tableMask, vertex, pi, ui;
+            while ((vertex = table[slot] - 1) >= groupStart) {
+                pi = vertex * 3; ui = vertex * 2;
+                if (
+                        position[pi] == xb && position[pi + 1] == yb && position[pi + 2] == zb &&
+                        uv[ui] == ub && uv[ui + 1] == vb &&
+                        normal[pi] == nx && normal[pi + 1] == ny && normal[pi + 2] == nz &&
+                        color[pi] == cr && color[pi + 1] == cg && color[pi + 2] == cb &&
+                        ao[vertex] == a && blocklight[vertex] == bl && sunlight[vertex] == sl
+                ) return vertex;
+
+                slot = (slot + 1) & tableMask;
+            }
+
+            // new vertex
+            vertex = count++;
+            table[slot] = vertex + 1;
+
+            pi = vertex * 3; ui = vertex * 2;
+            position[pi] = xb; position[pi + 1] = yb; position[pi + 2] = zb;
+            normal[pi] = nx; normal[pi + 1] = ny; normal[pi + 2] = nz;
+            color[pi] = cr; color[pi + 1] = cg; color[pi + 2] = cb;
+            uv[ui] = ub; uv[ui + 1] = vb;
+            ao[vertex] = a;
+            blocklight[vertex] = bl;
+            sunlight[vertex] = sl;
+
+            return vertex;
+        }
+
+    }
+
 }
@@ -125,4 +125,20 @@ default Predicate<Vector2i> getCellRenderBoundariesFilter(Grid grid, boolean all
 
     boolean isSaveHiresLayer();
 
+    /**
+     * If this is true, no hires-models will be built at all.
+     * Only the lowres-layer will be rendered, using the map-colors of the top-most blocks.
+     */
+    default boolean isLowresOnly() {
+        return false;
+    }
+
+    /**
+     * If this is true, adjacent coplanar faces of a hires-tile that share the same texture, color and light
+     * are merged into larger faces with a repeated texture before the tile is saved.
+     */
+    default boolean isMergeFaces() {
+        return false;
+    }
+
 }
@@ -26,7 +26,6 @@
 
 import com.flowpowered.math.TrigMath;
 import de.bluecolored.bluemap.core.util.InstancePool;
-import de.bluecolored.bluemap.core.util.MergeSort;
 import de.bluecolored.bluemap.core.util.math.MatrixM3f;
 import de.bluecolored.bluemap.core.util.math.MatrixM4f;
 
@@ -45,7 +44,7 @@ public class TileModel {
 
     private static final InstancePool<TileModel> INSTANCE_POOL = new InstancePool<>(
             () -> new TileModel(100),
-            TileModel::clear
+            TileModel::recycle
     );
 
     private int capacity;
@@ -54,7 +53,13 @@ public class TileModel {
     float[] position;
     float[] color, uv, ao;
     byte[] sunlight, blocklight;
-    int[] materialIndex, materialIndexSort, materialIndexSortSupport;
+    int[] materialIndex, materialIndexSort;
+
+    // the faces are sorted into these arrays, which are then swapped with the ones above
+    private float[] sortPosition;
+    private float[] sortColor, sortUv, sortAo;
+    private byte[] sortSunlight, sortBlocklight;
+    private int[] sortMaterialIndex;
 
     float[] indexedPosition;
     int[] positionIndex;
@@ -348,6 +353,22 @@ public TileModel clear() {
         return this;
     }
 
+    /**
+     * Clears the model and drops the buffers used for sorting,
+     * so pooled models don't keep a second copy of all attributes while they are not in use.
+     */
+    private TileModel recycle() {
+        releaseSortBuffers();
+        return clear();
+    }
+
+    private void releaseSortBuffers() {
+        sortPosition = null;
+        sortColor = sortUv = sortAo = null;
+        sortSunlight = sortBlocklight = null;
+        sortMaterialIndex = null;
+    }
+
     private void ensureCapacity(int count) {
         if (size + count > capacity){
             float[] _position = position;
@@ -383,94 +404,94 @@ private void setCapacity(int capacity) {
         materialIndex = new int     [capacity * FI_MATERIAL_INDEX];
 
         materialIndexSort = new int[materialIndex.length];
-        materialIndexSortSupport = new int [materialIndex.length];
+
+        // (re-)created on the next sort
+        releaseSortBuffers();
     }
 
+    /**
+     * Sorts the faces by their material-index using a stable counting-sort.
+     */
     public void sort() {
         if (size <= 1) return; // nothing to sort
 
-        // initialize material-index-sort
-        for (int i = 0; i < size; i++) {
-            materialIndexSort[i] = i;
-            materialIndexSortSupport[i] = i;
+        // find the range of material-indices and check if the faces are already sorted
+        int min = materialIndex[0], max = min, m, i;
+        boolean sorted = true;
+        for (i = 1; i < size; i++) {
+            m = materialIndex[i];
+            if (m < materialIndex[i - 1]) sorted = false;
+            if (m < min) min = m;
+            else if (m > max) max = m;
+        }
+        if (sorted) return;
+
+        // count the faces of each material and turn the counts into the first sorted position of each material
+        int[] offsets = new int[max - min + 1];
+        for (i = 0; i < size; i++)
+            offsets[materialIndex[i] - min]++;
+
+        int offset = 0, count;
+        for (i = 0; i < offsets.length; i++) {
+            count = offsets[i];
+            offsets[i] = offset;
+            offset += count;
         }
 
-        // sort
-        MergeSort.mergeSortInt(materialIndexSort, 0, size, this::compareMaterialIndex, materialIndexSortSupport);
-
-        // move
-        int s, c;
-        for (int i = 0; i < size; i++) {
-            s = materialIndexSort[i]; c = 0;
-            while (s < i) {
-                s = materialIndexSort[s];
-
-                // should never happen, just making absolutely sure this can't get stuck in an endless loop
-                if (c++ > size) throw new IllegalStateException();
-            }
-            swap(i, s);
+        // sorted position of each face
+        int[] target = materialIndexSort;
+        for (i = 0; i < size; i++)
+            target[i] = offsets[materialIndex[i] - min]++;
+
+        // scatter all attributes into the second set of arrays and swap them
+        if (sortPosition == null) {
+            sortPosition =      new float   [position.length];
+            sortUv =            new float   [uv.length];
+            sortAo =            new float   [ao.length];
+
+            sortColor =         new float   [color.length];
+            sortSunlight =      new byte    [sunlight.length];
+            sortBlocklight =    new byte    [blocklight.length];
+            sortMaterialIndex = new int     [materialIndex.length];
         }
-    }
 
-    private int compareMaterialIndex(int i1, int i2) {
-        return Integer.compare(materialIndex[i1], materialIndex[i2]);
-    }
+        float[] vf;
+        byte[] vb;
+        int[] vi;
 
-    private void swap(int face1, int face2) {
-        int i, if1, if2, vi;
-        float vf;
-        byte vb;
-
-        //swap positions
-        if1 = face1 * FI_POSITION;
-        if2 = face2 * FI_POSITION;
-        for (i = 0; i < FI_POSITION; i++){
-            vf = position[if1 + i];
-            position[if1 + i] = position[if2 + i];
-            position[if2 + i] = vf;
-        }
+        scatter(position, sortPosition, FI_POSITION, target);
+        vf = position; position = sortPosition; sortPosition = vf;
 
-        //swap uv
-        if1 = face1 * FI_UV;
-        if2 = face2 * FI_UV;
-        for (i = 0; i < FI_UV; i++){
-            vf = uv[if1 + i];
-            uv[if1 + i] = uv[if2 + i];
-            uv[if2 + i] = vf;
-        }
+        scatter(uv, sortUv, FI_UV, target);
+        vf = uv; uv = sortUv; sortUv = vf;
 
-        //swap ao
-        if1 = face1 * FI_AO;
-        if2 = face2 * FI_AO;
-        for (i = 0; i < FI_AO; i++){
-            vf = ao[if1 + i];
-            ao[if1 + i] = ao[if2 + i];
-            ao[if2 + i] = vf;
-        }
+        scatter(ao, sortAo, FI_AO, target);
+        vf = ao; ao = sortAo; sortAo = vf;
 
-        //swap color
-        if1 = face1 * FI_COLOR;
-        if2 = face2 * FI_COLOR;
-        for (i = 0; i < FI_COLOR; i++){
-            vf = color[if1 + i];
-            color[if1 + i] = color[if2 + i];
-            color[if2 + i] = vf;
-        }
+        scatter(color, sortColor, FI_COLOR, target);
+        vf = color; color = sortColor; sortColor = vf;
+
+        //scatter sunlight (assuming FI_SUNLIGHT = 1)
+        for (i = 0; i < size; i++) sortSunlight[target[i]] = sunlight[i];
+        vb = sunlight; sunlight = sortSunlight; sortSunlight = vb;
 
-        //swap sunlight (assuming FI_SUNLIGHT = 1)
-        vb = sunlight[face1];
-        sunlight[face1] = sunlight[face2];
-        sunlight[face2] = vb;
+        //scatter blocklight (assuming FI_BLOCKLIGHT = 1)
+        for (i = 0; i < size; i++) sortBlocklight[target[i]] = blocklight[i];
+        vb = blocklight; blocklight = sortBlocklight; sortBlocklight = vb;
 
-        //swap blocklight (assuming FI_BLOCKLIGHT = 1)
-        vb = blocklight[face1];
-        blocklight[face1] = blocklight[face2];
-        blocklight[face2] = vb;
+        //scatter material-index (assuming FI_MATERIAL_INDEX = 1)
+        for (i = 0; i < size; i++) sortMaterialIndex[target[i]] = materialIndex[i];
+        vi = materialIndex; materialIndex = sortMaterialIndex; sortMaterialIndex = vi;
+    }
 
-        //swap material-index (assuming FI_MATERIAL_INDEX = 1)
-        vi = materialIndex[face1];
-        materialIndex[face1] = materialIndex[face2];
-        materialIndex[face2] = vi;
+    private void scatter(float[] source, float[] destination, int stride, int[] target) {
+        int i, j, si, di;
+        for (i = 0; i < size; i++) {
+            si = i * stride;
+            di = target[i] * stride;
+            for (j = 0; j < stride; j++)
+                destination[di + j] = source[si + j];
+        }
     }
 
     public static InstancePool<TileModel> instancePool() {
@@ -0,0 +1,321 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static de.bluecolored.bluemap.core.map.hires.TileModel.*;
+
+/**
+ * Merges adjacent coplanar quads of a {@link TileModel} that share the same material, color, light and
+ * ambient-occlusion into bigger quads.
+ * <p>
+ * Only axis-aligned quads covering exactly one block-face and using the full texture are merged.
+ * The uvs of a merged quad continue beyond 1 (or below 0 for mirrored textures), so the texture repeats once per block.
+ * All other faces are kept unchanged.
+ */
+final class TileModelFaceMerger {
+
+    private TileModelFaceMerger() {}
+
+    public static void merge(TileModel model) {
+        int size = model.size;
+        if (size < 4) return; // nothing to merge
+
+        Map<QuadKey, Group> groups = new HashMap<>();
+        int[] cell = new int[2];
+        for (int face = 0; face + 1 < size; face++) {
+            QuadKey key = analyze(model, face, cell);
+            if (key == null) continue;
+            groups.computeIfAbsent(key, k -> new Group()).add(face, cell[0], cell[1]);
+            face++; // skip the second triangle of the quad
+        }
+
+        boolean[] removed = new boolean[size];
+        boolean changed = false;
+        for (Map.Entry<QuadKey, Group> entry : groups.entrySet()) {
+            if (entry.getValue().count < 2) continue;
+            changed |= entry.getValue().merge(model, entry.getKey(), removed);
+        }
+        if (!changed) return;
+
+        // compact the remaining faces
+        int write = 0;
+        for (int face = 0; face < size; face++) {
+            if (removed[face]) continue;
+            if (write != face) copyFace(model, face, write);
+            write++;
+        }
+        model.size = write;
+    }
+
+    /**
+     * Checks if the two faces starting at the given face form a quad that can be merged.
+     * If so, the key of the quad is returned and its lower cell-coordinates on the plane are written into cell.
+     * Otherwise, null is returned.
+     */
+    private static QuadKey analyze(TileModel model, int face, int[] cell) {
+        float[] position = model.position, uv = model.uv, ao = model.ao, color = model.color;
+        int f1 = face, f2 = face + 1;
+
+        // same material and light
+        if (model.materialIndex[f1] != model.materialIndex[f2]) return null;
+        if (model.sunlight[f1] != model.sunlight[f2]) return null;
+        if (model.blocklight[f1] != model.blocklight[f2]) return null;
+
+        int c1 = f1 * FI_COLOR, c2 = f2 * FI_COLOR;
+        for (int i = 0; i < FI_COLOR; i++)
+            if (color[c1 + i] != color[c2 + i]) return null;
+
+        // the second face has to be (v0, v2, v3) of the quad (v0, v1, v2, v3)
+        int p1 = f1 * FI_POSITION, p2 = f2 * FI_POSITION;
+        for (int i = 0; i < 3; i++) {
+            if (position[p1 + i] != position[p2 + i]) return null;
+            if (position[p1 + 6 + i] != position[p2 + 3 + i]) return null;
+        }
+
+        int t1 = f1 * FI_UV, t2 = f2 * FI_UV;
+        for (int i = 0; i < 2; i++) {
+            if (uv[t1 + i] != uv[t2 + i]) return null;
+            if (uv[t1 + 4 + i] != uv[t2 + 2 + i]) return null;
+        }
+
+        // uniform ambient-occlusion
+        int a1 = f1 * FI_AO, a2 = f2 * FI_AO;
+        float aoValue = ao[a1];
+        for (int i = 0; i < FI_AO; i++)
+            if (ao[a1 + i] != aoValue || ao[a2 + i] != aoValue) return null;
+
+        int[] p = { p1, p1 + 3, p1 + 6, p2 + 6 };
+        int[] t = { t1, t1 + 2, t1 + 4, t2 + 4 };
+
+        // find the axis the quad is perpendicular to
+        int axis = -1;
+        for (int n = 0; n < 3; n++) {
+            float c = position[p[0] + n];
+            if (position[p[1] + n] == c && position[p[2] + n] == c && position[p[3] + n] == c) {
+                axis = n;
+                break;
+            }
+        }
+        if (axis == -1) return null;
+        int ua = (axis + 1) % 3, va = (axis + 2) % 3;
+
+        // the quad has to cover exactly one block on the plane
+        float minU = Float.POSITIVE_INFINITY, minV = Float.POSITIVE_INFINITY;
+        for (int k = 0; k < 4; k++) {
+            minU = Math.min(minU, position[p[k] + ua]);
+            minV = Math.min(minV, position[p[k] + va]);
+        }
+        if (minU != (float) Math.floor(minU) || minV != (float) Math.floor(minV)) return null;
+
+        int[] corner = new int[4];
+        int[] cornerVertex = new int[4];
+        int cornerMask = 0;
+        for (int k = 0; k < 4; k++) {
+            int a = unitOffset(position[p[k] + ua] - minU);
+            int b = unitOffset(position[p[k] + va] - minV);
+            if (a < 0 || b < 0) return null;
+            corner[k] = a | b << 1;
+            cornerVertex[corner[k]] = k;
+            cornerMask |= 1 << corner[k];
+        }
+        if (cornerMask != 0b1111) return null;
+
+        // the vertices have to go around the quad (the diagonal is shared by both faces)
+        if ((corner[0] ^ corner[2]) != 0b11 || (corner[1] ^ corner[3]) != 0b11) return null;
+
+        // the uvs have to map the full texture without distortion
+        int uv00 = t[cornerVertex[0b00]], uv10 = t[cornerVertex[0b01]], uv01 = t[cornerVertex[0b10]], uv11 = t[cornerVertex[0b11]];
+        int u00 = unitOffset(uv[uv00]), v00 = unitOffset(uv[uv00 + 1]);
+        int u10 = unitOffset(uv[uv10]), v10 = unitOffset(uv[uv10 + 1]);
+        int u01 = unitOffset(uv[uv01]), v01 = unitOffset(uv[uv01 + 1]);
+        int u11 = unitOffset(uv[uv11]), v11 = unitOffset(uv[uv11 + 1]);
+        if ((u00 | v00 | u10 | v10 | u01 | v01 | u11 | v11) < 0) return null;
+
+        int duU = u10 - u00, duV = v10 - v00;
+        int dvU = u01 - u00, dvV = v01 - v00;
+        if (Math.abs(duU) + Math.abs(duV) != 1 || Math.abs(dvU) + Math.abs(dvV) != 1) return null;
+        if (duU * dvU + duV * dvV != 0) return null;
+        if (u11 != u00 + duU + dvU || v11 != v00 + duV + dvV) return null;
+
+        // winding of the quad on the plane
+        float e1u = position[p[1] + ua] - position[p[0] + ua], e1v = position[p[1] + va] - position[p[0] + va];
+        float e2u = position[p[2] + ua] - position[p[0] + ua], e2v = position[p[2] + va] - position[p[0] + va];
+        boolean clockwise = e1u * e2v - e1v * e2u < 0;
+
+        cell[0] = (int) minU;
+        cell[1] = (int) minV;
+
+        return new QuadKey(
+                axis, position[p[0] + axis], clockwise,
+                model.materialIndex[f1],
+                color[c1], color[c1 + 1], color[c1 + 2],
+                model.sunlight[f1], model.blocklight[f1],
+                aoValue,
+                u00, v00, duU, duV, dvU, dvV
+        );
+    }
+
+    /**
+     * Replaces the quad starting at the given face with a quad that is scaled to cover width * height cells
+     */
+    private static void resize(TileModel model, int face, QuadKey key, int cellU, int cellV, int width, int height) {
+        float[] position = model.position, uv = model.uv;
+        int p1 = face * FI_POSITION, p2 = (face + 1) * FI_POSITION;
+        int t1 = face * FI_UV, t2 = (face + 1) * FI_UV;
+        int ua = (key.axis + 1) % 3, va = (key.axis + 2) % 3;
+
+        int[] p = { p1, p1 + 3, p1 + 6, p2 + 6 };
+        int[] t = { t1, t1 + 2, t1 + 4, t2 + 4 };
+
+        for (int k = 0; k < 4; k++) {
+            int a = unitOffset(position[p[k] + ua] - cellU);
+            int b = unitOffset(position[p[k] + va] - cellV);
+
+            position[p[k] + ua] = cellU + a * width;
+            position[p[k] + va] = cellV + b * height;
+
+            uv[t[k]    ] = key.u00 + a * width * key.duU + b * height * key.dvU;
+            uv[t[k] + 1] = key.v00 + a * width * key.duV + b * height * key.dvV;
+        }
+
+        // second face shares v0 and v2
+        System.arraycopy(position, p1, position, p2, 3);
+        System.arraycopy(position, p1 + 6, position, p2 + 3, 3);
+        System.arraycopy(uv, t1, uv, t2, 2);
+        System.arraycopy(uv, t1 + 4, uv, t2 + 2, 2);
+    }
+
+    private static void copyFace(TileModel model, int from, int to) {
+        System.arraycopy(model.position, from * FI_POSITION, model.position, to * FI_POSITION, FI_POSITION);
+        System.arraycopy(model.uv, from * FI_UV, model.uv, to * FI_UV, FI_UV);
+        System.arraycopy(model.ao, from * FI_AO, model.ao, to * FI_AO, FI_AO);
+        System.arraycopy(model.color, from * FI_COLOR, model.color, to * FI_COLOR, FI_COLOR);
+        model.sunlight[to] = model.sunlight[from];
+        model.blocklight[to] = model.blocklight[from];
+        model.materialIndex[to] = model.materialIndex[from];
+    }
+
+    /**
+     * Returns 0 or 1 if the value is exactly that, -1 otherwise
+     */
+    private static int unitOffset(float value) {
+        if (value == 0f) return 0;
+        if (value == 1f) return 1;
+        return -1;
+    }
+
+    private static long cellKey(int u, int v) {
+        return (long) v << 32 | (u + 0x80000000L);
+    }
+
+    private record QuadKey(
+            int axis, float plane, boolean clockwise,
+            int material,
+            float r, float g, float b,
+            byte sunlight, byte blocklight,
+            float ao,
+            int u00, int v00, int duU, int duV, int dvU, int dvV
+    ) {}
+
+    private static class Group {
+        private int[] faces = new int[8], us = new int[8], vs = new int[8];
+        private int count = 0;
+
+        void add(int face, int u, int v) {
+            if (count == faces.length) {
+                faces = Arrays.copyOf(faces, count * 2);
+                us = Arrays.copyOf(us, count * 2);
+                vs = Arrays.copyOf(vs, count * 2);
+            }
+            faces[count] = face;
+            us[count] = u;
+            vs[count] = v;
+            count++;
+        }
+
+        /**
+         * Greedily covers the cells of this group with rectangles, and resizes the first quad of each rectangle
+         * to cover the whole rectangle. All other quads of the rectangle are marked as removed.
+         * Returns true if any quads have been merged.
+         */
+        boolean merge(TileModel model, QuadKey key, boolean[] removed) {
+            Map<Long, Integer> cells = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++)
+                cells.putIfAbsent(cellKey(us[i], vs[i]), i); // duplicate quads on the same cell are kept unchanged
+
+            long[] order = new long[cells.size()];
+            int n = 0;
+            for (long cell : cells.keySet()) order[n++] = cell;
+            Arrays.sort(order);
+
+            boolean[] consumed = new boolean[count];
+            boolean merged = false;
+            for (long cell : order) {
+                int i = cells.get(cell);
+                if (consumed[i]) continue;
+                int u = us[i], v = vs[i];
+
+                int width = 1;
+                while (isFree(cells, consumed, u + width, v)) width++;
+
+                int height = 1;
+                grow: while (true) {
+                    for (int x = 0; x < width; x++)
+                        if (!isFree(cells, consumed, u + x, v + height)) break grow;
+                    height++;
+                }
+
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        int j = cells.get(cellKey(u + x, v + y));
+                        consumed[j] = true;
+                        if (j != i) {
+                            removed[faces[j]] = true;
+                            removed[faces[j] + 1] = true;
+                        }
+                    }
+                }
+
+                if (width > 1 || height > 1) {
+                    resize(model, faces[i], key, u, v, width, height);
+                    merged = true;
+                }
+            }
+
+            return merged;
+        }
+
+        private static boolean isFree(Map<Long, Integer> cells, boolean[] consumed, int u, int v) {
+            Integer i = cells.get(cellKey(u, v));
+            return i != null && !consumed[i];
+        }
+
+    }
+
+}
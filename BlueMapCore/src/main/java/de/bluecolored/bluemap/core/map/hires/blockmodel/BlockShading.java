@@ -0,0 +1,209 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.blockmodel;
+
+import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+import de.bluecolored.bluemap.core.world.block.ExtendedBlock;
+import lombok.Getter;
+
+/**
+ * The light-, cave-, culling-, tint- and map-color-calculations of a block, shared by the model-builders and the
+ * {@link BlockStateColorFactory}, so that rendering only the map-color always gives the same result as building
+ * the whole model.<br>
+ * <br>
+ * <i>This class is not thread-safe, create one instance per thread.</i>
+ */
+class BlockShading {
+
+    static final BlockState WATERLOGGED_BLOCKSTATE = new BlockState("minecraft:water").intern();
+
+    private final RenderSettings renderSettings;
+    private final BlockColorCalculatorFactory.BlockColorCalculator blockColorCalculator;
+
+    private final Color tintColor = new Color();
+    private final Color mapColor = new Color();
+
+    @Getter private int sunLight, blockLight;
+
+    BlockShading(ResourcePack resourcePack, RenderSettings renderSettings) {
+        this.renderSettings = renderSettings;
+        this.blockColorCalculator = resourcePack.getColorCalculatorFactory().createCalculator();
+    }
+
+    /**
+     * Calculates the light of a face of the model, which is the maximum of the light at the block and the light at
+     * the block the face is facing.
+     * @return false if the face is in a "cave" and should not be rendered
+     */
+    boolean lightFace(BlockNeighborhood<?> block, CompiledModel m, int face) {
+        int li = face * 3;
+        ExtendedBlock<?> facedBlockNeighbor = block.getNeighborBlock(
+                m.lightNeighbors[li],
+                m.lightNeighbors[li + 1],
+                m.lightNeighbors[li + 2]
+        );
+        LightData blockLightData = block.getLightData();
+        LightData facedLightData = facedBlockNeighbor.getLightData();
+
+        sunLight = Math.max(blockLightData.getSkyLight(), facedLightData.getSkyLight());
+        blockLight = Math.max(blockLightData.getBlockLight(), facedLightData.getBlockLight());
+
+        return !isCave(block);
+    }
+
+    /**
+     * Calculates the light at the block itself, like it is used for liquids.
+     * @return false if the block is in a "cave" and should not be rendered
+     */
+    boolean lightBlock(BlockNeighborhood<?> block) {
+        sunLight = block.getSunLightLevel();
+        blockLight = block.getBlockLightLevel();
+
+        return !isCave(block);
+    }
+
+    private boolean isCave(BlockNeighborhood<?> block) {
+        return block.isRemoveIfCave() &&
+                (renderSettings.isCaveDetectionUsesBlockLight() ? Math.max(blockLight, sunLight) : sunLight) == 0;
+    }
+
+    /**
+     * Resets the tint-color, this needs to be called before the faces of a new model are shaded.
+     */
+    void resetTint() {
+        tintColor.set(0, 0, 0, -1, true);
+    }
+
+    /**
+     * The tint-color of the block, only calculated once for all faces of a model.
+     */
+    Color getTint(BlockNeighborhood<?> block) {
+        if (tintColor.a < 0) {
+            blockColorCalculator.getBlockColor(block, tintColor);
+        }
+        return tintColor;
+    }
+
+    /**
+     * Calculates the tint-color of the given liquid.
+     */
+    Color getLiquidTint(BlockNeighborhood<?> block, BlockState blockState) {
+        tintColor.set(1f, 1f, 1f, 1f, true);
+        if (blockState.isWater()) {
+            blockColorCalculator.getBlendedWaterColor(block, tintColor);
+        }
+        return tintColor;
+    }
+
+    /**
+     * Adds the map-color of a face with the given texture-color to the target-color, using the light of the last
+     * {@link #lightFace(BlockNeighborhood, CompiledModel, int) lit face} and the tint if it has been calculated.
+     * @return the max of the given opacity and the opacity of the face
+     */
+    float addFaceColor(Color textureColor, Color target, float opacity) {
+        mapColor.set(textureColor);
+        if (tintColor.a >= 0) {
+            mapColor.multiply(tintColor);
+        }
+
+        // apply light
+        float combinedLight = Math.max(sunLight / 15f, blockLight / 15f);
+        combinedLight = (1 - renderSettings.getAmbientLight()) * combinedLight + renderSettings.getAmbientLight();
+        mapColor.r *= combinedLight;
+        mapColor.g *= combinedLight;
+        mapColor.b *= combinedLight;
+
+        target.add(mapColor);
+        return Math.max(opacity, mapColor.a);
+    }
+
+    /**
+     * Sets the target-color to the map-color of a liquid with the given still-texture-color, using the light of the
+     * last {@link #lightBlock(BlockNeighborhood) lit block} and the last calculated liquid-tint.
+     */
+    void setLiquidColor(Color stillColor, Color target) {
+        target.set(stillColor);
+        target.multiply(tintColor);
+
+        // apply light
+        float combinedLight = Math.max(sunLight, blockLight) / 15f;
+        combinedLight = (renderSettings.getAmbientLight() + combinedLight) / (renderSettings.getAmbientLight() + 1f);
+        target.r *= combinedLight;
+        target.g *= combinedLight;
+        target.b *= combinedLight;
+    }
+
+    /**
+     * Whether the given face of the model is hidden by the block it is facing.
+     */
+    static boolean isCulled(BlockNeighborhood<?> block, CompiledModel m, int face) {
+        if (!m.culled[face]) return false;
+
+        int ci = face * 3;
+        ExtendedBlock<?> b = block.getNeighborBlock(
+                m.cullNeighbors[ci],
+                m.cullNeighbors[ci + 1],
+                m.cullNeighbors[ci + 2]
+        );
+        BlockProperties p = b.getProperties();
+        if (p.isCulling()) return true;
+        return p.getCullingIdentical() && b.getBlockState().equals(block.getBlockState());
+    }
+
+    /**
+     * Flattens the summed up (premultiplied) face- or variant-colors and sets the resulting opacity.
+     */
+    static void finishColor(Color color, float opacity) {
+        if (color.a > 0) {
+            color.flatten().straight();
+            color.a = opacity;
+        }
+    }
+
+    static boolean isWaterlogged(BlockNeighborhood<?> block, BlockState blockState) {
+        return blockState.isWaterlogged() || block.getProperties().isAlwaysWaterlogged();
+    }
+
+    /**
+     * Overlays the block-color with the color of the water it is waterlogged in.
+     */
+    static void applyWaterlogged(Color blockColor, Color waterloggedColor) {
+        blockColor.set(waterloggedColor.overlay(blockColor.premultiplied()));
+    }
+
+    @SuppressWarnings("StringEquality")
+    static boolean isSameLiquid(BlockState liquid, ExtendedBlock<?> block) {
+        if (block.getBlockState().getFormatted() == liquid.getFormatted()) return true;
+        return liquid.isWater() && (block.getBlockState().isWaterlogged() || block.getProperties().isAlwaysWaterlogged());
+    }
+
+}
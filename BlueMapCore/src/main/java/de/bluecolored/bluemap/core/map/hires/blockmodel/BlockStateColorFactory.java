@@ -0,0 +1,143 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.blockmodel;
+
+import de.bluecolored.bluemap.core.map.hires.RenderSettings;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
+import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
+
+/**
+ * Calculates the same map-color for a block as the {@link BlockStateModelFactory} does, but without building
+ * any geometry.<br>
+ * Only the upwards-facing faces of the {@link CompiledModel}s are considered, so this is a lot cheaper than rendering
+ * the whole block-model.<br>
+ * <br>
+ * <i>This class is not thread-safe, create one instance per thread.</i>
+ */
+public class BlockStateColorFactory {
+
+    private final CompiledModelCache modelCache;
+    private final BlockShading shading;
+
+    private final Color waterloggedColor = new Color();
+    private final Color variantColor = new Color();
+
+    public BlockStateColorFactory(ResourcePack resourcePack, RenderSettings renderSettings, CompiledModelCache modelCache) {
+        this.modelCache = modelCache;
+        this.shading = new BlockShading(resourcePack, renderSettings);
+    }
+
+    public void render(BlockNeighborhood<?> block, Color blockColor) {
+        BlockState blockState = block.getBlockState();
+        blockColor.set(0, 0, 0, 0, true);
+
+        //shortcut for air
+        if (blockState.isAir()) return;
+
+        renderColor(block, blockState, blockColor);
+
+        // add water if block is waterlogged
+        if (BlockShading.isWaterlogged(block, blockState)) {
+            waterloggedColor.set(0f, 0f, 0f, 0f, true);
+            renderColor(block, BlockShading.WATERLOGGED_BLOCKSTATE, waterloggedColor);
+            BlockShading.applyWaterlogged(blockColor, waterloggedColor);
+        }
+    }
+
+    private void renderColor(BlockNeighborhood<?> block, BlockState blockState, Color blockColor) {
+        VariantSet[] variantSets = modelCache.getVariantSets(blockState);
+
+        float blockColorOpacity = 0;
+
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < variantSets.length; i++) {
+            Variant variant = variantSets[i].getVariant(block.getX(), block.getY(), block.getZ());
+            if (variant == null) continue;
+
+            CompiledModel compiledModel = modelCache.getCompiledModel(variant);
+            if (compiledModel.getModel() == null) continue;
+
+            variantColor.set(0f, 0f, 0f, 0f, true);
+
+            if (compiledModel.isLiquid()) {
+                liquidColor(block, blockState, compiledModel, variantColor);
+            } else {
+                modelColor(block, compiledModel, variantColor);
+            }
+
+            if (variantColor.a > blockColorOpacity)
+                blockColorOpacity = variantColor.a;
+
+            blockColor.add(variantColor.premultiplied());
+        }
+
+        BlockShading.finishColor(blockColor, blockColorOpacity);
+    }
+
+    private void modelColor(BlockNeighborhood<?> block, CompiledModel m, Color color) {
+        float blockColorOpacity = 0f;
+        shading.resetTint();
+
+        for (int face = 0; face < m.faceCount; face++) {
+            Color textureColor = m.mapColors[face];
+
+            // tinted faces are still needed even if they have no map-color, because once the tint is calculated
+            // the ResourceModelBuilder applies it to all following faces as well
+            if (textureColor == null && !m.tinted[face]) continue;
+
+            // light calculation, and filter out faces that are in a "cave" that should not be rendered
+            if (!shading.lightFace(block, m, face)) continue;
+
+            // face culling
+            if (BlockShading.isCulled(block, m, face)) continue;
+
+            if (m.tinted[face]) shading.getTint(block);
+
+            if (textureColor != null)
+                blockColorOpacity = shading.addFaceColor(textureColor, color, blockColorOpacity);
+        }
+
+        BlockShading.finishColor(color, blockColorOpacity);
+    }
+
+    private void liquidColor(BlockNeighborhood<?> block, BlockState blockState, CompiledModel m, Color color) {
+        // light calculation, and filter out blocks that are in a "cave" that should not be rendered
+        if (!shading.lightBlock(block)) return;
+
+        // the up-face is not rendered if the block above is the same liquid
+        if (BlockShading.isSameLiquid(blockState, block.getNeighborBlock(0, 1, 0))) return;
+
+        Color stillColor = m.liquidColor;
+        if (stillColor == null) return;
+
+        shading.getLiquidTint(block, blockState);
+        shading.setLiquidColor(stillColor, color);
+    }
+
+}
@@ -28,27 +28,26 @@
 import de.bluecolored.bluemap.core.map.hires.BlockModelView;
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.BlockModel;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
 import de.bluecolored.bluemap.core.util.math.Color;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
 import de.bluecolored.bluemap.core.world.BlockState;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class BlockStateModelFactory {
 
-    private final ResourcePack resourcePack;
+    private final CompiledModelCache modelCache;
     private final ResourceModelBuilder resourceModelBuilder;
     private final LiquidModelBuilder liquidModelBuilder;
 
-    private final List<Variant> variants = new ArrayList<>();
-
     public BlockStateModelFactory(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
-        this.resourcePack = resourcePack;
+        this(resourcePack, textureGallery, renderSettings, new CompiledModelCache(resourcePack, textureGallery));
+    }
 
-        this.resourceModelBuilder = new ResourceModelBuilder(resourcePack, textureGallery, renderSettings);
+    public BlockStateModelFactory(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings, CompiledModelCache modelCache) {
+        this.modelCache = modelCache;
+
+        this.resourceModelBuilder = new ResourceModelBuilder(resourcePack, renderSettings);
         this.liquidModelBuilder = new LiquidModelBuilder(resourcePack, textureGallery, renderSettings);
     }
 
@@ -69,10 +68,10 @@ public void render(BlockNeighborhood<?> block, BlockState blockState, BlockModel
         renderModel(block, blockState, blockModel.initialize(), blockColor);
 
         // add water if block is waterlogged
-        if (blockState.isWaterlogged() || block.getProperties().isAlwaysWaterlogged()) {
+        if (BlockShading.isWaterlogged(block, blockState)) {
             waterloggedColor.set(0f, 0f, 0f, 0f, true);
-            renderModel(block, WATERLOGGED_BLOCKSTATE, blockModel.initialize(), waterloggedColor);
-            blockColor.set(waterloggedColor.overlay(blockColor.premultiplied()));
+            renderModel(block, BlockShading.WATERLOGGED_BLOCKSTATE, blockModel.initialize(), waterloggedColor);
+            BlockShading.applyWaterlogged(blockColor, waterloggedColor);
         }
 
         blockModel.initialize(modelStart);
@@ -82,26 +81,24 @@ public void render(BlockNeighborhood<?> block, BlockState blockState, BlockModel
     private void renderModel(BlockNeighborhood<?> block, BlockState blockState, BlockModelView blockModel, Color blockColor) {
         int modelStart = blockModel.getStart();
 
-        var stateResource = resourcePack.getBlockState(blockState);
-        if (stateResource == null) return;
+        VariantSet[] variantSets = modelCache.getVariantSets(blockState);
 
         float blockColorOpacity = 0;
-        variants.clear();
-        stateResource.forEach(blockState, block.getX(), block.getY(), block.getZ(), variants::add);
 
         //noinspection ForLoopReplaceableByForEach
-        for (int i = 0; i < variants.size(); i++) {
-            Variant variant = variants.get(i);
+        for (int i = 0; i < variantSets.length; i++) {
+            Variant variant = variantSets[i].getVariant(block.getX(), block.getY(), block.getZ());
+            if (variant == null) continue;
 
-            BlockModel modelResource = variant.getModel().getResource(resourcePack::getBlockModel);
-            if (modelResource == null) continue;
+            CompiledModel compiledModel = modelCache.getCompiledModel(variant);
+            if (compiledModel.getModel() == null) continue;
 
             variantColor.set(0f, 0f, 0f, 0f, true);
 
-            if (modelResource.isLiquid()) {
-                liquidModelBuilder.build(block, blockState, variant, blockModel.initialize(), variantColor);
+            if (compiledModel.isLiquid()) {
+                liquidModelBuilder.build(block, blockState, compiledModel, blockModel.initialize(), variantColor);
             } else {
-                resourceModelBuilder.build(block, variant, blockModel.initialize(), variantColor);
+                resourceModelBuilder.build(block, compiledModel, blockModel.initialize(), variantColor);
             }
 
             if (variantColor.a > blockColorOpacity)
@@ -110,14 +107,9 @@ private void renderModel(BlockNeighborhood<?> block, BlockState blockState, Bloc
             blockColor.add(variantColor.premultiplied());
         }
 
-        if (blockColor.a > 0) {
-            blockColor.flatten().straight();
-            blockColor.a = blockColorOpacity;
-        }
+        BlockShading.finishColor(blockColor, blockColorOpacity);
 
         blockModel.initialize(modelStart);
     }
 
-    private final static BlockState WATERLOGGED_BLOCKSTATE = new BlockState("minecraft:water");
-
 }
@@ -0,0 +1,373 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.blockmodel;
+
+import com.flowpowered.math.TrigMath;
+import com.flowpowered.math.vector.Vector3f;
+import com.flowpowered.math.vector.Vector3i;
+import com.flowpowered.math.vector.Vector4f;
+import de.bluecolored.bluemap.core.map.TextureGallery;
+import de.bluecolored.bluemap.core.resources.ResourcePath;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.BlockModel;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.Element;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.Face;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.TextureVariable;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
+import de.bluecolored.bluemap.core.util.Direction;
+import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.util.math.MatrixM4f;
+import de.bluecolored.bluemap.core.util.math.VectorM2f;
+import de.bluecolored.bluemap.core.util.math.VectorM3f;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link Variant} with its {@link BlockModel} baked into flat arrays, so that everything that does not depend on
+ * the surrounding blocks (element- and variant-rotation, uvs, texture-ids, cullfaces, ...) only has to be
+ * calculated once instead of for every rendered block.<br>
+ * Each face of the model is stored as a quad with 4 corners, which is later emitted as two triangles.<br>
+ * <br>
+ * Instances are immutable and can be shared between threads.
+ */
+public class CompiledModel {
+    private static final float BLOCK_SCALE = 1f / 16f;
+
+    @Getter private final Variant variant;
+    @Getter private final @Nullable BlockModel model;
+
+    final int faceCount;
+    final float[] positions;        // 4 corners * xyz per face, fully transformed
+    final float[] uvs;              // 4 corners * uv per face
+    final int[] textureIds;
+    final boolean[] tinted;
+    final int[] lightNeighbors;     // xyz offset of the block the face is facing
+    final boolean[] culled;         // true if the face has a cullface
+    final int[] cullNeighbors;      // xyz offset of the cullface-block
+    final int[] aoNeighborCounts;   // per corner: number of blocks relevant for the ao
+    final int[] aoNeighbors;        // per corner: up to 4 xyz offsets
+    final Color[] mapColors;        // the texture-color of upwards facing faces, or null
+    final @Nullable Color liquidColor; // the texture-color of the still-texture if this is a liquid-model
+
+    private CompiledModel(Variant variant, @Nullable BlockModel model, int faceCount, @Nullable Color liquidColor) {
+        this.variant = variant;
+        this.model = model;
+        this.liquidColor = liquidColor;
+
+        this.faceCount = faceCount;
+        this.positions = new float[faceCount * 12];
+        this.uvs = new float[faceCount * 8];
+        this.textureIds = new int[faceCount];
+        this.tinted = new boolean[faceCount];
+        this.lightNeighbors = new int[faceCount * 3];
+        this.culled = new boolean[faceCount];
+        this.cullNeighbors = new int[faceCount * 3];
+        this.aoNeighborCounts = new int[faceCount * 4];
+        this.aoNeighbors = new int[faceCount * 4 * 4 * 3];
+        this.mapColors = new Color[faceCount];
+    }
+
+    public boolean isLiquid() {
+        return model != null && model.isLiquid();
+    }
+
+    public static CompiledModel compile(Variant variant, @Nullable BlockModel model, ResourcePack resourcePack, TextureGallery textureGallery) {
+        if (model == null) return new CompiledModel(variant, null, 0, null);
+        if (model.isLiquid()) return new CompiledModel(variant, model, 0, getLiquidColor(model, resourcePack));
+
+        Compiler compiler = new Compiler(variant, model, resourcePack, textureGallery);
+        return compiler.compile();
+    }
+
+    private static @Nullable Color getLiquidColor(BlockModel model, ResourcePack resourcePack) {
+        TextureVariable stillVariable = model.getTextures().get("still");
+        if (stillVariable == null) return null;
+
+        ResourcePath<Texture> stillTexturePath = stillVariable.getTexturePath(model.getTextures()::get);
+        if (stillTexturePath == null) return null;
+
+        Texture stillTexture = stillTexturePath.getResource(resourcePack::getTexture);
+        return stillTexture != null ? stillTexture.getColorPremultiplied() : null;
+    }
+
+    private static class Compiler {
+
+        private final Variant variant;
+        private final BlockModel model;
+        private final ResourcePack resourcePack;
+        private final TextureGallery textureGallery;
+
+        private final List<Element> faceElements = new ArrayList<>();
+        private final List<Direction> faceDirections = new ArrayList<>();
+
+        private final MatrixM4f variantTransform = new MatrixM4f();
+        private final MatrixM4f elementTransform = new MatrixM4f();
+        private final VectorM3f[] corners = new VectorM3f[8];
+        private final VectorM2f[] rawUvs = new VectorM2f[4];
+        private final VectorM2f[] faceUvs = new VectorM2f[4];
+        private final VectorM3f vector = new VectorM3f(0, 0, 0);
+
+        private CompiledModel result;
+
+        Compiler(Variant variant, BlockModel model, ResourcePack resourcePack, TextureGallery textureGallery) {
+            this.variant = variant;
+            this.model = model;
+            this.resourcePack = resourcePack;
+            this.textureGallery = textureGallery;
+
+            for (int i = 0; i < corners.length; i++) corners[i] = new VectorM3f(0, 0, 0);
+            for (int i = 0; i < rawUvs.length; i++) rawUvs[i] = new VectorM2f(0, 0);
+
+            variantTransform.identity()
+                    .translate(-0.5f, -0.5f, -0.5f)
+                    .multiplyTo(variant.getRotationMatrix())
+                    .translate(0.5f, 0.5f, 0.5f);
+        }
+
+        CompiledModel compile() {
+            Element[] elements = model.getElements();
+            if (elements != null) {
+                for (Element element : elements) {
+                    for (Direction direction : FACE_ORDER) {
+                        if (element.getFaces().get(direction) == null) continue;
+                        faceElements.add(element);
+                        faceDirections.add(direction);
+                    }
+                }
+            }
+
+            result = new CompiledModel(variant, model, faceElements.size(), null);
+
+            int face = 0;
+            Element lastElement = null;
+            for (int i = 0; i < result.faceCount; i++) {
+                Element element = faceElements.get(i);
+                if (element != lastElement) {
+                    initElement(element);
+                    lastElement = element;
+                }
+
+                compileFace(face++, element, faceDirections.get(i));
+            }
+
+            return result;
+        }
+
+        private void initElement(Element element) {
+            Vector3f from = element.getFrom();
+            Vector3f to = element.getTo();
+
+            float
+                    minX = Math.min(from.getX(), to.getX()),
+                    minY = Math.min(from.getY(), to.getY()),
+                    minZ = Math.min(from.getZ(), to.getZ()),
+                    maxX = Math.max(from.getX(), to.getX()),
+                    maxY = Math.max(from.getY(), to.getY()),
+                    maxZ = Math.max(from.getZ(), to.getZ());
+
+            VectorM3f[] c = corners;
+            c[0].x = minX; c[0].y = minY; c[0].z = minZ;
+            c[1].x = minX; c[1].y = minY; c[1].z = maxZ;
+            c[2].x = maxX; c[2].y = minY; c[2].z = minZ;
+            c[3].x = maxX; c[3].y = minY; c[3].z = maxZ;
+            c[4].x = minX; c[4].y = maxY; c[4].z = minZ;
+            c[5].x = minX; c[5].y = maxY; c[5].z = maxZ;
+            c[6].x = maxX; c[6].y = maxY; c[6].z = minZ;
+            c[7].x = maxX; c[7].y = maxY; c[7].z = maxZ;
+
+            elementTransform
+                    .copy(element.getRotation().getMatrix())
+                    .scale(BLOCK_SCALE, BLOCK_SCALE, BLOCK_SCALE);
+        }
+
+        private void compileFace(int f, Element element, Direction faceDir) {
+            Face face = element.getFaces().get(faceDir);
+            Vector3i faceDirVector = faceDir.toVector();
+            VectorM3f[] c = corners;
+
+            VectorM3f[] faceCorners = switch (faceDir) {
+                case DOWN -> new VectorM3f[]{ c[0], c[2], c[3], c[1] };
+                case UP -> new VectorM3f[]{ c[5], c[7], c[6], c[4] };
+                case NORTH -> new VectorM3f[]{ c[2], c[0], c[4], c[6] };
+                case SOUTH -> new VectorM3f[]{ c[1], c[3], c[7], c[5] };
+                case WEST -> new VectorM3f[]{ c[0], c[1], c[5], c[4] };
+                case EAST -> new VectorM3f[]{ c[3], c[2], c[6], c[7] };
+            };
+
+            // ####### positions
+            for (int i = 0; i < 4; i++) {
+                vector.set(faceCorners[i].x, faceCorners[i].y, faceCorners[i].z);
+                vector.transform(elementTransform);
+                if (variant.isRotated()) vector.transform(variantTransform);
+
+                int index = f * 12 + i * 3;
+                result.positions[index    ] = vector.x;
+                result.positions[index + 1] = vector.y;
+                result.positions[index + 2] = vector.z;
+            }
+
+            // ####### light and culling
+            setRotationRelative(result.lightNeighbors, f * 3, faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+
+            Direction cullface = face.getCullface();
+            if (cullface != null) {
+                Vector3i cullVector = cullface.toVector();
+                result.culled[f] = true;
+                setRotationRelative(result.cullNeighbors, f * 3, cullVector.getX(), cullVector.getY(), cullVector.getZ());
+            }
+
+            // ####### texture
+            ResourcePath<Texture> texturePath = face.getTexture().getTexturePath(model.getTextures()::get);
+            result.textureIds[f] = textureGallery.get(texturePath);
+            result.tinted[f] = face.getTintindex() >= 0;
+
+            // ####### UV
+            Vector4f uvRaw = face.getUv();
+            float
+                    uvx = uvRaw.getX() / 16f,
+                    uvy = uvRaw.getY() / 16f,
+                    uvz = uvRaw.getZ() / 16f,
+                    uvw = uvRaw.getW() / 16f;
+
+            rawUvs[0].set(uvx, uvw);
+            rawUvs[1].set(uvz, uvw);
+            rawUvs[2].set(uvz, uvy);
+            rawUvs[3].set(uvx, uvy);
+
+            // face-rotation
+            int rotationSteps = Math.floorDiv(face.getRotation(), 90) % 4;
+            if (rotationSteps < 0) rotationSteps += 4;
+            for (int i = 0; i < 4; i++)
+                faceUvs[i] = rawUvs[(rotationSteps + i) % 4];
+
+            // UV-Lock counter-rotation
+            float uvRotation = 0f;
+            if (variant.isUvlock() && variant.isRotated()) {
+                float xRotSin = TrigMath.sin(variant.getX() * TrigMath.DEG_TO_RAD);
+                float xRotCos = TrigMath.cos(variant.getX() * TrigMath.DEG_TO_RAD);
+
+                uvRotation =
+                        variant.getY() * (faceDirVector.getY() * xRotCos + faceDirVector.getZ() * xRotSin) +
+                        variant.getX() * (1 - faceDirVector.getY());
+            }
+
+            // rotate uv's
+            if (uvRotation != 0){
+                uvRotation = (float)(uvRotation * TrigMath.DEG_TO_RAD);
+                float cx = TrigMath.cos(uvRotation), cy = TrigMath.sin(uvRotation);
+                for (VectorM2f uv : faceUvs) {
+                    uv.translate(-0.5f, -0.5f);
+                    uv.rotate(cx, cy);
+                    uv.translate(0.5f, 0.5f);
+                }
+            }
+
+            for (int i = 0; i < 4; i++) {
+                result.uvs[f * 8 + i * 2    ] = faceUvs[i].x;
+                result.uvs[f * 8 + i * 2 + 1] = faceUvs[i].y;
+            }
+
+            // ######## AO
+            if (model.isAmbientocclusion()) {
+                for (int i = 0; i < 4; i++)
+                    compileAo(f * 4 + i, faceCorners[i], faceDirVector);
+            }
+
+            // ####### map-color (only for faces pointing upwards)
+            vector.set(faceDirVector.getX(), faceDirVector.getY(), faceDirVector.getZ());
+            vector.rotateAndScale(element.getRotation().getMatrix());
+            if (variant.isRotated()) vector.transform(variant.getRotationMatrix());
+            if (vector.y > 0.01 && texturePath != null) {
+                Texture texture = texturePath.getResource(resourcePack::getTexture);
+                if (texture != null) result.mapColors[f] = texture.getColorPremultiplied();
+            }
+        }
+
+        private void compileAo(int corner, VectorM3f vertex, Vector3i dirVec) {
+            int x = 0;
+            if (vertex.x == 16){
+                x = 1;
+            } else if (vertex.x == 0){
+                x = -1;
+            }
+
+            int y = 0;
+            if (vertex.y == 16){
+                y = 1;
+            } else if (vertex.y == 0){
+                y = -1;
+            }
+
+            int z = 0;
+            if (vertex.z == 16){
+                z = 1;
+            } else if (vertex.z == 0){
+                z = -1;
+            }
+
+            if (x * dirVec.getX() + y * dirVec.getY() > 0)
+                addAoNeighbor(corner, x, y, 0);
+
+            if (x * dirVec.getX() + z * dirVec.getZ() > 0)
+                addAoNeighbor(corner, x, 0, z);
+
+            if (y * dirVec.getY() + z * dirVec.getZ() > 0)
+                addAoNeighbor(corner, 0, y, z);
+
+            if (x * dirVec.getX() + y * dirVec.getY() + z * dirVec.getZ() > 0)
+                addAoNeighbor(corner, x, y, z);
+        }
+
+        private void addAoNeighbor(int corner, int dx, int dy, int dz) {
+            int n = result.aoNeighborCounts[corner]++;
+            setRotationRelative(result.aoNeighbors, (corner * 4 + n) * 3, dx, dy, dz);
+        }
+
+        private void setRotationRelative(int[] target, int index, int dx, int dy, int dz) {
+            vector.set(dx, dy, dz);
+            if (variant.isRotated())
+                vector.transform(variant.getRotationMatrix());
+
+            target[index    ] = Math.round(vector.x);
+            target[index + 1] = Math.round(vector.y);
+            target[index + 2] = Math.round(vector.z);
+        }
+
+    }
+
+    private static final Direction[] FACE_ORDER = {
+            Direction.DOWN,
+            Direction.UP,
+            Direction.NORTH,
+            Direction.SOUTH,
+            Direction.WEST,
+            Direction.EAST
+    };
+
+}
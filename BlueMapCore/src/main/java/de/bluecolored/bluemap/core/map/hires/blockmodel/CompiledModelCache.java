@@ -0,0 +1,101 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires.blockmodel;
+
+import de.bluecolored.bluemap.core.map.TextureGallery;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.BlockModel;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
+import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.VariantSet;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.BlockStateIdCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the {@link VariantSet}s that apply to each {@link BlockState} and the {@link CompiledModel} of each
+ * {@link Variant}, for one {@link ResourcePack} and {@link TextureGallery}.<br>
+ * This class is thread-safe.
+ */
+public class CompiledModelCache {
+
+    private static final VariantSet[] EMPTY_VARIANT_SETS = new VariantSet[0];
+
+    private final ResourcePack resourcePack;
+    private final TextureGallery textureGallery;
+
+    private final BlockStateIdCache<VariantSet[]> variantSets;
+    private final Map<Variant, CompiledModel> compiledModels;
+
+    public CompiledModelCache(ResourcePack resourcePack, TextureGallery textureGallery) {
+        this.resourcePack = resourcePack;
+        this.textureGallery = textureGallery;
+
+        this.variantSets = new BlockStateIdCache<>(this::loadVariantSets);
+        this.compiledModels = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns all {@link VariantSet}s whose condition matches the given {@link BlockState}.
+     */
+    public VariantSet[] getVariantSets(BlockState blockState) {
+        return variantSets.get(blockState);
+    }
+
+    /**
+     * Returns the {@link CompiledModel} for the given {@link Variant}.<br>
+     * If the model of the variant could not be found, the returned CompiledModel has no {@link CompiledModel#getModel() model}.
+     */
+    public CompiledModel getCompiledModel(Variant variant) {
+        CompiledModel compiledModel = compiledModels.get(variant);
+        if (compiledModel != null) return compiledModel;
+        return compiledModels.computeIfAbsent(variant, this::compile);
+    }
+
+    /**
+     * Clears all compiled models, this needs to be called whenever the {@link TextureGallery} changes.
+     */
+    public void clear() {
+        compiledModels.clear();
+    }
+
+    private VariantSet[] loadVariantSets(BlockState blockState) {
+        var stateResource = resourcePack.getBlockState(blockState);
+        if (stateResource == null) return EMPTY_VARIANT_SETS;
+
+        List<VariantSet> variantSets = new ArrayList<>();
+        stateResource.forEachVariantSet(blockState, variantSets::add);
+        return variantSets.toArray(VariantSet[]::new);
+    }
+
+    private CompiledModel compile(Variant variant) {
+        BlockModel model = variant.getModel().getResource(resourcePack::getBlockModel);
+        return CompiledModel.compile(variant, model, resourcePack, textureGallery);
+    }
+
+}
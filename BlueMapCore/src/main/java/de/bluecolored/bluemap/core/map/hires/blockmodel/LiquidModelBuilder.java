@@ -30,12 +30,10 @@
 import de.bluecolored.bluemap.core.map.hires.BlockModelView;
 import de.bluecolored.bluemap.core.map.hires.TileModel;
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
-import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
 import de.bluecolored.bluemap.core.resources.ResourcePath;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.BlockModel;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.TextureVariable;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
 import de.bluecolored.bluemap.core.util.Direction;
 import de.bluecolored.bluemap.core.util.math.Color;
@@ -58,25 +56,22 @@ public class LiquidModelBuilder {
             .scale(0.5f, 0.5f, 1)
             .translate(0.5f, 0.5f);
 
-    private final ResourcePack resourcePack;
     private final TextureGallery textureGallery;
-    private final RenderSettings renderSettings;
-    private final BlockColorCalculatorFactory.BlockColorCalculator blockColorCalculator;
+    private final BlockShading shading;
 
     private final VectorM3f[] corners;
     private final VectorM2f[] uvs = new VectorM2f[4];
 
     private BlockNeighborhood<?> block;
     private BlockState blockState;
+    private CompiledModel compiledModel;
     private BlockModel modelResource;
     private BlockModelView blockModel;
     private Color blockColor;
 
     public LiquidModelBuilder(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
-        this.resourcePack = resourcePack;
         this.textureGallery = textureGallery;
-        this.renderSettings = renderSettings;
-        this.blockColorCalculator = resourcePack.getColorCalculatorFactory().createCalculator();
+        this.shading = new BlockShading(resourcePack, renderSettings);
 
         corners = new VectorM3f[]{
                 new VectorM3f( 0, 0, 0 ),
@@ -92,26 +87,20 @@ public LiquidModelBuilder(ResourcePack resourcePack, TextureGallery textureGalle
         for (int i = 0; i < uvs.length; i++) uvs[i] = new VectorM2f(0, 0);
     }
 
-    public void build(BlockNeighborhood<?> block, BlockState blockState, Variant variant, BlockModelView blockModel, Color color) {
+    public void build(BlockNeighborhood<?> block, BlockState blockState, CompiledModel compiledModel, BlockModelView blockModel, Color color) {
         this.block = block;
         this.blockState = blockState;
-        this.modelResource = variant.getModel().getResource();
+        this.compiledModel = compiledModel;
+        this.modelResource = compiledModel.getModel();
         this.blockModel = blockModel;
         this.blockColor = color;
 
         build();
     }
 
-    private final Color tintcolor = new Color();
     private void build() {
-        int blockLight = block.getBlockLightLevel();
-        int sunLight = block.getSunLightLevel();
-
-        // filter out blocks that are in a "cave" that should not be rendered
-        if (
-                this.block.isRemoveIfCave() &&
-                (renderSettings.isCaveDetectionUsesBlockLight() ? Math.max(blockLight, sunLight) : sunLight) == 0
-        ) return;
+        // light calculation, and filter out blocks that are in a "cave" that should not be rendered
+        if (!shading.lightBlock(block)) return;
 
         int level = blockState.getLiquidLevel();
         if (level < 8 && !(level == 0 && isSameLiquid(block.getNeighborBlock(0, 1, 0)))){
@@ -136,10 +125,7 @@ private void build() {
         int stillTextureId = textureGallery.get(stillTexturePath);
         int flowTextureId = textureGallery.get(flowTexturePath);
 
-        tintcolor.set(1f, 1f, 1f, 1f, true);
-        if (blockState.isWater()) {
-            blockColorCalculator.getBlendedWaterColor(block, tintcolor);
-        }
+        Color tintcolor = shading.getLiquidTint(block, blockState);
 
         int modelStart = blockModel.getStart();
 
@@ -159,18 +145,9 @@ private void build() {
 
         //calculate mapcolor
         if (upFaceRendered) {
-            Texture stillTexture = stillTexturePath == null ? null : stillTexturePath.getResource(resourcePack::getTexture);
-
-            if (stillTexture != null) {
-                blockColor.set(stillTexture.getColorPremultiplied());
-                blockColor.multiply(tintcolor);
-
-                // apply light
-                float combinedLight = Math.max(sunLight, blockLight) / 15f;
-                combinedLight = (renderSettings.getAmbientLight() + combinedLight) / (renderSettings.getAmbientLight() + 1f);
-                blockColor.r *= combinedLight;
-                blockColor.g *= combinedLight;
-                blockColor.b *= combinedLight;
+            Color stillColor = compiledModel.liquidColor;
+            if (stillColor != null) {
+                shading.setLiquidColor(stillColor, blockColor);
             }
         } else {
             blockColor.set(0, 0, 0, 0, true);
@@ -221,10 +198,8 @@ private boolean isLiquidBlockingBlock(BlockState blockState){
         return !blockState.isAir();
     }
 
-    @SuppressWarnings("StringEquality")
     private boolean isSameLiquid(ExtendedBlock<?> block){
-        if (block.getBlockState().getFormatted() == this.blockState.getFormatted()) return true;
-        return this.blockState.isWater() && (block.getBlockState().isWaterlogged() || block.getProperties().isAlwaysWaterlogged());
+        return BlockShading.isSameLiquid(this.blockState, block);
     }
 
     private float getLiquidBaseHeight(BlockState block){
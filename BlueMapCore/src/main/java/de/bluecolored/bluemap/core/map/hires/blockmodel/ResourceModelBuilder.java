@@ -24,104 +24,53 @@
  */
 package de.bluecolored.bluemap.core.map.hires.blockmodel;
 
-import com.flowpowered.math.TrigMath;
-import com.flowpowered.math.vector.Vector3f;
-import com.flowpowered.math.vector.Vector3i;
-import com.flowpowered.math.vector.Vector4f;
-import de.bluecolored.bluemap.core.map.TextureGallery;
 import de.bluecolored.bluemap.core.map.hires.BlockModelView;
 import de.bluecolored.bluemap.core.map.hires.TileModel;
 import de.bluecolored.bluemap.core.map.hires.RenderSettings;
-import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
-import de.bluecolored.bluemap.core.resources.ResourcePath;
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.ResourcePack;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.BlockModel;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.Element;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockmodel.Face;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.blockstate.Variant;
-import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
-import de.bluecolored.bluemap.core.util.Direction;
 import de.bluecolored.bluemap.core.util.math.Color;
-import de.bluecolored.bluemap.core.util.math.MatrixM4f;
-import de.bluecolored.bluemap.core.util.math.VectorM2f;
-import de.bluecolored.bluemap.core.util.math.VectorM3f;
-import de.bluecolored.bluemap.core.world.BlockProperties;
-import de.bluecolored.bluemap.core.world.LightData;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
-import de.bluecolored.bluemap.core.world.block.ExtendedBlock;
 
 /**
  * This model builder creates a BlockStateModel using the information from parsed resource-pack json files.
+ * The static parts of the models are taken from a {@link CompiledModel}, only culling, lighting and AO are
+ * calculated for each block.
  */
 @SuppressWarnings("DuplicatedCode")
 public class ResourceModelBuilder {
-    private static final float BLOCK_SCALE = 1f / 16f;
 
-    private final ResourcePack resourcePack;
-    private final TextureGallery textureGallery;
-    private final RenderSettings renderSettings;
-    private final BlockColorCalculatorFactory.BlockColorCalculator blockColorCalculator;
-
-    private final VectorM3f[] corners = new VectorM3f[8];
-    private final VectorM2f[] rawUvs = new VectorM2f[4];
-    private final VectorM2f[] uvs = new VectorM2f[4];
-    private final Color tintColor = new Color();
-    private final Color mapColor = new Color();
+    private final BlockShading shading;
 
     private BlockNeighborhood<?> block;
-    private Variant variant;
-    private BlockModel modelResource;
+    private CompiledModel compiledModel;
     private BlockModelView blockModel;
     private Color blockColor;
     private float blockColorOpacity;
 
-    public ResourceModelBuilder(ResourcePack resourcePack, TextureGallery textureGallery, RenderSettings renderSettings) {
-        this.resourcePack = resourcePack;
-        this.textureGallery = textureGallery;
-        this.renderSettings = renderSettings;
-        this.blockColorCalculator = resourcePack.getColorCalculatorFactory().createCalculator();
-
-        for (int i = 0; i < corners.length; i++) corners[i] = new VectorM3f(0, 0, 0);
-        for (int i = 0; i < uvs.length; i++) rawUvs[i] = new VectorM2f(0, 0);
+    public ResourceModelBuilder(ResourcePack resourcePack, RenderSettings renderSettings) {
+        this.shading = new BlockShading(resourcePack, renderSettings);
     }
 
-    private final MatrixM4f modelTransform = new MatrixM4f();
-    public void build(BlockNeighborhood<?> block, Variant variant, BlockModelView blockModel, Color color) {
+    public void build(BlockNeighborhood<?> block, CompiledModel compiledModel, BlockModelView blockModel, Color color) {
         this.block = block;
         this.blockModel = blockModel;
         this.blockColor = color;
         this.blockColorOpacity = 0f;
-        this.variant = variant;
-        this.modelResource = variant.getModel().getResource();
+        this.compiledModel = compiledModel;
 
-        this.tintColor.set(0, 0, 0, -1, true);
+        this.shading.resetTint();
 
         // render model
         int modelStart = blockModel.getStart();
 
-        Element[] elements = modelResource.getElements();
-        if (elements != null) {
-            for (Element element : elements) {
-                buildModelElementResource(element, blockModel.initialize());
-            }
+        for (int face = 0; face < compiledModel.faceCount; face++) {
+            createFace(face);
         }
 
-        if (color.a > 0) {
-            color.flatten().straight();
-            color.a = blockColorOpacity;
-        }
+        BlockShading.finishColor(color, blockColorOpacity);
 
         blockModel.initialize(modelStart);
 
-        // apply model-rotation
-        if (variant.isRotated()) {
-            blockModel.transform(modelTransform.identity()
-                    .translate(-0.5f, -0.5f, -0.5f)
-                    .multiplyTo(variant.getRotationMatrix())
-                    .translate(0.5f, 0.5f, 0.5f)
-            );
-        }
-
         //random offset
         if (block.getProperties().isRandomOffset()){
             float dx = (hashToFloat(block.getX(), block.getZ(), 123984) - 0.5f) * 0.75f;
@@ -131,85 +80,16 @@ public void build(BlockNeighborhood<?> block, Variant variant, BlockModelView bl
 
     }
 
-    private final MatrixM4f modelElementTransform = new MatrixM4f();
-    private void buildModelElementResource(Element element, BlockModelView blockModel) {
-
-        //create faces
-        Vector3f from = element.getFrom();
-        Vector3f to = element.getTo();
-
-        float
-                minX = Math.min(from.getX(), to.getX()),
-                minY = Math.min(from.getY(), to.getY()),
-                minZ = Math.min(from.getZ(), to.getZ()),
-                maxX = Math.max(from.getX(), to.getX()),
-                maxY = Math.max(from.getY(), to.getY()),
-                maxZ = Math.max(from.getZ(), to.getZ());
-
-        VectorM3f[] c = corners;
-        c[0].x = minX; c[0].y = minY; c[0].z = minZ;
-        c[1].x = minX; c[1].y = minY; c[1].z = maxZ;
-        c[2].x = maxX; c[2].y = minY; c[2].z = minZ;
-        c[3].x = maxX; c[3].y = minY; c[3].z = maxZ;
-        c[4].x = minX; c[4].y = maxY; c[4].z = minZ;
-        c[5].x = minX; c[5].y = maxY; c[5].z = maxZ;
-        c[6].x = maxX; c[6].y = maxY; c[6].z = minZ;
-        c[7].x = maxX; c[7].y = maxY; c[7].z = maxZ;
-
-        int modelStart = blockModel.getStart();
-        createElementFace(element, Direction.DOWN, c[0], c[2], c[3], c[1]);
-        createElementFace(element, Direction.UP, c[5], c[7], c[6], c[4]);
-        createElementFace(element, Direction.NORTH, c[2], c[0], c[4], c[6]);
-        createElementFace(element, Direction.SOUTH, c[1], c[3], c[7], c[5]);
-        createElementFace(element, Direction.WEST, c[0], c[1], c[5], c[4]);
-        createElementFace(element, Direction.EAST, c[3], c[2], c[6], c[7]);
-        blockModel.initialize(modelStart);
-
-        //rotate and scale down
-        blockModel.transform(modelElementTransform
-                .copy(element.getRotation().getMatrix())
-                .scale(BLOCK_SCALE, BLOCK_SCALE, BLOCK_SCALE)
-        );
-    }
+    private void createFace(int face) {
+        CompiledModel m = compiledModel;
 
-    private final VectorM3f faceRotationVector = new VectorM3f(0, 0, 0);
-    private void createElementFace(Element element, Direction faceDir, VectorM3f c0, VectorM3f c1, VectorM3f c2, VectorM3f c3) {
-        Face face = element.getFaces().get(faceDir);
-        if (face == null) return;
-
-        Vector3i faceDirVector = faceDir.toVector();
-
-        // light calculation
-        ExtendedBlock<?> facedBlockNeighbor = getRotationRelativeBlock(faceDir);
-        LightData blockLightData = block.getLightData();
-        LightData facedLightData = facedBlockNeighbor.getLightData();
-
-        int sunLight = Math.max(blockLightData.getSkyLight(), facedLightData.getSkyLight());
-        int blockLight = Math.max(blockLightData.getBlockLight(), facedLightData.getBlockLight());
-
-        // filter out faces that are in a "cave" that should not be rendered
-        if (
-                block.isRemoveIfCave() &&
-                (renderSettings.isCaveDetectionUsesBlockLight() ? Math.max(blockLight, sunLight) : sunLight) == 0
-        ) return;
-
-        // calculate faceRotationVector
-        faceRotationVector.set(
-                faceDirVector.getX(),
-                faceDirVector.getY(),
-                faceDirVector.getZ()
-        );
-        faceRotationVector.rotateAndScale(element.getRotation().getMatrix());
-        makeRotationRelative(faceRotationVector);
+        // light calculation, and filter out faces that are in a "cave" that should not be rendered
+        if (!shading.lightFace(block, m, face)) return;
+        int sunLight = shading.getSunLight();
+        int blockLight = shading.getBlockLight();
 
         // face culling
-        //if (faceRotationVector.y < 0.01) return;
-        if (face.getCullface() != null) {
-            ExtendedBlock<?> b = getRotationRelativeBlock(face.getCullface());
-            BlockProperties p = b.getProperties();
-            if (p.isCulling()) return;
-            if (p.getCullingIdentical() && b.getBlockState().equals(block.getBlockState())) return;
-        }
+        if (BlockShading.isCulled(block, m, face)) return;
 
         // initialize the faces
         blockModel.initialize();
@@ -220,83 +100,42 @@ private void createElementFace(Element element, Direction faceDir, VectorM3f c0,
         int face2 = face1 + 1;
 
         // ####### positions
+        float[] pos = m.positions;
+        int pi = face * 12;
         tileModel.setPositions(face1,
-                c0.x, c0.y, c0.z,
-                c1.x, c1.y, c1.z,
-                c2.x, c2.y, c2.z
+                pos[pi    ], pos[pi + 1], pos[pi + 2],
+                pos[pi + 3], pos[pi + 4], pos[pi + 5],
+                pos[pi + 6], pos[pi + 7], pos[pi + 8]
         );
         tileModel.setPositions(face2,
-                c0.x, c0.y, c0.z,
-                c2.x, c2.y, c2.z,
-                c3.x, c3.y, c3.z
+                pos[pi    ], pos[pi + 1], pos[pi + 2],
+                pos[pi + 6], pos[pi + 7], pos[pi + 8],
+                pos[pi + 9], pos[pi + 10], pos[pi + 11]
         );
 
         // ####### texture
-        ResourcePath<Texture> texturePath = face.getTexture().getTexturePath(modelResource.getTextures()::get);
-        int textureId = textureGallery.get(texturePath);
+        int textureId = m.textureIds[face];
         tileModel.setMaterialIndex(face1, textureId);
         tileModel.setMaterialIndex(face2, textureId);
 
         // ####### UV
-        Vector4f uvRaw = face.getUv();
-        float
-                uvx = uvRaw.getX() / 16f,
-                uvy = uvRaw.getY() / 16f,
-                uvz = uvRaw.getZ() / 16f,
-                uvw = uvRaw.getW() / 16f;
-
-        rawUvs[0].set(uvx, uvw);
-        rawUvs[1].set(uvz, uvw);
-        rawUvs[2].set(uvz, uvy);
-        rawUvs[3].set(uvx, uvy);
-
-        // face-rotation
-        int rotationSteps = Math.floorDiv(face.getRotation(), 90) % 4;
-        if (rotationSteps < 0) rotationSteps += 4;
-        for (int i = 0; i < 4; i++)
-            uvs[i] = rawUvs[(rotationSteps + i) % 4];
-
-        // UV-Lock counter-rotation
-        float uvRotation = 0f;
-        if (variant.isUvlock() && variant.isRotated()) {
-            float xRotSin = TrigMath.sin(variant.getX() * TrigMath.DEG_TO_RAD);
-            float xRotCos = TrigMath.cos(variant.getX() * TrigMath.DEG_TO_RAD);
-
-            uvRotation =
-                    variant.getY() * (faceDirVector.getY() * xRotCos + faceDirVector.getZ() * xRotSin) +
-                    variant.getX() * (1 - faceDirVector.getY());
-        }
-
-        // rotate uv's
-        if (uvRotation != 0){
-            uvRotation = (float)(uvRotation * TrigMath.DEG_TO_RAD);
-            float cx = TrigMath.cos(uvRotation), cy = TrigMath.sin(uvRotation);
-            for (VectorM2f uv : uvs) {
-                uv.translate(-0.5f, -0.5f);
-                uv.rotate(cx, cy);
-                uv.translate(0.5f, 0.5f);
-            }
-        }
-
+        float[] uvs = m.uvs;
+        int ui = face * 8;
         tileModel.setUvs(face1,
-                uvs[0].x, uvs[0].y,
-                uvs[1].x, uvs[1].y,
-                uvs[2].x, uvs[2].y
+                uvs[ui    ], uvs[ui + 1],
+                uvs[ui + 2], uvs[ui + 3],
+                uvs[ui + 4], uvs[ui + 5]
         );
 
         tileModel.setUvs(face2,
-                uvs[0].x, uvs[0].y,
-                uvs[2].x, uvs[2].y,
-                uvs[3].x, uvs[3].y
+                uvs[ui    ], uvs[ui + 1],
+                uvs[ui + 4], uvs[ui + 5],
+                uvs[ui + 6], uvs[ui + 7]
         );
 
-
         // ####### face-tint
-        if (face.getTintindex() >= 0) {
-            if (tintColor.a < 0) {
-                blockColorCalculator.getBlockColor(block, tintColor);
-            }
-
+        if (m.tinted[face]) {
+            Color tintColor = shading.getTint(block);
             tileModel.setColor(face1, tintColor.r, tintColor.g, tintColor.b);
             tileModel.setColor(face2, tintColor.r, tintColor.g, tintColor.b);
         } else {
@@ -313,111 +152,34 @@ private void createElementFace(Element element, Direction faceDir, VectorM3f c0,
         tileModel.setSunlight(face2, sunLight);
 
         // ######## AO
-        float ao0 = 1f, ao1 = 1f, ao2 = 1f, ao3 = 1f;
-        if (modelResource.isAmbientocclusion()){
-            ao0 = testAo(c0, faceDir);
-            ao1 = testAo(c1, faceDir);
-            ao2 = testAo(c2, faceDir);
-            ao3 = testAo(c3, faceDir);
-        }
+        float
+                ao0 = testAo(face * 4),
+                ao1 = testAo(face * 4 + 1),
+                ao2 = testAo(face * 4 + 2),
+                ao3 = testAo(face * 4 + 3);
 
         tileModel.setAOs(face1, ao0, ao1, ao2);
         tileModel.setAOs(face2, ao0, ao2, ao3);
 
         //if is top face set model-color
-        float a = faceRotationVector.y;
-        if (a > 0.01 && texturePath != null) {
-            Texture texture = texturePath.getResource(resourcePack::getTexture);
-            if (texture != null) {
-                mapColor.set(texture.getColorPremultiplied());
-                if (tintColor.a >= 0) {
-                    mapColor.multiply(tintColor);
-                }
-
-                // apply light
-                float combinedLight = Math.max(sunLight / 15f, blockLight / 15f);
-                combinedLight = (1 - renderSettings.getAmbientLight()) * combinedLight + renderSettings.getAmbientLight();
-                mapColor.r *= combinedLight;
-                mapColor.g *= combinedLight;
-                mapColor.b *= combinedLight;
-
-                if (mapColor.a > blockColorOpacity)
-                    blockColorOpacity = mapColor.a;
-
-                blockColor.add(mapColor);
-            }
+        Color textureColor = m.mapColors[face];
+        if (textureColor != null) {
+            blockColorOpacity = shading.addFaceColor(textureColor, blockColor, blockColorOpacity);
         }
     }
 
-    private ExtendedBlock<?> getRotationRelativeBlock(Direction direction){
-        return getRotationRelativeBlock(direction.toVector());
-    }
-
-    private ExtendedBlock<?> getRotationRelativeBlock(Vector3i direction){
-        return getRotationRelativeBlock(
-                direction.getX(),
-                direction.getY(),
-                direction.getZ()
-        );
-    }
-
-    private final VectorM3f rotationRelativeBlockDirection = new VectorM3f(0, 0, 0);
-    private ExtendedBlock<?> getRotationRelativeBlock(int dx, int dy, int dz){
-        rotationRelativeBlockDirection.set(dx, dy, dz);
-        makeRotationRelative(rotationRelativeBlockDirection);
-
-        return block.getNeighborBlock(
-                Math.round(rotationRelativeBlockDirection.x),
-                Math.round(rotationRelativeBlockDirection.y),
-                Math.round(rotationRelativeBlockDirection.z)
-        );
-    }
+    private float testAo(int corner){
+        int count = compiledModel.aoNeighborCounts[corner];
+        if (count == 0) return 1f;
 
-    private void makeRotationRelative(VectorM3f direction){
-        if (variant.isRotated())
-            direction.transform(variant.getRotationMatrix());
-    }
-
-    private float testAo(VectorM3f vertex, Direction dir){
-        Vector3i dirVec = dir.toVector();
+        int[] neighbors = compiledModel.aoNeighbors;
         int occluding = 0;
-
-        int x = 0;
-        if (vertex.x == 16){
-            x = 1;
-        } else if (vertex.x == 0){
-            x = -1;
-        }
-
-        int y = 0;
-        if (vertex.y == 16){
-            y = 1;
-        } else if (vertex.y == 0){
-            y = -1;
-        }
-
-        int z = 0;
-        if (vertex.z == 16){
-            z = 1;
-        } else if (vertex.z == 0){
-            z = -1;
-        }
-
-
-        if (x * dirVec.getX() + y * dirVec.getY() > 0){
-            if (getRotationRelativeBlock(x, y, 0).getProperties().isOccluding()) occluding++;
-        }
-
-        if (x * dirVec.getX() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(x, 0, z).getProperties().isOccluding()) occluding++;
-        }
-
-        if (y * dirVec.getY() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(0, y, z).getProperties().isOccluding()) occluding++;
-        }
-
-        if (x * dirVec.getX() + y * dirVec.getY() + z * dirVec.getZ() > 0){
-            if (getRotationRelativeBlock(x, y, z).getProperties().isOccluding()) occluding++;
+        for (int i = 0, index = corner * 12; i < count; i++, index += 3) {
+            if (block.getNeighborBlock(
+                    neighbors[index],
+                    neighbors[index + 1],
+                    neighbors[index + 2]
+            ).getProperties().isOccluding()) occluding++;
         }
 
         if (occluding > 3) occluding = 3;
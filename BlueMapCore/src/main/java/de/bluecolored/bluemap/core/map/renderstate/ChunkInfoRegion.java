@@ -24,9 +24,11 @@
  */
 package de.bluecolored.bluemap.core.map.renderstate;
 
+import de.bluecolored.bluemap.core.world.ChunkContentHash;
 import de.bluecolored.bluenbt.NBTName;
 import de.bluecolored.bluenbt.NBTPostDeserialize;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 import static de.bluecolored.bluemap.core.map.renderstate.MapChunkState.SHIFT;
 
@@ -39,6 +41,10 @@ public class ChunkInfoRegion implements CellStorage.Cell {
     @NBTName("chunk-hashes")
     private int[] chunkHashes;
 
+    // only created once a content-hash is set, so maps without content-hashing don't store them
+    @NBTName("chunk-content-hashes")
+    private long @Nullable [] chunkContentHashes;
+
     @Getter
     private transient boolean modified;
 
@@ -48,6 +54,9 @@ private ChunkInfoRegion() {}
     public void init() {
         if (chunkHashes == null || chunkHashes.length != CHUNKS_PER_REGION)
             chunkHashes = new int[CHUNKS_PER_REGION];
+
+        if (chunkContentHashes != null && chunkContentHashes.length != CHUNKS_PER_REGION)
+            chunkContentHashes = null;
     }
 
     public int get(int x, int z) {
@@ -66,6 +75,28 @@ public int set(int x, int z, int hash) {
         return previous;
     }
 
+    public long getContentHash(int x, int z) {
+        if (chunkContentHashes == null) return ChunkContentHash.NONE;
+        return chunkContentHashes[index(x, z)];
+    }
+
+    public long setContentHash(int x, int z, long contentHash) {
+        if (chunkContentHashes == null) {
+            if (contentHash == ChunkContentHash.NONE) return ChunkContentHash.NONE;
+            chunkContentHashes = new long[CHUNKS_PER_REGION];
+        }
+
+        int index = index(x, z);
+        long previous = chunkContentHashes[index];
+
+        chunkContentHashes[index] = contentHash;
+
+        if (previous != contentHash)
+            modified = true;
+
+        return previous;
+    }
+
     private static int index(int x, int z) {
         return (z & REGION_MASK) << SHIFT | (x & REGION_MASK);
     }
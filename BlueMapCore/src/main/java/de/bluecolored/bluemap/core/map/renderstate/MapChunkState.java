@@ -42,6 +42,18 @@ public synchronized int set(int x, int z, int hash) {
         return cell(x >> SHIFT, z >> SHIFT).set(x, z, hash);
     }
 
+    /**
+     * The {@link de.bluecolored.bluemap.core.world.ChunkContentHash content-hash} of the chunk when it was last rendered,
+     * or {@link de.bluecolored.bluemap.core.world.ChunkContentHash#NONE} if it is not known.
+     */
+    public long getContentHash(int x, int z) {
+        return cell(x >> SHIFT, z >> SHIFT).getContentHash(x, z);
+    }
+
+    public synchronized long setContentHash(int x, int z, long contentHash) {
+        return cell(x >> SHIFT, z >> SHIFT).setContentHash(x, z, contentHash);
+    }
+
     @Override
     protected ChunkInfoRegion createNewCell() {
         return ChunkInfoRegion.create();
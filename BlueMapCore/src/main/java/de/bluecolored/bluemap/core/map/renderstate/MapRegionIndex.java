@@ -0,0 +1,175 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.renderstate;
+
+import com.flowpowered.math.vector.Vector2i;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.map.MapSettings;
+import de.bluecolored.bluemap.core.storage.ItemStorage;
+import de.bluecolored.bluemap.core.storage.compression.CompressedInputStream;
+import de.bluecolored.bluemap.core.world.RegionFileInfo;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the state of each region-file (size, modification-time and header-checksum) at the time the region
+ * was last rendered without errors.<br>
+ * This allows a map-update to skip regions whose files did not change since then, without reading them.
+ */
+public class MapRegionIndex {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final ItemStorage storage;
+    private final Map<Vector2i, Entry> entries = new HashMap<>();
+
+    /**
+     * A hash of all map-settings that influence which tiles of a region are rendered,
+     * if those settings change, the index is invalid.
+     */
+    @Getter private int settingsHash;
+    private boolean modified;
+
+    public MapRegionIndex(ItemStorage storage) {
+        this.storage = storage;
+    }
+
+    /**
+     * Loads the index from the storage, the index is discarded if it has been created with different settings.
+     */
+    public synchronized void load(int settingsHash) {
+        entries.clear();
+        this.settingsHash = settingsHash;
+        this.modified = false;
+
+        try (CompressedInputStream in = storage.read()) {
+            if (in == null) return;
+
+            DataInputStream data = new DataInputStream(new BufferedInputStream(in.decompress()));
+            if (data.readInt() != FORMAT_VERSION) return;
+            if (data.readInt() != settingsHash) {
+                modified = true;
+                return;
+            }
+
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                Vector2i region = new Vector2i(data.readInt(), data.readInt());
+                entries.put(region, new Entry(data.readLong(), data.readLong(), data.readLong()));
+            }
+        } catch (IOException ex) {
+            Logger.global.logError("Failed to load region-index", ex);
+            entries.clear();
+        }
+    }
+
+    public synchronized void save() {
+        if (!modified) return;
+
+        try (OutputStream out = storage.write()) {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+            data.writeInt(FORMAT_VERSION);
+            data.writeInt(settingsHash);
+            data.writeInt(entries.size());
+            for (Map.Entry<Vector2i, Entry> entry : entries.entrySet()) {
+                Vector2i region = entry.getKey();
+                Entry value = entry.getValue();
+                data.writeInt(region.getX());
+                data.writeInt(region.getY());
+                data.writeLong(value.size());
+                data.writeLong(value.lastModified());
+                data.writeLong(value.headerChecksum());
+            }
+            data.flush();
+            modified = false;
+        } catch (IOException ex) {
+            Logger.global.logError("Failed to save region-index", ex);
+        }
+    }
+
+    public synchronized void reset() {
+        entries.clear();
+        modified = true;
+    }
+
+    public synchronized @Nullable Entry get(Vector2i region) {
+        return entries.get(region);
+    }
+
+    public synchronized void set(Vector2i region, Entry entry) {
+        if (entry.equals(entries.put(region, entry))) return;
+        modified = true;
+    }
+
+    public synchronized void remove(Vector2i region) {
+        if (entries.remove(region) != null)
+            modified = true;
+    }
+
+    /**
+     * Creates a hash of all map-settings that influence which tiles of a region are rendered or deleted,
+     * independent of the world-files.
+     */
+    public static int settingsHash(MapSettings settings) {
+        return Objects.hash(
+                settings.getMinPos(),
+                settings.getMaxPos(),
+                settings.isRenderEdges(),
+                settings.isIgnoreMissingLightData(),
+                settings.getMinInhabitedTime(),
+                settings.getMinInhabitedTimeRadius(),
+                settings.getHiresTileSize()
+        );
+    }
+
+    /**
+     * The state of a region-file when the region was last rendered.
+     * @param headerChecksum the {@link de.bluecolored.bluemap.core.world.Region#getHeaderChecksum() header-checksum}
+     *                       of the region, or 0 if not known
+     */
+    public record Entry (long size, long lastModified, long headerChecksum) {
+
+        public Entry(RegionFileInfo fileInfo, long headerChecksum) {
+            this(fileInfo.size(), fileInfo.lastModified(), headerChecksum);
+        }
+
+        /**
+         * Tests if the region-file has (most likely) not been touched since this entry has been created.
+         */
+        public boolean matches(RegionFileInfo fileInfo) {
+            return
+                    fileInfo.isKnown() &&
+                    size == fileInfo.size() &&
+                    lastModified == fileInfo.lastModified();
+        }
+
+    }
+
+}
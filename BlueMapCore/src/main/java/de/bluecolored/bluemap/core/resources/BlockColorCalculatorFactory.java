@@ -27,6 +27,8 @@
 import com.flowpowered.math.GenericMath;
 import com.google.gson.stream.JsonReader;
 import de.bluecolored.bluemap.core.util.math.Color;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.BlockStateIdCache;
 import de.bluecolored.bluemap.core.world.biome.Biome;
 import de.bluecolored.bluemap.core.world.block.Block;
 import de.bluecolored.bluemap.core.world.block.BlockNeighborhood;
@@ -55,9 +57,11 @@ public class BlockColorCalculatorFactory {
     private final int[] grassMap = new int[65536];
 
     private final Map<String, ColorFunction> blockColorMap;
+    private volatile BlockStateIdCache<ColorFunction> colorFunctionCache;
 
     public BlockColorCalculatorFactory() {
         this.blockColorMap = new HashMap<>();
+        this.colorFunctionCache = new BlockStateIdCache<>(this::loadColorFunction);
     }
 
     public void load(Path configFile) throws IOException {
@@ -98,6 +102,9 @@ public void load(Path configFile) throws IOException {
 
             json.endObject();
         }
+
+        // resolved color-functions might have changed
+        colorFunctionCache = new BlockStateIdCache<>(this::loadColorFunction);
     }
 
     public void setFoliageMap(BufferedImage foliageMap) {
@@ -108,6 +115,13 @@ public void setGrassMap(BufferedImage grassMap) {
         grassMap.getRGB(0, 0, 256, 256, this.grassMap, 0, 256);
     }
 
+    private ColorFunction loadColorFunction(BlockState blockState) {
+        ColorFunction colorFunction = blockColorMap.get(blockState.getFormatted());
+        if (colorFunction == null) colorFunction = blockColorMap.get("default");
+        if (colorFunction == null) colorFunction = BlockColorCalculator::getBlendedFoliageColor;
+        return colorFunction;
+    }
+
     public BlockColorCalculator createCalculator() {
         return new BlockColorCalculator();
     }
@@ -123,13 +137,7 @@ public class BlockColorCalculator {
 
         @SuppressWarnings("UnusedReturnValue")
         public Color getBlockColor(BlockNeighborhood<?> block, Color target) {
-            String blockId = block.getBlockState().getFormatted();
-
-            ColorFunction colorFunction = blockColorMap.get(blockId);
-            if (colorFunction == null) colorFunction = blockColorMap.get("default");
-            if (colorFunction == null) colorFunction = BlockColorCalculator::getBlendedFoliageColor;
-
-            return colorFunction.invoke(this, block, target);
+            return colorFunctionCache.get(block.getBlockState()).invoke(this, block, target);
         }
 
         public Color getRedstoneColor(Block<?> block, Color target) {
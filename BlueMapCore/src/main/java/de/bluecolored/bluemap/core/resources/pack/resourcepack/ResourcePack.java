@@ -24,8 +24,6 @@
  */
 package de.bluecolored.bluemap.core.resources.pack.resourcepack;
 
-import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.resources.BlockColorCalculatorFactory;
@@ -40,6 +38,7 @@
 import de.bluecolored.bluemap.core.resources.pack.resourcepack.texture.Texture;
 import de.bluecolored.bluemap.core.util.Tristate;
 import de.bluecolored.bluemap.core.world.BlockProperties;
+import de.bluecolored.bluemap.core.world.BlockStateIdCache;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
@@ -72,7 +71,7 @@ public class ResourcePack extends Pack {
 
     private final Map<String, ResourcePath<BlockState>> blockStatePaths;
     private final Map<String, ResourcePath<Texture>> texturePaths;
-    private final LoadingCache<de.bluecolored.bluemap.core.world.BlockState, BlockProperties> blockPropertiesCache;
+    private final BlockStateIdCache<BlockProperties> blockPropertiesCache;
 
     public ResourcePack(int packVersion) {
         super(packVersion);
@@ -87,10 +86,7 @@ public ResourcePack(int packVersion) {
         this.colorCalculatorFactory = new BlockColorCalculatorFactory();
         this.blockPropertiesConfig = new BlockPropertiesConfig();
 
-        this.blockPropertiesCache = Caffeine.newBuilder()
-                .executor(BlueMap.THREAD_POOL)
-                .maximumSize(10000)
-                .build(this::loadBlockProperties);
+        this.blockPropertiesCache = new BlockStateIdCache<>(this::loadBlockProperties);
     }
 
     public synchronized void loadResources(Iterable<Path> roots) throws IOException, InterruptedException {
@@ -51,4 +51,9 @@ public void forEach(de.bluecolored.bluemap.core.world.BlockState blockState, int
         if (multipart != null) multipart.forEach(blockState, x, y, z, consumer);
     }
 
+    public void forEachVariantSet(de.bluecolored.bluemap.core.world.BlockState blockState, Consumer<VariantSet> consumer) {
+        if (variants != null) variants.forEachVariantSet(blockState, consumer);
+        if (multipart != null) multipart.forEachVariantSet(blockState, consumer);
+    }
+
 }
@@ -54,6 +54,14 @@ public void forEach(BlockState blockState, int x, int y, int z, Consumer<Variant
         }
     }
 
+    public void forEachVariantSet(BlockState blockState, Consumer<VariantSet> consumer) {
+        for (VariantSet part : parts) {
+            if (part.getCondition().matches(blockState)) {
+                consumer.accept(part);
+            }
+        }
+    }
+
     static class Adapter extends AbstractTypeAdapterFactory<Multipart> {
 
         public Adapter() {
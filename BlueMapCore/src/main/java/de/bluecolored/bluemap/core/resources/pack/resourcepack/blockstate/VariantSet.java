@@ -29,6 +29,7 @@
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import de.bluecolored.bluemap.core.resources.AbstractTypeAdapterFactory;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -73,14 +74,22 @@ private double summarizeWeights() {
     }
 
     public void forEach(int x, int y, int z, Consumer<Variant> consumer) {
+        Variant variant = getVariant(x, y, z);
+        if (variant != null) consumer.accept(variant);
+    }
+
+    /**
+     * Selects one of the variants of this set (randomly, weighted, based on the position)
+     * @return the selected variant, or null if this set has no variants
+     */
+    public @Nullable Variant getVariant(int x, int y, int z) {
         double selection = hashToFloat(x, y, z) * totalWeight; // random based on position
         for (Variant variant : variants) {
             selection -= variant.getWeight();
-            if (selection <= 0) {
-                consumer.accept(variant);
-                return;
-            }
+            if (selection <= 0) return variant;
         }
+
+        return null;
     }
 
     private static float hashToFloat(int x, int y, int z) {
@@ -69,6 +69,20 @@ public void forEach(BlockState blockState, int x, int y, int z, Consumer<Variant
         }
     }
 
+    public void forEachVariantSet(BlockState blockState, Consumer<VariantSet> consumer) {
+        for (VariantSet variant : variants){
+            if (variant.getCondition().matches(blockState)){
+                consumer.accept(variant);
+                return;
+            }
+        }
+
+        // still here? do default
+        if (defaultVariant != null) {
+            consumer.accept(defaultVariant);
+        }
+    }
+
     static class Adapter extends AbstractTypeAdapterFactory<Variants> {
 
         public Adapter() {
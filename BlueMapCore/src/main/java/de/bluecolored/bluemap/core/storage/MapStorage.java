@@ -49,6 +49,11 @@ public interface MapStorage {
      */
     GridStorage chunkState();
 
+    /**
+     * Returns a {@link ItemStorage} for the region-index (meta-) data of this map
+     */
+    ItemStorage regionIndex();
+
     /**
      * Returns a {@link ItemStorage} for a map asset with the given name
      */
@@ -121,6 +121,11 @@ public Path getAssetPath(String name) {
         return assetPath;
     }
 
+    @Override
+    public ItemStorage regionIndex() {
+        return new FileItemStorage(root.resolve(RENDER_STATE_PATH).resolve("regions.dat" + Compression.GZIP.getFileSuffix()), Compression.GZIP, atomic);
+    }
+
     @Override
     public ItemStorage asset(String name) {
         return new FileItemStorage(getAssetPath(name), Compression.NONE, atomic);
@@ -26,9 +26,11 @@
 
 import de.bluecolored.bluemap.core.util.Key;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,18 +38,29 @@
  * Represents a BlockState<br>
  * It is important that {@link #hashCode} and {@link #equals} are implemented correctly, for the caching to work properly.<br>
  * <br>
+ * BlockStates can be canonicalized using {@link #intern()}, which returns one shared instance per distinct BlockState
+ * and assigns it a dense, global integer-id ({@link #getId()}). Two interned BlockStates are equal only if they are
+ * the same instance.<br>
+ * <br>
  * <i>The implementation of this class has to be thread-save!</i><br>
  */
 public class BlockState extends Key {
 
     private static final Pattern BLOCKSTATE_SERIALIZATION_PATTERN = Pattern.compile("^(.+?)(?:\\[(.*)])?$");
 
-    public static final BlockState AIR = new BlockState("minecraft:air");
-    public static final BlockState MISSING = new BlockState("bluemap:missing");
+    private static final ConcurrentHashMap<BlockState, BlockState> INTERN_POOL = new ConcurrentHashMap<>();
+    private static final Object ID_LOCK = new Object();
+    private static volatile BlockState[] byId = new BlockState[1024];
+    private static int nextId = 0;
+
+    public static final BlockState AIR = new BlockState("minecraft:air").intern();
+    public static final BlockState MISSING = new BlockState("bluemap:missing").intern();
 
     private boolean hashed;
     private int hash;
 
+    private volatile int id = -1;
+
     private final Map<String, String> properties;
     private final Property[] propertiesArray;
 
@@ -81,6 +94,43 @@ public BlockState(String value, Map<String, String> properties) {
 
     }
 
+    /**
+     * Returns the canonical instance of this BlockState.<br>
+     * If there is none yet, this instance becomes the canonical one and gets a new id assigned.
+     */
+    public BlockState intern() {
+        if (id >= 0) return this;
+
+        BlockState interned = INTERN_POOL.get(this);
+        if (interned != null) return interned;
+
+        synchronized (ID_LOCK) {
+            interned = INTERN_POOL.get(this);
+            if (interned != null) return interned;
+
+            int id = nextId++;
+            BlockState[] byId = BlockState.byId;
+            if (id >= byId.length) byId = Arrays.copyOf(byId, byId.length * 2);
+            byId[id] = this;
+
+            this.id = id;
+            BlockState.byId = byId;
+            INTERN_POOL.put(this, this);
+        }
+
+        return this;
+    }
+
+    /**
+     * The global id of this BlockState.<br>
+     * Ids are dense, starting at 0, and are only valid for the runtime of this application.
+     * They should be used to index arrays, but never be persisted.
+     */
+    public int getId() {
+        int id = this.id;
+        return id >= 0 ? id : intern().id;
+    }
+
     /**
      * An immutable map of all properties of this block.<br>
      * <br>
@@ -140,6 +190,7 @@ public boolean equals(Object obj) {
         if (this == obj) return true;
         if (!(obj instanceof BlockState b)) return false;
         if (!b.canEqual(this)) return false;
+        if (id >= 0 && b.id >= 0) return false; // both interned but not the same instance
         if (getFormatted() != b.getFormatted()) return false;
         return Arrays.equals(propertiesArray, b.propertiesArray);
     }
@@ -188,12 +239,30 @@ public static BlockState fromString(String serializedBlockState) throws IllegalA
 
             String blockId = m.group(1).trim();
 
-            return new BlockState(blockId, pt);
+            return new BlockState(blockId, pt).intern();
         } catch (RuntimeException ex) {
             throw new IllegalArgumentException("'" + serializedBlockState + "' could not be parsed to a BlockState!");
         }
     }
 
+    /**
+     * Returns the interned BlockState with the given id, or null if there is none.
+     */
+    public static @Nullable BlockState byId(int id) {
+        BlockState[] byId = BlockState.byId;
+        if (id < 0 || id >= byId.length) return null;
+        return byId[id];
+    }
+
+    /**
+     * The number of interned BlockStates. All ids are smaller than this value.
+     */
+    public static int getIdCount() {
+        synchronized (ID_LOCK) {
+            return nextId;
+        }
+    }
+
     public static final class Property implements Comparable<Property> {
         private final String key, value;
 
@@ -0,0 +1,80 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache that stores one value per {@link BlockState}, indexed by the {@link BlockState#getId() global id}
+ * of the BlockState instead of hashing it.<br>
+ * Values are computed lazily and are never evicted. Concurrent computations of the same value might happen, the loader
+ * should therefore be free of side effects.
+ */
+public class BlockStateIdCache<T> {
+
+    private final Function<BlockState, T> loader;
+    private volatile AtomicReferenceArray<T> values;
+
+    public BlockStateIdCache(Function<BlockState, T> loader) {
+        this.loader = loader;
+        this.values = new AtomicReferenceArray<>(Math.max(BlockState.getIdCount(), 64));
+    }
+
+    public T get(BlockState blockState) {
+        int id = blockState.getId();
+
+        AtomicReferenceArray<T> values = this.values;
+        if (id < values.length()) {
+            T value = values.get(id);
+            if (value != null) return value;
+        }
+
+        T value = loader.apply(blockState);
+        grow(id).set(id, value);
+        return value;
+    }
+
+    private AtomicReferenceArray<T> grow(int id) {
+        AtomicReferenceArray<T> values = this.values;
+        if (id < values.length()) return values;
+
+        synchronized (this) {
+            values = this.values;
+            if (id < values.length()) return values;
+
+            int length = values.length();
+            while (length <= id) length *= 2;
+
+            AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < values.length(); i++)
+                grown.set(i, values.get(i));
+
+            this.values = grown;
+            return grown;
+        }
+    }
+
+}
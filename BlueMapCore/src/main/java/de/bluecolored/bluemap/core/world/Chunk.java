@@ -28,19 +28,22 @@
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import org.jetbrains.annotations.Nullable;
 
-public interface Chunk {
+public interface Chunk extends ChunkMeta {
 
     Chunk EMPTY_CHUNK = new Chunk() {};
     Chunk ERRORED_CHUNK = new Chunk() {};
 
+    @Override
     default boolean isGenerated() {
         return false;
     }
 
+    @Override
     default boolean hasLightData() {
         return false;
     }
 
+    @Override
     default long getInhabitedTime() {
         return 0;
     }
@@ -65,6 +68,40 @@ default int getMinY(int x, int z) {
         return 0;
     }
 
+    /**
+     * The y-coordinate of the highest block in this column that is not air,
+     * or {@link Integer#MIN_VALUE} if the whole column only contains air.<br>
+     * If not known exactly, implementations can return any higher value, defaults to {@link #getMaxY(int, int)}.
+     */
+    default int getMaxNonAirY(int x, int z) {
+        return getMaxY(x, z);
+    }
+
+    /**
+     * The y-coordinate of the lowest block in this column that is not air,
+     * or {@link Integer#MAX_VALUE} if the whole column only contains air.<br>
+     * If not known exactly, implementations can return any lower value, defaults to {@link #getMinY(int, int)}.
+     */
+    default int getMinNonAirY(int x, int z) {
+        return getMinY(x, z);
+    }
+
+    /**
+     * Returns a summary of the contents of the section at the given section-y (block-y / 16).<br>
+     * If not known, implementations should return {@link SectionOccupancy#MIXED}.
+     */
+    default SectionOccupancy getSectionOccupancy(int sectionY) {
+        return SectionOccupancy.MIXED;
+    }
+
+    /**
+     * Whether the section at the given section-y (block-y / 16) might contain any block-light.<br>
+     * If not known, implementations should return true.
+     */
+    default boolean hasBlockLight(int sectionY) {
+        return true;
+    }
+
     default boolean hasWorldSurfaceHeights() {
         return false;
     }
@@ -79,4 +116,11 @@ default boolean hasOceanFloorHeights() {
 
     default @Nullable BlockEntity getBlockEntity(int x, int y, int z) { return null; }
 
+    /**
+     * A rough estimate of the memory (in bytes) this chunk retains, used to weigh chunks in caches.
+     */
+    default int estimateSize() {
+        return 16;
+    }
+
 }
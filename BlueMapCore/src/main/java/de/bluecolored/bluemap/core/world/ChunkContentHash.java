@@ -0,0 +1,94 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Computes a hash of the render-relevant content (block-states, light and biomes) of a chunk.<br>
+ * Unlike the chunk-timestamps of a region-file, this only changes if the contents of the chunk actually changed.
+ * The hash is stable across restarts, but might change between versions of BlueMap.
+ */
+public class ChunkContentHash {
+
+    /**
+     * Returned for chunks that have no content that could be hashed (e.g. not generated chunks)
+     */
+    public static final long NONE = 0;
+
+    private static final XXHashFactory XX_HASH_FACTORY = XXHashFactory.fastestInstance();
+    private static final long SEED = 0x626C75656D6170L; // "bluemap"
+
+    private static final int BLOCKS_PER_SECTION = 16 * 16 * 16;
+    private static final int BIOMES_PER_SECTION = 4 * 4 * 4;
+
+    private ChunkContentHash() {}
+
+    public static long of(Chunk chunk) {
+        if (!chunk.isGenerated()) return NONE;
+
+        int minSection = chunk.getMinY(0, 0) >> 4;
+        int maxSection = chunk.getMaxY(0, 0) >> 4;
+
+        // per section: the section-y, a state-hash and a light-byte per block and a biome-hash per 4x4x4 cell
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + BLOCKS_PER_SECTION * (Integer.BYTES + 1) + BIOMES_PER_SECTION * Integer.BYTES);
+        LightData light = new LightData(0, 0);
+
+        try (StreamingXXHash64 hash = XX_HASH_FACTORY.newStreamingHash64(SEED)) {
+            for (int sectionY = minSection; sectionY <= maxSection; sectionY++) {
+                int minY = sectionY << 4;
+                buffer.clear();
+                buffer.putInt(sectionY);
+
+                for (int y = minY; y < minY + 16; y++) {
+                    for (int z = 0; z < 16; z++) {
+                        for (int x = 0; x < 16; x++) {
+                            buffer.putInt(chunk.getBlockState(x, y, z).hashCode());
+                            chunk.getLightData(x, y, z, light);
+                            buffer.put((byte) (light.getSkyLight() << 4 | light.getBlockLight() & 0xF));
+                        }
+                    }
+                }
+
+                for (int y = minY; y < minY + 16; y += 4) {
+                    for (int z = 0; z < 16; z += 4) {
+                        for (int x = 0; x < 16; x += 4) {
+                            buffer.putInt(chunk.getBiome(x, y, z).getKey().getFormatted().hashCode());
+                        }
+                    }
+                }
+
+                hash.update(buffer.array(), 0, buffer.position());
+            }
+
+            long value = hash.getValue();
+            return value != NONE ? value : 1;
+        }
+    }
+
+}
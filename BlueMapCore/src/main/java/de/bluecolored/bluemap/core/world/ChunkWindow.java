@@ -0,0 +1,166 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+import com.flowpowered.math.vector.Vector2i;
+import com.flowpowered.math.vector.Vector3i;
+import de.bluecolored.bluemap.core.util.Grid;
+import de.bluecolored.bluemap.core.util.WatchService;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * A view on a {@link World} that holds on to all chunks inside a fixed rectangular area of chunks.<br>
+ * Every chunk inside that area is requested only once from the underlying world, all following requests are
+ * answered by indexing into an array.
+ * Requests for chunks outside the area are passed through to the underlying world.<br>
+ * <br>
+ * Use this for short-lived, bulk operations on a small area of the world (e.g. rendering a tile),
+ * so that the chunk-cache of the world does not have to be queried for every single block.<br>
+ * <br>
+ * <i>This class is <b>not</b> thread-safe!</i>
+ */
+public class ChunkWindow implements World {
+
+    private final World world;
+    private final int minChunkX, minChunkZ, sizeX, sizeZ;
+    private final Chunk[] chunks;
+
+    /**
+     * Creates a new window containing all chunks that contain any of the blocks between min and max (inclusive),
+     * plus the given margin of chunks on each side.
+     */
+    public ChunkWindow(World world, Vector2i minBlock, Vector2i maxBlock, int chunkMargin) {
+        this.world = world;
+
+        this.minChunkX = (minBlock.getX() >> 4) - chunkMargin;
+        this.minChunkZ = (minBlock.getY() >> 4) - chunkMargin;
+        this.sizeX = (maxBlock.getX() >> 4) + chunkMargin - minChunkX + 1;
+        this.sizeZ = (maxBlock.getY() >> 4) + chunkMargin - minChunkZ + 1;
+
+        this.chunks = new Chunk[sizeX * sizeZ];
+    }
+
+    /**
+     * The world this is a window on
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public Chunk getChunkAtBlock(int x, int z) {
+        return getChunk(x >> 4, z >> 4);
+    }
+
+    @Override
+    public Chunk getChunk(int x, int z) {
+        int wx = x - minChunkX, wz = z - minChunkZ;
+        if (wx < 0 || wx >= sizeX || wz < 0 || wz >= sizeZ)
+            return world.getChunk(x, z);
+
+        int index = wz * sizeX + wx;
+        Chunk chunk = chunks[index];
+        if (chunk == null) {
+            chunk = world.getChunk(x, z);
+            chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    @Override
+    public ChunkMeta getChunkMeta(int x, int z) {
+        int wx = x - minChunkX, wz = z - minChunkZ;
+        if (wx >= 0 && wx < sizeX && wz >= 0 && wz < sizeZ) {
+            Chunk chunk = chunks[wz * sizeX + wx];
+            if (chunk != null) return chunk;
+        }
+
+        return world.getChunkMeta(x, z);
+    }
+
+    @Override
+    public String getId() {
+        return world.getId();
+    }
+
+    @Override
+    public String getName() {
+        return world.getName();
+    }
+
+    @Override
+    public Vector3i getSpawnPoint() {
+        return world.getSpawnPoint();
+    }
+
+    @Override
+    public DimensionType getDimensionType() {
+        return world.getDimensionType();
+    }
+
+    @Override
+    public Grid getChunkGrid() {
+        return world.getChunkGrid();
+    }
+
+    @Override
+    public Grid getRegionGrid() {
+        return world.getRegionGrid();
+    }
+
+    @Override
+    public Region getRegion(int x, int z) {
+        return world.getRegion(x, z);
+    }
+
+    @Override
+    public Collection<Vector2i> listRegions() {
+        return world.listRegions();
+    }
+
+    @Override
+    public WatchService<Vector2i> createRegionWatchService() throws IOException {
+        return world.createRegionWatchService();
+    }
+
+    @Override
+    public void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter) {
+        world.preloadRegionChunks(x, z, chunkFilter);
+    }
+
+    @Override
+    public void invalidateChunkCache() {
+        world.invalidateChunkCache();
+    }
+
+    @Override
+    public void invalidateChunkCache(int x, int z) {
+        world.invalidateChunkCache(x, z);
+    }
+
+}
@@ -25,6 +25,9 @@
 package de.bluecolored.bluemap.core.world;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 public interface Region {
 
@@ -52,6 +55,28 @@ public void accept(int chunkX, int chunkZ, Chunk chunk) {
         return singleChunkConsumer.foundChunk;
     }
 
+    /**
+     * Directly loads and returns the {@link ChunkMeta} of the specified chunk.<br>
+     * (implementations should consider overriding this method to avoid loading the full chunk)
+     */
+    default ChunkMeta loadChunkMeta(int chunkX, int chunkZ) throws IOException {
+        return loadChunk(chunkX, chunkZ);
+    }
+
+    /**
+     * Returns a checksum of the header of this region, which changes if any chunk in this region has been rewritten,
+     * or 0 if the region does not exist or this is not supported.
+     */
+    default long getHeaderChecksum() throws IOException {
+        return 0;
+    }
+
+    /**
+     * Releases any resources (like open files) this region is currently holding.<br>
+     * The region can still be used afterwards and will re-acquire them if needed.
+     */
+    default void close() throws IOException {}
+
     /**
      * Iterates over all chunks in this region and first calls {@link ChunkConsumer#filter(int, int, int)}.<br>
      * And if (any only if) that method returned <code>true</code>, the chunk will be loaded and {@link ChunkConsumer#accept(int, int, Chunk)}
@@ -61,4 +86,23 @@ public void accept(int chunkX, int chunkZ, Chunk chunk) {
      */
     void iterateAllChunks(ChunkConsumer consumer) throws IOException;
 
+    /**
+     * Same as {@link #iterateAllChunks(ChunkConsumer)}, but the chunks are loaded asynchronously using the given executor.<br>
+     * <i>{@link ChunkConsumer#accept(int, int, Chunk)} might be called concurrently from multiple threads!</i><br>
+     * (implementations should consider overriding this method to decode the chunks in parallel)
+     * @param consumer the consumer choosing which chunks to load and accepting them
+     * @param executor the executor used to load the chunks
+     * @return a future that completes when all chunks have been accepted,
+     * or completes exceptionally if there was an error loading any of the chunks
+     */
+    default CompletableFuture<Void> iterateAllChunks(ChunkConsumer consumer, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                iterateAllChunks(consumer);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
 }
@@ -0,0 +1,60 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world;
+
+/**
+ * A summary of what a 16x16x16 section of a {@link Chunk} contains.
+ */
+public enum SectionOccupancy {
+
+    /**
+     * The section only contains air (or does not exist at all)
+     */
+    EMPTY,
+
+    /**
+     * The section contains only one single {@link BlockState}, which is not air
+     */
+    UNIFORM,
+
+    /**
+     * The section contains different {@link BlockState}s, or its contents are unknown
+     */
+    MIXED;
+
+    /**
+     * Determines the occupancy of a section from the block-palette of that section.
+     */
+    public static SectionOccupancy of(BlockState[] palette) {
+        if (palette.length == 0) return EMPTY;
+        if (palette.length == 1) return palette[0].isAir() ? EMPTY : UNIFORM;
+
+        for (BlockState blockState : palette) {
+            if (!blockState.isAir()) return MIXED;
+        }
+        return EMPTY;
+    }
+
+}
@@ -33,6 +33,8 @@
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Predicate;
 
 /**
@@ -65,6 +67,14 @@ public interface World {
      */
     Chunk getChunk(int x, int z);
 
+    /**
+     * Returns the {@link ChunkMeta} of the chunk on the specified chunk-position.<br>
+     * Use this instead of {@link #getChunk(int, int)} if only the meta-information of the chunk is needed.
+     */
+    default ChunkMeta getChunkMeta(int x, int z) {
+        return getChunk(x, z);
+    }
+
     /**
      * Returns the {@link Region} on the specified region-position
      */
@@ -76,6 +86,26 @@ public interface World {
      */
     Collection<Vector2i> listRegions();
 
+    /**
+     * Returns the same regions as {@link #listRegions()}, together with the {@link RegionFileInfo} of their files.<br>
+     * Regions whose file-state can not be determined are mapped to {@link RegionFileInfo#UNKNOWN}.
+     * <i>(Be aware that the map is not cached and recollected each time from the world-files!)</i>
+     */
+    default Map<Vector2i, RegionFileInfo> listRegionFiles() {
+        Map<Vector2i, RegionFileInfo> regions = new HashMap<>();
+        for (Vector2i region : listRegions())
+            regions.put(region, RegionFileInfo.UNKNOWN);
+        return regions;
+    }
+
+    /**
+     * Returns the {@link RegionFileInfo} of the specified region, or {@link RegionFileInfo#UNKNOWN} if the region does
+     * not exist or its file-state can not be determined.
+     */
+    default RegionFileInfo getRegionFileInfo(int x, int z) {
+        return RegionFileInfo.UNKNOWN;
+    }
+
     /**
      * Creates and returns a new {@link WatchService} which watches for any changes in this worlds regions.
      * @throws IOException if an IOException occurred while creating the watch-service
@@ -93,7 +123,8 @@ default void preloadRegionChunks(int x, int z) {
     }
 
     /**
-     * Loads the filtered chunks from the specified region into the chunk cache (if there is a cache)
+     * Loads the filtered chunks from the specified region into the chunk cache (if there is a cache).<br>
+     * <i>This might happen asynchronously, so the chunks might not all be loaded yet when this method returns.</i>
      */
     void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter);
 
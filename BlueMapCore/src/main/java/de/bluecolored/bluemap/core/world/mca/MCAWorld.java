@@ -27,7 +27,11 @@
 import com.flowpowered.math.vector.Vector2i;
 import com.flowpowered.math.vector.Vector3i;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.gson.reflect.TypeToken;
 import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.logger.Logger;
@@ -38,6 +42,7 @@
 import de.bluecolored.bluemap.core.util.Vector2iCache;
 import de.bluecolored.bluemap.core.util.WatchService;
 import de.bluecolored.bluemap.core.world.*;
+import de.bluecolored.bluemap.core.world.mca.chunk.ChunkDiskCache;
 import de.bluecolored.bluemap.core.world.mca.chunk.ChunkLoader;
 import de.bluecolored.bluemap.core.world.mca.data.DimensionTypeDeserializer;
 import de.bluecolored.bluemap.core.world.mca.data.LevelData;
@@ -45,16 +50,23 @@
 import de.bluecolored.bluenbt.BlueNBT;
 import lombok.Getter;
 import lombok.ToString;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
-import java.util.Objects;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
 
@@ -67,6 +79,16 @@ public class MCAWorld implements World {
 
     private static final Vector2iCache VECTOR_2_I_CACHE = new Vector2iCache();
 
+    // a rough average of the memory a decoded chunk of a 1.18+ world uses, a full region is about 1024 times that.
+    // based on Chunk#estimateSize(): about 14 mixed sections with unpacked block-ids (8 KiB) and light (4 KiB),
+    // 10 uniform sections with only sky-light, and the heightmaps and column-bounds of the chunk
+    public static final long ESTIMATED_CHUNK_SIZE = (14 * 12_800L) + (10 * 2_560L) + 4_096L; // ~204 KiB
+    public static final long MIN_CHUNK_CACHE_SIZE = 64L * 1024 * 1024; // 64 MiB
+
+    // decoding the chunks of a preloaded region is blocking work, so it does not run on the THREAD_POOL that the caches use.
+    // if the queue is full, the thread requesting the preload decodes the chunks itself
+    private static final Executor PRELOAD_EXECUTOR = createPreloadExecutor();
+
     private final String id;
     private final Path worldFolder;
     private final Key dimension;
@@ -79,22 +101,24 @@ public class MCAWorld implements World {
     private final Path regionFolder;
 
     private final ChunkLoader chunkLoader = new ChunkLoader(this);
+    private volatile @Nullable ChunkDiskCache chunkDiskCache;
     private final LoadingCache<Vector2i, Region> regionCache = Caffeine.newBuilder()
             .executor(BlueMap.THREAD_POOL)
-            .softValues()
             .maximumSize(32)
             .expireAfterWrite(10, TimeUnit.MINUTES)
             .expireAfterAccess(1, TimeUnit.MINUTES)
+            .removalListener((Vector2i pos, Region region, RemovalCause cause) -> closeRegion(region))
+            .recordStats()
             .build(this::loadRegion);
-    private final LoadingCache<Vector2i, Chunk> chunkCache = Caffeine.newBuilder()
+    private final LoadingCache<Vector2i, Chunk> chunkCache;
+    private final LoadingCache<Vector2i, ChunkMeta> chunkMetaCache = Caffeine.newBuilder()
             .executor(BlueMap.THREAD_POOL)
-            .softValues()
-            .maximumSize(10240) // 10 regions worth of chunks
+            .maximumSize(102400) // 100 regions worth of chunk-metas
             .expireAfterWrite(10, TimeUnit.MINUTES)
             .expireAfterAccess(1, TimeUnit.MINUTES)
-            .build(this::loadChunk);
+            .build(this::loadChunkMeta);
 
-    private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData levelData) {
+    private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData levelData, long chunkCacheSize) {
         this.id = World.id(worldFolder, dimension);
         this.worldFolder = worldFolder;
         this.dimension = dimension;
@@ -121,6 +145,14 @@ private MCAWorld(Path worldFolder, Key dimension, DataPack dataPack, LevelData l
         );
         this.dimensionFolder = resolveDimensionFolder(worldFolder, dimension);
         this.regionFolder = dimensionFolder.resolve("region");
+
+        this.chunkCache = Caffeine.newBuilder()
+                .executor(BlueMap.THREAD_POOL)
+                .maximumWeight(chunkCacheSize)
+                .weigher((Vector2i pos, Chunk chunk) -> chunk.estimateSize())
+                .expireAfter(new ChunkExpiry())
+                .recordStats()
+                .build(this::loadChunk);
     }
 
     @Override
@@ -152,6 +184,17 @@ private Chunk getChunk(Vector2i pos) {
         return chunkCache.get(pos);
     }
 
+    @Override
+    public ChunkMeta getChunkMeta(int x, int z) {
+        Vector2i pos = VECTOR_2_I_CACHE.get(x, z);
+
+        // use the full chunk if it is loaded anyway
+        Chunk chunk = chunkCache.getIfPresent(pos);
+        if (chunk != null && chunk != Chunk.ERRORED_CHUNK) return chunk;
+
+        return chunkMetaCache.get(pos);
+    }
+
     @Override
     public Region getRegion(int x, int z) {
         return getRegion(VECTOR_2_I_CACHE.get(x, z));
@@ -163,23 +206,51 @@ private Region getRegion(Vector2i pos) {
 
     @Override
     public Collection<Vector2i> listRegions() {
-        if (!Files.exists(regionFolder)) return Collections.emptyList();
+        return listRegionFiles().keySet();
+    }
+
+    @Override
+    public Map<Vector2i, RegionFileInfo> listRegionFiles() {
+        if (!Files.exists(regionFolder)) return Collections.emptyMap();
         try (Stream<Path> stream = Files.list(regionFolder)) {
-            return stream
-                    .map(file -> {
-                        try {
-                            if (Files.size(file) <= 0) return null;
-                            return RegionType.regionForFileName(file.getFileName().toString());
-                        } catch (IOException ex) {
-                            Logger.global.logError("Failed to read region-file: " + file, ex);
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull)
-                    .toList();
+            Map<Vector2i, RegionFileInfo> regions = new HashMap<>();
+            stream.forEach(file -> {
+                Vector2i region = RegionType.regionForFileName(file.getFileName().toString());
+                if (region == null) return;
+
+                RegionFileInfo info = readRegionFileInfo(file);
+                if (info.size() <= 0) return;
+
+                regions.put(region, info);
+            });
+            return regions;
         } catch (IOException ex) {
             Logger.global.logError("Failed to list regions for world: '" + getId() + "'", ex);
-            return List.of();
+            return Map.of();
+        }
+    }
+
+    @Override
+    public RegionFileInfo getRegionFileInfo(int x, int z) {
+        for (RegionType regionType : RegionType.REGISTRY.values()) {
+            Path regionFile = regionFolder.resolve(regionType.getRegionFileName(x, z));
+            if (!Files.exists(regionFile)) continue;
+
+            RegionFileInfo info = readRegionFileInfo(regionFile);
+            if (info.size() > 0) return info;
+        }
+        return RegionFileInfo.UNKNOWN;
+    }
+
+    private RegionFileInfo readRegionFileInfo(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new RegionFileInfo(attributes.size(), attributes.lastModifiedTime().toMillis());
+        } catch (NoSuchFileException ex) {
+            return RegionFileInfo.UNKNOWN;
+        } catch (IOException ex) {
+            Logger.global.logError("Failed to read region-file: " + file, ex);
+            return RegionFileInfo.UNKNOWN;
         }
     }
 
@@ -190,35 +261,86 @@ public WatchService<Vector2i> createRegionWatchService() throws IOException {
 
     @Override
     public void preloadRegionChunks(int x, int z, Predicate<Vector2i> chunkFilter) {
-        try {
-            getRegion(x, z).iterateAllChunks(new ChunkConsumer() {
-                @Override
-                public boolean filter(int chunkX, int chunkZ, int lastModified) {
-                    Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
-                    return chunkFilter.test(chunkPos);
-                }
-
-                @Override
-                public void accept(int chunkX, int chunkZ, Chunk chunk) {
-                    Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
-                    chunkCache.put(chunkPos, chunk);
-                }
-            });
-        } catch (IOException ex) {
+        // chunks are decoded in parallel and put into the cache as soon as they are ready,
+        // so rendering can already start while the region is still loading
+        getRegion(x, z).iterateAllChunks(new ChunkConsumer() {
+            // only preload as much as the cache can hold, preloaded chunks should never evict chunks that are in use
+            @Override
+            public boolean filter(int chunkX, int chunkZ, int lastModified) {
+                Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
+                return
+                        chunkFilter.test(chunkPos) &&
+                        getChunkCacheWeight() + ESTIMATED_CHUNK_SIZE <= getChunkCacheSize() &&
+                        chunkCache.getIfPresent(chunkPos) == null;
+            }
+
+            @Override
+            public void accept(int chunkX, int chunkZ, Chunk chunk) {
+                if (getChunkCacheWeight() + chunk.estimateSize() > getChunkCacheSize()) return;
+                Vector2i chunkPos = VECTOR_2_I_CACHE.get(chunkX, chunkZ);
+                chunkCache.asMap().putIfAbsent(chunkPos, chunk);
+            }
+        }, PRELOAD_EXECUTOR).exceptionally(ex -> {
             Logger.global.logDebug("Unexpected exception trying to load preload region (x:" + x + ", z:" + z + "): " + ex);
-        }
+            return null;
+        });
     }
 
     @Override
     public void invalidateChunkCache() {
         regionCache.invalidateAll();
         chunkCache.invalidateAll();
+        chunkMetaCache.invalidateAll();
     }
 
     @Override
     public void invalidateChunkCache(int x, int z) {
         regionCache.invalidate(VECTOR_2_I_CACHE.get(x >> 5, z >> 5));
         chunkCache.invalidate(VECTOR_2_I_CACHE.get(x, z));
+        chunkMetaCache.invalidate(VECTOR_2_I_CACHE.get(x, z));
+    }
+
+    /**
+     * Returns the hit/miss/eviction statistics of the chunk-cache of this world.
+     */
+    public CacheStats getChunkCacheStats() {
+        return chunkCache.stats();
+    }
+
+    /**
+     * Returns the estimated memory (in bytes) currently used by the chunk-cache of this world.
+     */
+    public long getChunkCacheWeight() {
+        return chunkCache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    /**
+     * Returns the maximum memory (in bytes) the chunk-cache of this world is allowed to use.
+     */
+    public long getChunkCacheSize() {
+        return chunkCache.policy().eviction()
+                .map(Policy.Eviction::getMaximum)
+                .orElse(0L);
+    }
+
+    /**
+     * Enables an on-disk cache of decoded chunks in the given folder, to restore unchanged chunks faster than
+     * loading them from the region-files. The cache-files will use at most (roughly) maxSize bytes.
+     * @see ChunkDiskCache
+     */
+    public void enableChunkDiskCache(Path cacheFolder, long maxSize) {
+        this.chunkDiskCache = new ChunkDiskCache(this, cacheFolder, maxSize);
+    }
+
+    private static void closeRegion(@Nullable Region region) {
+        if (region == null) return;
+        try {
+            region.close();
+        } catch (IOException ex) {
+            Logger.global.logDebug("Failed to close region: " + ex);
+        }
     }
 
     private Region loadRegion(Vector2i regionPos) {
@@ -234,36 +356,47 @@ private Chunk loadChunk(Vector2i chunkPos) {
     }
 
     private Chunk loadChunk(int x, int z) {
-        final int tries = 3;
-        final int tryInterval = 1000;
-
-        Exception loadException = null;
-        for (int i = 0; i < tries; i++) {
-            try {
-                return getRegion(x >> 5, z >> 5)
-                        .loadChunk(x, z);
-            } catch (IOException | RuntimeException e) {
-                if (loadException != null && loadException != e)
-                    e.addSuppressed(loadException);
-
-                loadException = e;
-
-                if (i + 1 < tries) {
-                    try {
-                        Thread.sleep(tryInterval);
-                    } catch (InterruptedException ex) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            }
+        try {
+            return getRegion(x >> 5, z >> 5)
+                    .loadChunk(x, z);
+        } catch (IOException | RuntimeException e) {
+            // no retries here, the error is only cached briefly and the render-task will retry the affected tiles later
+            Logger.global.logDebug("Unexpected exception trying to load chunk (x:" + x + ", z:" + z + "): " + e);
+            return Chunk.ERRORED_CHUNK;
         }
+    }
 
-        Logger.global.logDebug("Unexpected exception trying to load chunk (x:" + x + ", z:" + z + "): " + loadException);
-        return Chunk.ERRORED_CHUNK;
+    private ChunkMeta loadChunkMeta(Vector2i chunkPos) {
+        int x = chunkPos.getX(), z = chunkPos.getY();
+        try {
+            return getRegion(x >> 5, z >> 5)
+                    .loadChunkMeta(x, z);
+        } catch (IOException | RuntimeException e) {
+            // fall back to loading the full chunk, which has proper error-handling
+            Logger.global.logDebug("Failed to load chunk-meta (x:" + x + ", z:" + z + "): " + e);
+            return getChunk(chunkPos);
+        }
     }
 
     public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack) throws IOException, InterruptedException {
+        return load(worldFolder, dimension, dataPack, estimateChunkCacheSize(1));
+    }
+
+    /**
+     * Estimates the chunk-cache size (in bytes) that is needed to render the given amount of regions at the same time:
+     * All chunks of each region, plus the margin of neighboring chunks that is needed to render the edges of a region.<br>
+     * The result is limited to a quarter of the maximum heap-size, but is at least {@link #MIN_CHUNK_CACHE_SIZE}.
+     */
+    public static long estimateChunkCacheSize(int concurrentRegions) {
+        long workingSet = Math.max(concurrentRegions, 1) * 34L * 34L * ESTIMATED_CHUNK_SIZE;
+        long heapLimit = Runtime.getRuntime().maxMemory() / 4;
+        return Math.max(Math.min(workingSet, heapLimit), MIN_CHUNK_CACHE_SIZE);
+    }
+
+    /**
+     * Loads the world, using a chunk-cache that retains at most (roughly) chunkCacheSize bytes of decoded chunks.
+     */
+    public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack, long chunkCacheSize) throws IOException, InterruptedException {
 
         // load level.dat
         Path levelFile = worldFolder.resolve("level.dat");
@@ -274,7 +407,7 @@ public static MCAWorld load(Path worldFolder, Key dimension, DataPack dataPack)
         }
 
         // create world
-        return new MCAWorld(worldFolder, dimension, dataPack, levelData);
+        return new MCAWorld(worldFolder, dimension, dataPack, levelData, chunkCacheSize);
     }
 
     public static Path resolveDimensionFolder(Path worldFolder, Key dimension) {
@@ -284,10 +417,57 @@ public static Path resolveDimensionFolder(Path worldFolder, Key dimension) {
         return worldFolder.resolve("dimensions").resolve(dimension.getNamespace()).resolve(dimension.getValue());
     }
 
+    private static Executor createPreloadExecutor() {
+        int threadCount = Math.max(Runtime.getRuntime().availableProcessors() / 2, 1);
+        AtomicInteger threadId = new AtomicInteger(0);
+        ThreadPoolExecutor threadPool = new ThreadPoolExecutor(
+                threadCount, threadCount,
+                1, TimeUnit.MINUTES,
+                new ArrayBlockingQueue<>(1024), // one region worth of chunks
+                runnable -> {
+                    Thread thread = new Thread(runnable, "BlueMap-ChunkPreload-" + threadId.getAndIncrement());
+                    // use current classloader, this fixes ClassLoading issues with forge
+                    thread.setContextClassLoader(BlueMap.class.getClassLoader());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        threadPool.allowCoreThreadTimeOut(true);
+        return threadPool;
+    }
+
     private static BlueNBT createBlueNBTForDataPack(DataPack dataPack) {
         BlueNBT blueNBT = MCAUtil.addCommonNbtAdapters(new BlueNBT());
         blueNBT.register(TypeToken.get(DimensionType.class), new DimensionTypeDeserializer(blueNBT, dataPack));
         return blueNBT;
     }
 
+    /**
+     * Chunks expire one minute after they have last been accessed.<br>
+     * {@link Chunk#ERRORED_CHUNK errored chunks} are only kept for a few seconds after the failed load (regardless of
+     * any access), so a broken chunk is not read and decoded again on every lookup, but is still retried soon.
+     */
+    private static class ChunkExpiry implements Expiry<Vector2i, Chunk> {
+
+        private static final long EXPIRE_AFTER_ACCESS = TimeUnit.MINUTES.toNanos(1);
+        private static final long ERRORED_EXPIRE_AFTER_WRITE = TimeUnit.SECONDS.toNanos(10);
+
+        @Override
+        public long expireAfterCreate(Vector2i pos, Chunk chunk, long currentTime) {
+            return chunk == Chunk.ERRORED_CHUNK ? ERRORED_EXPIRE_AFTER_WRITE : EXPIRE_AFTER_ACCESS;
+        }
+
+        @Override
+        public long expireAfterUpdate(Vector2i pos, Chunk chunk, long currentTime, long currentDuration) {
+            return expireAfterCreate(pos, chunk, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Vector2i pos, Chunk chunk, long currentTime, long currentDuration) {
+            return chunk == Chunk.ERRORED_CHUNK ? currentDuration : EXPIRE_AFTER_ACCESS;
+        }
+
+    }
+
 }
@@ -132,6 +132,13 @@ private int storageIndex(int i) {
         return (int) ((long) i * this.indexScale + this.indexOffset >> this.indexShift);
     }
 
+    /**
+     * A rough estimate of the memory (in bytes) this object and its data retain.
+     */
+    public int estimateSize() {
+        return 64 + 16 + data.length * Long.BYTES;
+    }
+
     public int getCapacity() {
         return data.length * elementsPerLong;
     }
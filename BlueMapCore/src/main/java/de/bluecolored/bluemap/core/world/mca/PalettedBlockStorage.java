@@ -0,0 +1,137 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca;
+
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.world.BlockState;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Block-states of a chunk-section, unpacked once from the palette and packed long-array of the chunk-data.<br>
+ * Uniform sections are collapsed into a single {@link BlockState}, all others are stored as an array of
+ * {@link BlockState#getId() global block-state ids}, so a lookup is a single array-read.
+ */
+public class PalettedBlockStorage {
+
+    private static final PalettedBlockStorage EMPTY = new PalettedBlockStorage(BlockState.AIR, null, null);
+
+    private final @Nullable BlockState uniform;
+    private final char @Nullable [] ids;
+    private final BlockState @Nullable [] states;
+
+    private PalettedBlockStorage(@Nullable BlockState uniform, char @Nullable [] ids, BlockState @Nullable [] states) {
+        this.uniform = uniform;
+        this.ids = ids;
+        this.states = states;
+    }
+
+    public BlockState get(int index) {
+        if (uniform != null) return uniform;
+        if (ids != null) return BlockState.byId(ids[index]);
+
+        assert states != null;
+        return states[index];
+    }
+
+    /**
+     * A rough estimate of the memory (in bytes) this storage retains, not counting the (shared) block-states.<br>
+     * Unpacked ids take 2 bytes per block, that is 8 KiB for a mixed section, about 4 times the packed data of
+     * a section with a small palette.
+     */
+    public int estimateSize() {
+        int size = 32;
+        if (ids != null) size += 16 + ids.length * Character.BYTES;
+        if (states != null) size += 16 + states.length * 4;
+        return size;
+    }
+
+    /**
+     * Unpacks the given palette-data into a new {@link PalettedBlockStorage}.
+     * Elements are expected to be packed into the longs without spanning across multiple longs (1.16+ format).
+     */
+    public static PalettedBlockStorage of(BlockState[] palette, long[] data, int size) {
+        if (palette.length == 0) return EMPTY;
+        if (palette.length == 1) return new PalettedBlockStorage(palette[0].intern(), null, null);
+
+        // the palette-index after the last entry is used for invalid indices and resolves to MISSING
+        int paletteSize = Math.min(palette.length, Character.MAX_VALUE);
+        BlockState[] globalPalette = new BlockState[paletteSize + 1];
+        boolean fitsChar = true;
+        for (int i = 0; i < paletteSize; i++) {
+            BlockState state = palette[i].intern();
+            globalPalette[i] = state;
+            if (state.getId() > Character.MAX_VALUE) fitsChar = false;
+        }
+        globalPalette[paletteSize] = BlockState.MISSING;
+
+        // decode the palette-indices, then replace them in place with the global ids
+        char[] ids = new char[size];
+        decodePaletteIndices(data, size, paletteSize, ids);
+
+        if (fitsChar) {
+            char[] globalIds = new char[globalPalette.length];
+            for (int i = 0; i < globalPalette.length; i++)
+                globalIds[i] = (char) globalPalette[i].getId();
+
+            for (int i = 0; i < size; i++)
+                ids[i] = globalIds[ids[i]];
+
+            return new PalettedBlockStorage(null, ids, null);
+        }
+
+        // the ids don't fit into a char, fall back to storing the block-states
+        BlockState[] states = new BlockState[size];
+        for (int i = 0; i < size; i++)
+            states[i] = globalPalette[ids[i]];
+
+        return new PalettedBlockStorage(null, null, states);
+    }
+
+    private static void decodePaletteIndices(long[] data, int size, int paletteSize, char[] target) {
+        int bitsPerElement = Math.max(data.length * Long.SIZE / size, 1);
+        int elementsPerLong = Long.SIZE / bitsPerElement;
+        long mask = (1L << bitsPerElement) - 1L;
+
+        int index = 0;
+        for (int l = 0; l < data.length && index < size; l++) {
+            long value = data[l];
+            for (int e = 0; e < elementsPerLong && index < size; e++) {
+                long paletteIndex = value & mask;
+                value >>>= bitsPerElement;
+
+                if (paletteIndex >= paletteSize) {
+                    Logger.global.noFloodWarning("palette-warning", "Got block-palette id " + paletteIndex + " but palette has size of " + paletteSize + ".");
+                    target[index++] = (char) paletteSize;
+                    continue;
+                }
+
+                target[index++] = (char) paletteIndex;
+            }
+        }
+
+        // missing data defaults to the first palette entry (the array is already zero-filled)
+    }
+
+}
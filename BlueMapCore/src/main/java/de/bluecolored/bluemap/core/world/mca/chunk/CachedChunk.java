@@ -0,0 +1,488 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.util.Key;
+import de.bluecolored.bluemap.core.world.BlockState;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
+import de.bluecolored.bluemap.core.world.biome.Biome;
+import de.bluecolored.bluemap.core.world.mca.MCAUtil;
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
+import de.bluecolored.bluemap.core.world.mca.PalettedBlockStorage;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A {@link Chunk} restored from the {@link ChunkDiskCache}.<br>
+ * The chunk is stored as it is seen through the {@link Chunk}-interface: per section a block-palette with packed
+ * palette-indices, sky- and block-light nibbles and a biome-palette with packed indices for each 4x4x4 cell,
+ * followed by the heightmaps of the chunk. Reading it back requires no NBT-parsing at all.
+ */
+public class CachedChunk implements Chunk {
+
+    private static final int BLOCKS_PER_SECTION = 16 * 16 * 16;
+    private static final int BIOMES_PER_SECTION = 4 * 4 * 4;
+    private static final int LIGHT_BYTES_PER_SECTION = BLOCKS_PER_SECTION / 2;
+    private static final int VALUES_PER_HEIGHTMAP = 16 * 16;
+
+    private static final int FLAG_GENERATED = 0x1;
+    private static final int FLAG_LIGHT_DATA = 0x2;
+    private static final int FLAG_WORLD_SURFACE = 0x4;
+    private static final int FLAG_OCEAN_FLOOR = 0x8;
+
+    private static final int LIGHT_UNIFORM = 0;
+    private static final int LIGHT_NIBBLES = 1;
+
+    private final boolean generated;
+    private final boolean hasLightData;
+    private final long inhabitedTime;
+
+    private final int sectionMin, sectionMax;
+    private final int skyLightBelow, blockLightBelow;
+    private final int skyLightAbove, blockLightAbove;
+
+    private final int @Nullable [] worldSurfaceHeights;
+    private final int @Nullable [] oceanFloorHeights;
+
+    /**
+     * The highest (index 0-255) and lowest (index 256-511) non-air y of each column
+     */
+    private final int[] columnBounds;
+
+    private final Section[] sections;
+
+    private CachedChunk(MCAWorld world, DataInput in) throws IOException {
+        int flags = in.readUnsignedByte();
+        this.generated = (flags & FLAG_GENERATED) != 0;
+        this.hasLightData = (flags & FLAG_LIGHT_DATA) != 0;
+        this.inhabitedTime = in.readLong();
+
+        this.sectionMin = in.readInt();
+        this.sectionMax = in.readInt();
+
+        this.skyLightBelow = in.readUnsignedByte();
+        this.blockLightBelow = in.readUnsignedByte();
+        this.skyLightAbove = in.readUnsignedByte();
+        this.blockLightAbove = in.readUnsignedByte();
+
+        this.worldSurfaceHeights = (flags & FLAG_WORLD_SURFACE) != 0 ? readInts(in, VALUES_PER_HEIGHTMAP) : null;
+        this.oceanFloorHeights = (flags & FLAG_OCEAN_FLOOR) != 0 ? readInts(in, VALUES_PER_HEIGHTMAP) : null;
+        this.columnBounds = readInts(in, 2 * VALUES_PER_HEIGHTMAP);
+
+        this.sections = new Section[sectionMax - sectionMin + 1];
+        for (int i = 0; i < sections.length; i++)
+            sections[i] = new Section(world, in);
+    }
+
+    @Override
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    @Override
+    public boolean hasLightData() {
+        return hasLightData;
+    }
+
+    @Override
+    public long getInhabitedTime() {
+        return inhabitedTime;
+    }
+
+    @Override
+    public BlockState getBlockState(int x, int y, int z) {
+        Section section = getSection(y >> 4);
+        if (section == null) return BlockState.AIR;
+        return section.blocks.get((y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF);
+    }
+
+    @Override
+    public LightData getLightData(int x, int y, int z, LightData target) {
+        int sectionY = y >> 4;
+        if (sectionY < sectionMin) return target.set(skyLightBelow, blockLightBelow);
+        if (sectionY > sectionMax) return target.set(skyLightAbove, blockLightAbove);
+
+        Section section = sections[sectionY - sectionMin];
+        int index = (y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF;
+        return target.set(
+                section.skyLight.get(index),
+                section.blockLight.get(index)
+        );
+    }
+
+    @Override
+    public Biome getBiome(int x, int y, int z) {
+        Section section = getSection(y >> 4);
+        if (section == null) return Biome.DEFAULT;
+        return section.getBiome((y & 0b1100) << 2 | z & 0b1100 | (x & 0b1100) >> 2);
+    }
+
+    @Override
+    public int getMinY(int x, int z) {
+        return sectionMin * 16;
+    }
+
+    @Override
+    public int getMaxY(int x, int z) {
+        return sectionMax * 16 + 15;
+    }
+
+    @Override
+    public int getMaxNonAirY(int x, int z) {
+        return columnBounds[(z & 0xF) << 4 | x & 0xF];
+    }
+
+    @Override
+    public int getMinNonAirY(int x, int z) {
+        return columnBounds[VALUES_PER_HEIGHTMAP + ((z & 0xF) << 4 | x & 0xF)];
+    }
+
+    @Override
+    public SectionOccupancy getSectionOccupancy(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return SectionOccupancy.EMPTY;
+        return section.occupancy;
+    }
+
+    @Override
+    public boolean hasBlockLight(int sectionY) {
+        if (sectionY < sectionMin) return blockLightBelow > 0;
+        if (sectionY > sectionMax) return blockLightAbove > 0;
+        return sections[sectionY - sectionMin].hasBlockLight;
+    }
+
+    @Override
+    public boolean hasWorldSurfaceHeights() {
+        return worldSurfaceHeights != null;
+    }
+
+    @Override
+    public int getWorldSurfaceY(int x, int z) {
+        if (worldSurfaceHeights == null) return 0;
+        return worldSurfaceHeights[(z & 0xF) << 4 | x & 0xF];
+    }
+
+    @Override
+    public boolean hasOceanFloorHeights() {
+        return oceanFloorHeights != null;
+    }
+
+    @Override
+    public int getOceanFloorY(int x, int z) {
+        if (oceanFloorHeights == null) return 0;
+        return oceanFloorHeights[(z & 0xF) << 4 | x & 0xF];
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = MCAChunk.OBJECT_SIZE + MCAChunk.sizeOf(columnBounds) + MCAChunk.sizeOf(sections);
+        if (worldSurfaceHeights != null) size += MCAChunk.sizeOf(worldSurfaceHeights);
+        if (oceanFloorHeights != null) size += MCAChunk.sizeOf(oceanFloorHeights);
+        for (Section section : sections)
+            size += section.estimateSize();
+        return size;
+    }
+
+    private @Nullable Section getSection(int sectionY) {
+        sectionY -= sectionMin;
+        if (sectionY < 0 || sectionY >= sections.length) return null;
+        return sections[sectionY];
+    }
+
+    /**
+     * Reads a chunk that has been written with {@link #write(Chunk, DataOutput)}.
+     */
+    public static CachedChunk read(MCAWorld world, DataInput in) throws IOException {
+        return new CachedChunk(world, in);
+    }
+
+    /**
+     * Writes any chunk into the cache-format, by reading all its data through the {@link Chunk}-interface.
+     * Block-entities are not written.
+     */
+    public static void write(Chunk chunk, DataOutput out) throws IOException {
+        int sectionMin = chunk.getMinY(0, 0) >> 4;
+        int sectionMax = chunk.getMaxY(0, 0) >> 4;
+
+        int flags = 0;
+        if (chunk.isGenerated()) flags |= FLAG_GENERATED;
+        if (chunk.hasLightData()) flags |= FLAG_LIGHT_DATA;
+        if (chunk.hasWorldSurfaceHeights()) flags |= FLAG_WORLD_SURFACE;
+        if (chunk.hasOceanFloorHeights()) flags |= FLAG_OCEAN_FLOOR;
+
+        out.writeByte(flags);
+        out.writeLong(chunk.getInhabitedTime());
+        out.writeInt(sectionMin);
+        out.writeInt(sectionMax);
+
+        // light outside the stored sections
+        LightData light = new LightData(0, 0);
+        chunk.getLightData(0, sectionMin * 16 - 1, 0, light);
+        out.writeByte(light.getSkyLight());
+        out.writeByte(light.getBlockLight());
+        chunk.getLightData(0, sectionMax * 16 + 16, 0, light);
+        out.writeByte(light.getSkyLight());
+        out.writeByte(light.getBlockLight());
+
+        if (chunk.hasWorldSurfaceHeights()) {
+            for (int i = 0; i < VALUES_PER_HEIGHTMAP; i++)
+                out.writeInt(chunk.getWorldSurfaceY(i & 0xF, i >> 4));
+        }
+        if (chunk.hasOceanFloorHeights()) {
+            for (int i = 0; i < VALUES_PER_HEIGHTMAP; i++)
+                out.writeInt(chunk.getOceanFloorY(i & 0xF, i >> 4));
+        }
+        for (int i = 0; i < VALUES_PER_HEIGHTMAP; i++)
+            out.writeInt(chunk.getMaxNonAirY(i & 0xF, i >> 4));
+        for (int i = 0; i < VALUES_PER_HEIGHTMAP; i++)
+            out.writeInt(chunk.getMinNonAirY(i & 0xF, i >> 4));
+
+        for (int sectionY = sectionMin; sectionY <= sectionMax; sectionY++)
+            Section.write(chunk, sectionY, light, out);
+    }
+
+    private static class Section {
+
+        private final SectionOccupancy occupancy;
+        private final PalettedBlockStorage blocks;
+        private final Biome[] biomePalette;
+        private final @Nullable PackedIntArrayAccess biomes;
+        private final Nibbles skyLight, blockLight;
+        private final boolean hasBlockLight;
+
+        private Section(MCAWorld world, DataInput in) throws IOException {
+            BlockState[] blockPalette = new BlockState[in.readUnsignedShort()];
+            for (int i = 0; i < blockPalette.length; i++)
+                blockPalette[i] = readBlockState(in);
+            long[] blockData = blockPalette.length > 1 ? readLongs(in) : MCAChunk.EMPTY_LONG_ARRAY;
+
+            this.occupancy = SectionOccupancy.of(blockPalette);
+            this.blocks = PalettedBlockStorage.of(blockPalette, blockData, BLOCKS_PER_SECTION);
+
+            this.biomePalette = new Biome[in.readUnsignedByte()];
+            for (int i = 0; i < biomePalette.length; i++) {
+                Biome biome = world.getDataPack().getBiome(Key.parse(in.readUTF()));
+                this.biomePalette[i] = biome != null ? biome : Biome.DEFAULT;
+            }
+            this.biomes = biomePalette.length > 1 ?
+                    new PackedIntArrayAccess(MCAUtil.ceilLog2(biomePalette.length), readLongs(in)) :
+                    null;
+
+            this.skyLight = Nibbles.read(in);
+            this.blockLight = Nibbles.read(in);
+            this.hasBlockLight = !blockLight.isZero();
+        }
+
+        private Biome getBiome(int index) {
+            if (biomes == null) return biomePalette.length > 0 ? biomePalette[0] : Biome.DEFAULT;
+            int id = biomes.get(index);
+            return id < biomePalette.length ? biomePalette[id] : Biome.DEFAULT;
+        }
+
+        private int estimateSize() {
+            int size = MCAChunk.OBJECT_SIZE + blocks.estimateSize() + MCAChunk.sizeOf(biomePalette);
+            if (biomes != null) size += biomes.estimateSize();
+            size += skyLight.estimateSize() + blockLight.estimateSize();
+            return size;
+        }
+
+        private static void write(Chunk chunk, int sectionY, LightData light, DataOutput out) throws IOException {
+            int minY = sectionY * 16;
+
+            // blocks
+            Map<BlockState, Integer> blockPalette = new LinkedHashMap<>();
+            int[] blockIds = new int[BLOCKS_PER_SECTION];
+            for (int i = 0; i < BLOCKS_PER_SECTION; i++) {
+                BlockState state = chunk.getBlockState(i & 0xF, minY + (i >> 8), i >> 4 & 0xF);
+                blockIds[i] = blockPalette.computeIfAbsent(state, s -> blockPalette.size());
+            }
+
+            out.writeShort(blockPalette.size());
+            for (BlockState state : blockPalette.keySet())
+                writeBlockState(state, out);
+            if (blockPalette.size() > 1)
+                writeLongs(pack(blockIds, blockBitsPerElement(blockPalette.size())), out);
+
+            // biomes
+            Map<Key, Integer> biomePalette = new HashMap<>();
+            Key[] biomeKeys = new Key[BIOMES_PER_SECTION];
+            int[] biomeIds = new int[BIOMES_PER_SECTION];
+            for (int i = 0; i < BIOMES_PER_SECTION; i++) {
+                Key key = chunk.getBiome((i & 0b11) << 2, minY + ((i >> 4) << 2), i & 0b1100).getKey();
+                Integer id = biomePalette.get(key);
+                if (id == null) {
+                    id = biomePalette.size();
+                    biomePalette.put(key, id);
+                    biomeKeys[id] = key;
+                }
+                biomeIds[i] = id;
+            }
+
+            out.writeByte(biomePalette.size());
+            for (int i = 0; i < biomePalette.size(); i++)
+                out.writeUTF(biomeKeys[i].getFormatted());
+            if (biomePalette.size() > 1)
+                writeLongs(pack(biomeIds, MCAUtil.ceilLog2(biomePalette.size())), out);
+
+            // light
+            byte[] skyLight = new byte[LIGHT_BYTES_PER_SECTION];
+            byte[] blockLight = new byte[LIGHT_BYTES_PER_SECTION];
+            for (int i = 0; i < BLOCKS_PER_SECTION; i++) {
+                chunk.getLightData(i & 0xF, minY + (i >> 8), i >> 4 & 0xF, light);
+                int shift = (i & 1) << 2;
+                skyLight[i >> 1] |= (byte) (light.getSkyLight() << shift);
+                blockLight[i >> 1] |= (byte) (light.getBlockLight() << shift);
+            }
+            Nibbles.write(skyLight, out);
+            Nibbles.write(blockLight, out);
+        }
+
+        /**
+         * {@link PalettedBlockStorage#of(BlockState[], long[], int)} derives the bits per element from the length
+         * of the data, which is only unambiguous for up to 10 bits, so larger palettes use 16 bits.
+         */
+        private static int blockBitsPerElement(int paletteSize) {
+            int bits = Math.max(MCAUtil.ceilLog2(paletteSize), 1);
+            return bits <= 10 ? bits : 16;
+        }
+
+    }
+
+    /**
+     * Light-values of a section, either one value for the whole section or one nibble per block.
+     */
+    private static class Nibbles {
+
+        private final int uniform;
+        private final byte @Nullable [] data;
+
+        private Nibbles(int uniform, byte @Nullable [] data) {
+            this.uniform = uniform;
+            this.data = data;
+        }
+
+        public int get(int index) {
+            if (data == null) return uniform;
+            return MCAUtil.getByteHalf(data[index >> 1], (index & 1) != 0);
+        }
+
+        public boolean isZero() {
+            if (data == null) return uniform == 0;
+            for (byte b : data)
+                if (b != 0) return false;
+            return true;
+        }
+
+        public int estimateSize() {
+            return data != null ? MCAChunk.OBJECT_SIZE + MCAChunk.sizeOf(data) : MCAChunk.OBJECT_SIZE;
+        }
+
+        public static Nibbles read(DataInput in) throws IOException {
+            int type = in.readUnsignedByte();
+            if (type == LIGHT_UNIFORM) return new Nibbles(in.readUnsignedByte(), null);
+
+            byte[] data = new byte[LIGHT_BYTES_PER_SECTION];
+            in.readFully(data);
+            return new Nibbles(0, data);
+        }
+
+        public static void write(byte[] data, DataOutput out) throws IOException {
+            byte first = data[0];
+            boolean uniform = (first & 0xF) == (first >> 4 & 0xF);
+            for (int i = 1; i < data.length && uniform; i++)
+                uniform = data[i] == first;
+
+            if (uniform) {
+                out.writeByte(LIGHT_UNIFORM);
+                out.writeByte(first & 0xF);
+            } else {
+                out.writeByte(LIGHT_NIBBLES);
+                out.write(data);
+            }
+        }
+
+    }
+
+    private static BlockState readBlockState(DataInput in) throws IOException {
+        String value = in.readUTF();
+        int propertyCount = in.readUnsignedByte();
+        if (propertyCount == 0) return new BlockState(value);
+
+        Map<String, String> properties = new LinkedHashMap<>();
+        for (int i = 0; i < propertyCount; i++)
+            properties.put(in.readUTF(), in.readUTF());
+        return new BlockState(value, properties);
+    }
+
+    private static void writeBlockState(BlockState state, DataOutput out) throws IOException {
+        out.writeUTF(state.getFormatted());
+        out.writeByte(state.getProperties().size());
+        for (Map.Entry<String, String> property : state.getProperties().entrySet()) {
+            out.writeUTF(property.getKey());
+            out.writeUTF(property.getValue());
+        }
+    }
+
+    /**
+     * Packs the values into longs without spanning across multiple longs (1.16+ format).
+     */
+    private static long[] pack(int[] values, int bitsPerElement) {
+        int elementsPerLong = Long.SIZE / bitsPerElement;
+        long[] data = new long[(values.length + elementsPerLong - 1) / elementsPerLong];
+        for (int i = 0; i < values.length; i++)
+            data[i / elementsPerLong] |= (long) values[i] << (i % elementsPerLong) * bitsPerElement;
+        return data;
+    }
+
+    private static long[] readLongs(DataInput in) throws IOException {
+        long[] data = new long[in.readUnsignedShort()];
+        for (int i = 0; i < data.length; i++)
+            data[i] = in.readLong();
+        return data;
+    }
+
+    private static void writeLongs(long[] data, DataOutput out) throws IOException {
+        out.writeShort(data.length);
+        for (long value : data)
+            out.writeLong(value);
+    }
+
+    private static int[] readInts(DataInput in, int count) throws IOException {
+        int[] data = new int[count];
+        for (int i = 0; i < count; i++)
+            data[i] = in.readInt();
+        return data;
+    }
+
+}
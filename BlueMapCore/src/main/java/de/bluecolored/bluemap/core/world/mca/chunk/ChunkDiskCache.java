@@ -0,0 +1,379 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import com.flowpowered.math.vector.Vector2i;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bluecolored.bluemap.core.BlueMap;
+import de.bluecolored.bluemap.core.logger.Logger;
+import de.bluecolored.bluemap.core.util.DeletingPathVisitor;
+import de.bluecolored.bluemap.core.util.FileHelper;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import lombok.Getter;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of decoded chunks, with one cache-file per region.<br>
+ * Each chunk is stored together with the timestamp it had in the header of the region-file, so a chunk can be
+ * restored from the cache as long as its timestamp did not change, without any NBT-parsing or zlib-decompression.
+ * Only chunks of minecraft 1.16+ without block-entities are cached, all other chunks are always loaded from the
+ * region-file.
+ * <p>
+ * A cache-file consists of a header with an entry (timestamp, offset, compressed length, length) for each of the
+ * 1024 chunks of the region, followed by the LZ4-compressed {@link CachedChunk}-data of each cached chunk.<br>
+ * The headers of recently used cache-files are kept in memory, so chunks that are not cached don't need any file-access.
+ * <p>
+ * The cache-files of a world are limited to a maximum total size, if that is exceeded the least recently written
+ * cache-files are deleted.
+ */
+public class ChunkDiskCache {
+
+    private static final int MAGIC = 0x424D4343; // "BMCC"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CHUNKS_PER_REGION = 1024;
+    private static final int ENTRY_SIZE = 4 * Integer.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES + CHUNKS_PER_REGION * ENTRY_SIZE;
+
+    private static final String FILE_SUFFIX = ".bmc";
+    private static final int[] NO_ENTRIES = new int[0];
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final MCAWorld world;
+    @Getter private final Path folder;
+    @Getter private final long maxSize;
+
+    private final LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4_FACTORY.fastDecompressor();
+
+    // the (timestamp, offset, compressed length, length)-entries of the cache-files, by region
+    private final Cache<Vector2i, int[]> entryCache = Caffeine.newBuilder()
+            .executor(BlueMap.THREAD_POOL)
+            .maximumSize(64) // 16 KiB each
+            .build();
+
+    private long size = -1; // the total size of all cache-files, calculated lazily
+
+    /**
+     * @param world the world whose chunks are cached
+     * @param folder the folder containing the cache-files of this world
+     * @param maxSize the maximum total size (in bytes) of all cache-files
+     */
+    public ChunkDiskCache(MCAWorld world, Path folder, long maxSize) {
+        this.world = world;
+        this.folder = folder;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Loads a chunk from the cache, or returns null if the chunk is not cached with the given timestamp.
+     * @param regionPos the position of the region the chunk is in
+     * @param xzChunk the index of the chunk inside the region (<code>z &lt;&lt; 5 | x</code>)
+     * @param timestamp the current timestamp of the chunk in the region-file header
+     */
+    public @Nullable Chunk load(Vector2i regionPos, int xzChunk, int timestamp) {
+        if (timestamp == 0) return null;
+
+        // check the in-memory entry first, so there is no file-access at all for chunks that are not cached
+        int[] entries = entryCache.get(regionPos, this::readEntries);
+        if (entries.length == 0 || entries[xzChunk * 4] != timestamp) return null;
+
+        // entry and data are read from the same open file, so a concurrent rewrite can't mix up two versions
+        try (FileChannel channel = FileChannel.open(getCacheFile(regionPos), StandardOpenOption.READ)) {
+            ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+            readFully(channel, entry, 2 * Integer.BYTES + (long) xzChunk * ENTRY_SIZE);
+            if (entry.getInt(0) != timestamp) {
+                entryCache.invalidate(regionPos); // outdated
+                return null;
+            }
+
+            int offset = entry.getInt(4);
+            int compressedLength = entry.getInt(8);
+            int length = entry.getInt(12);
+            if (compressedLength <= 0 || length <= 0) return null;
+
+            ByteBuffer compressed = ByteBuffer.allocate(compressedLength);
+            readFully(channel, compressed, offset);
+
+            byte[] data = new byte[length];
+            decompressor.decompress(compressed.array(), 0, data, 0, length);
+            return CachedChunk.read(world, new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (NoSuchFileException ex) {
+            entryCache.invalidate(regionPos);
+            return null;
+        } catch (IOException | RuntimeException ex) {
+            Logger.global.logDebug("Failed to load chunk " + xzChunk + " of region " + regionPos + " from the chunk disk-cache: " + ex);
+            return null;
+        }
+    }
+
+    private int[] readEntries(Vector2i regionPos) {
+        try (FileChannel channel = FileChannel.open(getCacheFile(regionPos), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) return NO_ENTRIES;
+
+            int[] entries = new int[CHUNKS_PER_REGION * 4];
+            header.position(2 * Integer.BYTES).asIntBuffer().get(entries);
+            return entries;
+        } catch (NoSuchFileException ex) {
+            return NO_ENTRIES;
+        } catch (IOException | RuntimeException ex) {
+            Logger.global.logDebug("Failed to read the chunk disk-cache header of region " + regionPos + ": " + ex);
+            return NO_ENTRIES;
+        }
+    }
+
+    /**
+     * Writes the given chunks into the cache-file of the region.<br>
+     * Chunks that are already cached and whose timestamp did not change are kept, all other entries are dropped.
+     * @param regionPos the position of the region
+     * @param timestamps the current timestamps of all chunks in the region-file header
+     * @param chunks the chunks to cache, mapped by their index inside the region (<code>z &lt;&lt; 5 | x</code>)
+     */
+    public synchronized void store(Vector2i regionPos, int[] timestamps, Map<Integer, Chunk> chunks) {
+        Path file = getCacheFile(regionPos);
+        int[] entryTimestamps = new int[CHUNKS_PER_REGION];
+        int[] entryLengths = new int[CHUNKS_PER_REGION];
+        byte[][] entryData = new byte[CHUNKS_PER_REGION][];
+
+        try {
+            long previousFileSize = fileSize(file);
+            int count = keepValidEntries(file, timestamps, entryTimestamps, entryLengths, entryData);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Map.Entry<Integer, Chunk> entry : chunks.entrySet()) {
+                int xzChunk = entry.getKey();
+                Chunk chunk = entry.getValue();
+                if (timestamps[xzChunk] == 0 || !isCacheable(chunk)) continue;
+
+                bytes.reset();
+                CachedChunk.write(chunk, out);
+                out.flush();
+
+                byte[] data = bytes.toByteArray();
+                if (entryData[xzChunk] == null) count++;
+                entryTimestamps[xzChunk] = timestamps[xzChunk];
+                entryLengths[xzChunk] = data.length;
+                entryData[xzChunk] = compressor.compress(data);
+            }
+
+            if (count == 0) {
+                Files.deleteIfExists(file);
+            } else {
+                write(file, entryTimestamps, entryLengths, entryData);
+            }
+
+            updateSize(fileSize(file) - previousFileSize);
+        } catch (IOException | RuntimeException ex) {
+            Logger.global.logDebug("Failed to write region " + regionPos + " to the chunk disk-cache: " + ex);
+        } finally {
+            entryCache.invalidate(regionPos);
+        }
+    }
+
+    /**
+     * Deletes all cache-files of this world.
+     */
+    public synchronized void clear() {
+        try {
+            if (Files.exists(folder))
+                Files.walkFileTree(folder, DeletingPathVisitor.INSTANCE);
+            size = 0;
+        } catch (IOException ex) {
+            Logger.global.logDebug("Failed to clear the chunk disk-cache " + folder + ": " + ex);
+            size = -1;
+        } finally {
+            entryCache.invalidateAll();
+        }
+    }
+
+    private void updateSize(long delta) throws IOException {
+        if (size < 0) {
+            size = 0;
+            for (CacheFile cacheFile : listCacheFiles(folder)) size += cacheFile.size();
+        } else {
+            size += delta;
+        }
+
+        if (size > maxSize) trim();
+    }
+
+    /**
+     * Deletes the least recently written cache-files until only three quarters of the maximum size are used.
+     */
+    private void trim() throws IOException {
+        List<CacheFile> cacheFiles = listCacheFiles(folder);
+        cacheFiles.sort(Comparator.comparingLong(CacheFile::lastModified));
+
+        long targetSize = maxSize / 4 * 3;
+        for (CacheFile cacheFile : cacheFiles) {
+            if (size <= targetSize) break;
+            Files.deleteIfExists(cacheFile.file());
+            size -= cacheFile.size();
+        }
+
+        entryCache.invalidateAll();
+    }
+
+    private int keepValidEntries(Path file, int[] timestamps, int[] entryTimestamps, int[] entryLengths, byte[][] entryData) throws IOException {
+        int count = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT_VERSION) return 0;
+
+            for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+                int entry = 2 * Integer.BYTES + i * ENTRY_SIZE;
+                int timestamp = header.getInt(entry);
+                int compressedLength = header.getInt(entry + 8);
+                if (timestamp == 0 || timestamp != timestamps[i] || compressedLength <= 0) continue;
+
+                ByteBuffer data = ByteBuffer.allocate(compressedLength);
+                readFully(channel, data, header.getInt(entry + 4));
+
+                entryTimestamps[i] = timestamp;
+                entryLengths[i] = header.getInt(entry + 12);
+                entryData[i] = data.array();
+                count++;
+            }
+        } catch (NoSuchFileException | EOFException ex) {
+            return 0;
+        }
+        return count;
+    }
+
+    private void write(Path file, int[] entryTimestamps, int[] entryLengths, byte[][] entryData) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(FileHelper.createFilepartOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+
+            int offset = HEADER_SIZE;
+            for (int i = 0; i < CHUNKS_PER_REGION; i++) {
+                byte[] data = entryData[i];
+                int compressedLength = data != null ? data.length : 0;
+                out.writeInt(data != null ? entryTimestamps[i] : 0);
+                out.writeInt(offset);
+                out.writeInt(compressedLength);
+                out.writeInt(data != null ? entryLengths[i] : 0);
+                offset += compressedLength;
+            }
+
+            for (byte[] data : entryData) {
+                if (data != null) out.write(data);
+            }
+        }
+    }
+
+    private Path getCacheFile(Vector2i regionPos) {
+        return folder.resolve("r." + regionPos.getX() + "." + regionPos.getY() + FILE_SUFFIX);
+    }
+
+    /**
+     * Deletes the cache-folders (in the given root-folder) of all worlds whose cache has not been written to for the
+     * given time, e.g. because the world has been removed.
+     */
+    public static void deleteStaleCaches(Path root, long maxAgeMillis) throws IOException {
+        if (!Files.isDirectory(root)) return;
+
+        long minLastModified = System.currentTimeMillis() - maxAgeMillis;
+        List<Path> worldFolders;
+        try (Stream<Path> stream = Files.list(root)) {
+            worldFolders = stream.filter(Files::isDirectory).toList();
+        }
+
+        for (Path worldFolder : worldFolders) {
+            List<CacheFile> cacheFiles = listCacheFiles(worldFolder);
+            if (cacheFiles.stream().anyMatch(cacheFile -> cacheFile.lastModified() >= minLastModified)) continue;
+
+            Logger.global.logDebug("Deleting unused chunk disk-cache: " + worldFolder);
+            Files.walkFileTree(worldFolder, DeletingPathVisitor.INSTANCE);
+        }
+    }
+
+    private static List<CacheFile> listCacheFiles(Path folder) throws IOException {
+        List<CacheFile> cacheFiles = new ArrayList<>();
+        if (!Files.isDirectory(folder)) return cacheFiles;
+
+        try (Stream<Path> stream = Files.list(folder)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                if (!file.getFileName().toString().endsWith(FILE_SUFFIX)) continue;
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    cacheFiles.add(new CacheFile(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                } catch (NoSuchFileException ignore) {}
+            }
+        }
+
+        return cacheFiles;
+    }
+
+    private static long fileSize(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException ex) {
+            return 0;
+        }
+    }
+
+    /**
+     * Block-entities can't be stored in the cache-format, and chunks before 1.16 use different biome-resolutions.
+     */
+    public static boolean isCacheable(Chunk chunk) {
+        if (!(chunk instanceof Chunk_1_16 || chunk instanceof Chunk_1_18)) return false;
+        return !((MCAChunk) chunk).hasBlockEntities();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException();
+        }
+    }
+
+    private record CacheFile(Path file, long size, long lastModified) {}
+
+}
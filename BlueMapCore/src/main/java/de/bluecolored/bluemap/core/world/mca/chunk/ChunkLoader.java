@@ -25,20 +25,41 @@
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
+import de.bluecolored.bluemap.core.world.ChunkMeta;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.function.BiFunction;
 
 public class ChunkLoader {
 
+    private static final byte
+            TAG_END = 0,
+            TAG_BYTE = 1,
+            TAG_SHORT = 2,
+            TAG_INT = 3,
+            TAG_LONG = 4,
+            TAG_FLOAT = 5,
+            TAG_DOUBLE = 6,
+            TAG_BYTE_ARRAY = 7,
+            TAG_STRING = 8,
+            TAG_LIST = 9,
+            TAG_COMPOUND = 10,
+            TAG_INT_ARRAY = 11,
+            TAG_LONG_ARRAY = 12;
+
+    private static final byte[] DATA_VERSION_TAG_NAME = "DataVersion".getBytes(StandardCharsets.UTF_8);
+
     private final MCAWorld world;
 
     public ChunkLoader(MCAWorld world) {
@@ -53,30 +74,54 @@ public ChunkLoader(MCAWorld world) {
             new ChunkVersionLoader<>(Chunk_1_13.Data.class, Chunk_1_13::new, 0)
     );
 
-    private ChunkVersionLoader<?> lastUsedLoader = CHUNK_VERSION_LOADERS.get(0);
-
     public MCAChunk load(byte[] data, int offset, int length, Compression compression) throws IOException {
-        InputStream in = new ByteArrayInputStream(data, offset, length);
-        in.mark(-1);
-
-        // try last used version
-        ChunkVersionLoader<?> usedLoader = lastUsedLoader;
-        MCAChunk chunk;
-        try (InputStream decompressedIn = compression.decompress(in)) {
-            chunk = usedLoader.load(world, decompressedIn);
+        return load(ByteBuffer.wrap(data, offset, length), compression);
+    }
+
+    /**
+     * Loads the chunk from the remaining bytes of the given buffer.
+     * The buffer is read directly without copying it, and its position is not modified.
+     */
+    public MCAChunk load(ByteBuffer data, Compression compression) throws IOException {
+        DecompressionContext context = DecompressionContext.get();
+        try {
+            return load(context.decompress(data, compression));
+        } finally {
+            context.release();
         }
+    }
 
-        // check version and reload chunk if the wrong loader has been used and a better one has been found
-        ChunkVersionLoader<?> actualLoader = findBestLoaderForVersion(chunk.getDataVersion());
-        if (actualLoader != null && usedLoader != actualLoader) {
-            in.reset(); // reset read position
-            try (InputStream decompressedIn = compression.decompress(in)) {
-                chunk = actualLoader.load(world, decompressedIn);
-            }
-            lastUsedLoader = actualLoader;
+    /**
+     * Loads only the {@link ChunkMeta} of the chunk from the remaining bytes of the given buffer.
+     * The buffer is read directly without copying it, and its position is not modified.
+     */
+    public ChunkMeta loadMeta(ByteBuffer data, Compression compression) throws IOException {
+        DecompressionContext context = DecompressionContext.get();
+        try {
+            return loadMeta(context.decompress(data, compression));
+        } finally {
+            context.release();
+        }
+    }
+
+    public ChunkMeta loadMeta(byte[] data, int offset, int length, Compression compression) throws IOException {
+        return loadMeta(ByteBuffer.wrap(data, offset, length), compression);
+    }
+
+    private ChunkMeta loadMeta(ByteBuffer data) throws IOException {
+        try {
+            return new MCAChunkMeta(MCAUtil.BLUENBT.read(new ByteBufferInputStream(data), MCAChunkMeta.Data.class));
+        } catch (Exception e) {
+            throw new IOException("Failed to parse chunk-data: " + e, e);
         }
+    }
+
+    private MCAChunk load(ByteBuffer data) throws IOException {
+        // only peek the data-version first, so the chunk is decoded exactly once with the right loader
+        ChunkVersionLoader<?> loader = findBestLoaderForVersion(findDataVersion(data));
+        if (loader == null) loader = CHUNK_VERSION_LOADERS.get(CHUNK_VERSION_LOADERS.size() - 1);
 
-        return chunk;
+        return loader.load(world, new ByteBufferInputStream(data));
     }
 
     private @Nullable ChunkVersionLoader<?> findBestLoaderForVersion(int version) {
@@ -86,6 +131,75 @@ public MCAChunk load(byte[] data, int offset, int length, Compression compressio
         return null;
     }
 
+    /**
+     * Finds the value of the int-tag "DataVersion" in the root-compound of the given (uncompressed) nbt-data,
+     * skipping over all other tags without decoding them.
+     * Returns 0 if there is no such tag, or the data could not be read.
+     */
+    private static int findDataVersion(ByteBuffer data) {
+        ByteBuffer buffer = data.slice();
+        try {
+            if (buffer.get() != TAG_COMPOUND) return 0;
+            skip(buffer, Short.toUnsignedInt(buffer.getShort())); // root-name
+
+            while (true) {
+                byte type = buffer.get();
+                if (type == TAG_END) return 0;
+
+                int nameLength = Short.toUnsignedInt(buffer.getShort());
+                boolean isDataVersion = type == TAG_INT && nameEquals(buffer, nameLength, DATA_VERSION_TAG_NAME);
+                skip(buffer, nameLength);
+
+                if (isDataVersion) return buffer.getInt();
+                skipPayload(buffer, type);
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            return 0;
+        }
+    }
+
+    private static boolean nameEquals(ByteBuffer buffer, int length, byte[] name) {
+        if (length != name.length || length > buffer.remaining()) return false;
+        int position = buffer.position();
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(position + i) != name[i]) return false;
+        }
+        return true;
+    }
+
+    private static void skipPayload(ByteBuffer buffer, byte type) {
+        switch (type) {
+            case TAG_BYTE -> skip(buffer, 1);
+            case TAG_SHORT -> skip(buffer, 2);
+            case TAG_INT, TAG_FLOAT -> skip(buffer, 4);
+            case TAG_LONG, TAG_DOUBLE -> skip(buffer, 8);
+            case TAG_BYTE_ARRAY -> skip(buffer, buffer.getInt());
+            case TAG_STRING -> skip(buffer, Short.toUnsignedInt(buffer.getShort()));
+            case TAG_INT_ARRAY -> skip(buffer, buffer.getInt() * 4L);
+            case TAG_LONG_ARRAY -> skip(buffer, buffer.getInt() * 8L);
+            case TAG_LIST -> {
+                byte elementType = buffer.get();
+                int length = buffer.getInt();
+                for (int i = 0; i < length; i++)
+                    skipPayload(buffer, elementType);
+            }
+            case TAG_COMPOUND -> {
+                byte elementType;
+                while ((elementType = buffer.get()) != TAG_END) {
+                    skip(buffer, Short.toUnsignedInt(buffer.getShort()));
+                    skipPayload(buffer, elementType);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown tag-type: " + type);
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, long count) {
+        if (count < 0 || count > buffer.remaining()) throw new BufferUnderflowException();
+        buffer.position(buffer.position() + (int) count);
+    }
+
+
     @RequiredArgsConstructor
     @Getter
     private static class ChunkVersionLoader<D extends MCAChunk.Data> {
@@ -29,6 +29,7 @@
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
 import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
 import de.bluecolored.bluemap.core.world.biome.Biome;
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
@@ -186,6 +187,21 @@ public int getMaxY(int x, int z) {
         return sectionMax * 16 + 15;
     }
 
+    @Override
+    public SectionOccupancy getSectionOccupancy(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return SectionOccupancy.EMPTY;
+        return section.getOccupancy();
+    }
+
+    @Override
+    public boolean hasBlockLight(int sectionY) {
+        if (!hasLightData) return false;
+        Section section = getSection(sectionY);
+        if (section == null) return false;
+        return section.hasBlockLight();
+    }
+
     @Override
     public boolean hasWorldSurfaceHeights() {
         return hasWorldSurfaceHeights;
@@ -219,6 +235,23 @@ public int getOceanFloorY(int x, int z) {
         return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
     }
 
+    @Override
+    public boolean hasBlockEntities() {
+        return !blockEntities.isEmpty();
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = super.estimateSize();
+        size += sizeOf(worldSurfaceHeights) + sizeOf(oceanFloorHeights);
+        size += sizeOf(biomes);
+        size += sizeOf(sections);
+        for (Section section : sections)
+            if (section != null) size += section.estimateSize();
+        size += sizeOf(blockEntities);
+        return size;
+    }
+
     private @Nullable Section getSection(int y) {
         y -= sectionMin;
         if (y < 0 || y >= this.sections.length) return null;
@@ -229,8 +262,10 @@ protected static class Section {
 
         private final int sectionY;
         private final BlockState[] blockPalette;
+        private final SectionOccupancy occupancy;
         private final long[] blocks;
         private final byte[] blockLight;
+        private final boolean hasBlockLight;
         private final byte[] skyLight;
 
         private final int bitsPerBlock;
@@ -239,9 +274,11 @@ public Section(SectionData sectionData) {
             this.sectionY = sectionData.y;
 
             this.blockPalette = sectionData.palette;
+            this.occupancy = SectionOccupancy.of(this.blockPalette);
             this.blocks = sectionData.blockStates;
 
             this.blockLight = sectionData.getBlockLight();
+            this.hasBlockLight = containsNonZero(this.blockLight);
             this.skyLight = sectionData.getSkyLight();
 
             this.bitsPerBlock = this.blocks.length >> 6; // available longs * 64 (bits per long) / 4096 (blocks per section) (floored result)
@@ -277,10 +314,23 @@ public LightData getLightData(int x, int y, int z, LightData target) {
             );
         }
 
+        public int estimateSize() {
+            return OBJECT_SIZE + sizeOf(blockPalette) + sizeOf(blocks) +
+                    sizeOf(blockLight) + sizeOf(skyLight);
+        }
+
         public int getSectionY() {
             return sectionY;
         }
 
+        public SectionOccupancy getOccupancy() {
+            return occupancy;
+        }
+
+        public boolean hasBlockLight() {
+            return hasBlockLight;
+        }
+
     }
 
     @Getter
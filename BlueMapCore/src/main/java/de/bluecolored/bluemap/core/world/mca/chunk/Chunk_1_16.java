@@ -24,16 +24,17 @@
  */
 package de.bluecolored.bluemap.core.world.mca.chunk;
 
-import de.bluecolored.bluemap.core.logger.Logger;
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
 import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
 import de.bluecolored.bluemap.core.world.biome.Biome;
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
+import de.bluecolored.bluemap.core.world.mca.PalettedBlockStorage;
 import de.bluecolored.bluemap.core.world.mca.data.LenientBlockEntityArrayDeserializer;
 import de.bluecolored.bluenbt.NBTDeserializer;
 import de.bluecolored.bluenbt.NBTName;
@@ -189,6 +190,21 @@ public int getMaxY(int x, int z) {
         return sectionMax * 16 + 15;
     }
 
+    @Override
+    public SectionOccupancy getSectionOccupancy(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return SectionOccupancy.EMPTY;
+        return section.getOccupancy();
+    }
+
+    @Override
+    public boolean hasBlockLight(int sectionY) {
+        if (!hasLightData) return false;
+        Section section = getSection(sectionY);
+        if (section == null) return false;
+        return section.hasBlockLight();
+    }
+
     @Override
     public boolean hasWorldSurfaceHeights() {
         return hasWorldSurfaceHeights;
@@ -214,6 +230,23 @@ public int getOceanFloorY(int x, int z) {
         return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
     }
 
+    @Override
+    public boolean hasBlockEntities() {
+        return !blockEntities.isEmpty();
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = super.estimateSize();
+        size += worldSurfaceHeights.estimateSize() + oceanFloorHeights.estimateSize();
+        size += sizeOf(biomes);
+        size += sizeOf(sections);
+        for (Section section : sections)
+            if (section != null) size += section.estimateSize();
+        size += sizeOf(blockEntities);
+        return size;
+    }
+
     private @Nullable Section getSection(int y) {
         y -= sectionMin;
         if (y < 0 || y >= this.sections.length) return null;
@@ -224,31 +257,26 @@ protected static class Section {
 
         private final int sectionY;
         private final BlockState[] blockPalette;
-        private final PackedIntArrayAccess blocks;
+        private final SectionOccupancy occupancy;
+        private final PalettedBlockStorage blocks;
         private final byte[] blockLight;
+        private final boolean hasBlockLight;
         private final byte[] skyLight;
 
         public Section(SectionData sectionData) {
             this.sectionY = sectionData.y;
 
             this.blockPalette = sectionData.palette;
-            this.blocks = new PackedIntArrayAccess(sectionData.blockStates, BLOCKS_PER_SECTION);
+            this.occupancy = SectionOccupancy.of(this.blockPalette);
+            this.blocks = PalettedBlockStorage.of(this.blockPalette, sectionData.blockStates, BLOCKS_PER_SECTION);
 
             this.blockLight = sectionData.getBlockLight();
+            this.hasBlockLight = containsNonZero(this.blockLight);
             this.skyLight = sectionData.getSkyLight();
         }
 
         public BlockState getBlockState(int x, int y, int z) {
-            if (blockPalette.length == 1) return blockPalette[0];
-            if (blockPalette.length == 0) return BlockState.AIR;
-
-            int id = blocks.get((y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF);
-            if (id >= blockPalette.length) {
-                Logger.global.noFloodWarning("palette-warning", "Got block-palette id " + id + " but palette has size of " + blockPalette.length + "! (Future occasions of this error will not be logged)");
-                return BlockState.MISSING;
-            }
-
-            return blockPalette[id];
+            return blocks.get((y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF);
         }
 
         public LightData getLightData(int x, int y, int z, LightData target) {
@@ -264,10 +292,23 @@ public LightData getLightData(int x, int y, int z, LightData target) {
             );
         }
 
+        public int estimateSize() {
+            return OBJECT_SIZE + sizeOf(blockPalette) + blocks.estimateSize() +
+                    sizeOf(blockLight) + sizeOf(skyLight);
+        }
+
         public int getSectionY() {
             return sectionY;
         }
 
+        public SectionOccupancy getOccupancy() {
+            return occupancy;
+        }
+
+        public boolean hasBlockLight() {
+            return hasBlockLight;
+        }
+
     }
 
     @Getter
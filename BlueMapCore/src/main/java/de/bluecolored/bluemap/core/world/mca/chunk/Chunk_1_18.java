@@ -29,11 +29,13 @@
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.DimensionType;
 import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
 import de.bluecolored.bluemap.core.world.biome.Biome;
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAUtil;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import de.bluecolored.bluemap.core.world.mca.PackedIntArrayAccess;
+import de.bluecolored.bluemap.core.world.mca.PalettedBlockStorage;
 import de.bluecolored.bluemap.core.world.mca.data.LenientBlockEntityArrayDeserializer;
 import de.bluecolored.bluenbt.NBTDeserializer;
 import de.bluecolored.bluenbt.NBTName;
@@ -180,6 +182,21 @@ public int getMaxY(int x, int z) {
         return sectionMax * 16 + 15;
     }
 
+    @Override
+    public SectionOccupancy getSectionOccupancy(int sectionY) {
+        Section section = getSection(sectionY);
+        if (section == null) return SectionOccupancy.EMPTY;
+        return section.getOccupancy();
+    }
+
+    @Override
+    public boolean hasBlockLight(int sectionY) {
+        if (!hasLightData) return false;
+        Section section = getSection(sectionY);
+        if (section == null) return false;
+        return section.hasBlockLight();
+    }
+
     @Override
     public boolean hasWorldSurfaceHeights() {
         return hasWorldSurfaceHeights;
@@ -205,6 +222,22 @@ public int getOceanFloorY(int x, int z) {
         return blockEntities.get((long) y << 8 | (x & 0xF) << 4 | z & 0xF);
     }
 
+    @Override
+    public boolean hasBlockEntities() {
+        return !blockEntities.isEmpty();
+    }
+
+    @Override
+    public int estimateSize() {
+        int size = super.estimateSize();
+        size += worldSurfaceHeights.estimateSize() + oceanFloorHeights.estimateSize();
+        size += sizeOf(sections);
+        for (Section section : sections)
+            if (section != null) size += section.estimateSize();
+        size += sizeOf(blockEntities);
+        return size;
+    }
+
     private @Nullable Section getSection(int y) {
         y -= sectionMin;
         if (y < 0 || y >= this.sections.length) return null;
@@ -215,16 +248,19 @@ protected static class Section {
 
         private final int sectionY;
         private final BlockState[] blockPalette;
+        private final SectionOccupancy occupancy;
         private final Biome[] biomePalette;
-        private final PackedIntArrayAccess blocks;
+        private final PalettedBlockStorage blocks;
         private final PackedIntArrayAccess biomes;
         private final byte[] blockLight;
+        private final boolean hasBlockLight;
         private final byte[] skyLight;
 
         public Section(MCAWorld world, SectionData sectionData) {
             this.sectionY = sectionData.y;
 
             this.blockPalette = sectionData.blockStates.palette;
+            this.occupancy = SectionOccupancy.of(this.blockPalette);
 
             this.biomePalette = new Biome[sectionData.biomes.palette.length];
             for (int i = 0; i < this.biomePalette.length; i++) {
@@ -233,24 +269,16 @@ public Section(MCAWorld world, SectionData sectionData) {
                 this.biomePalette[i] = biome;
             }
 
-            this.blocks = new PackedIntArrayAccess(sectionData.blockStates.data, BLOCKS_PER_SECTION);
+            this.blocks = PalettedBlockStorage.of(this.blockPalette, sectionData.blockStates.data, BLOCKS_PER_SECTION);
             this.biomes = new PackedIntArrayAccess(Math.max(MCAUtil.ceilLog2(this.biomePalette.length), 1), sectionData.biomes.data);
 
             this.blockLight = sectionData.blockLight;
+            this.hasBlockLight = containsNonZero(this.blockLight);
             this.skyLight = sectionData.skyLight;
         }
 
         public BlockState getBlockState(int x, int y, int z) {
-            if (blockPalette.length == 1) return blockPalette[0];
-            if (blockPalette.length == 0) return BlockState.AIR;
-
-            int id = blocks.get((y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF);
-            if (id >= blockPalette.length) {
-                Logger.global.noFloodWarning("palette-warning", "Got block-palette id " + id + " but palette has size of " + blockPalette.length + ".");
-                return BlockState.MISSING;
-            }
-
-            return blockPalette[id];
+            return blocks.get((y & 0xF) << 8 | (z & 0xF) << 4 | x & 0xF);
         }
 
         public Biome getBiome(int x, int y, int z) {
@@ -279,10 +307,24 @@ public LightData getLightData(int x, int y, int z, LightData target) {
             );
         }
 
+        public int estimateSize() {
+            return OBJECT_SIZE + sizeOf(blockPalette) + blocks.estimateSize() +
+                    sizeOf(biomePalette) + biomes.estimateSize() +
+                    sizeOf(blockLight) + sizeOf(skyLight);
+        }
+
         public int getSectionY() {
             return sectionY;
         }
 
+        public SectionOccupancy getOccupancy() {
+            return occupancy;
+        }
+
+        public boolean hasBlockLight() {
+            return hasBlockLight;
+        }
+
     }
 
     @Getter
@@ -0,0 +1,120 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.util.stream.ByteBufferInputStream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread state that is reused to decompress chunk-data: An {@link Inflater} and a growable buffer for the
+ * decompressed data. This avoids creating a new native inflater and new stream-buffers for every loaded chunk.
+ */
+class DecompressionContext {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    // larger buffers are dropped after use, so a single huge chunk does not waste memory on every thread
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<DecompressionContext> CONTEXT = ThreadLocal.withInitial(DecompressionContext::new);
+
+    private final Inflater inflater = new Inflater();
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+
+    private DecompressionContext() {}
+
+    /**
+     * Decompresses the remaining bytes of the given buffer using the given compression.
+     * The position of the given buffer is not modified.
+     * @return a buffer with the decompressed data, only valid until the next use of this context on the same thread
+     */
+    public ByteBuffer decompress(ByteBuffer data, Compression compression) throws IOException {
+        if (compression == Compression.NONE) return data.slice();
+        if (compression == Compression.DEFLATE) return inflate(data);
+
+        try (InputStream in = compression.decompress(new ByteBufferInputStream(data))) {
+            int length = 0, read;
+            while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+                if (length == buffer.length) grow();
+            }
+            return ByteBuffer.wrap(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Inflates the remaining zlib-compressed bytes of the given buffer into the buffer of this context.
+     * The position of the given buffer is not modified.
+     * @return a buffer with the decompressed data, only valid until the next use of this context on the same thread
+     */
+    public ByteBuffer inflate(ByteBuffer data) throws IOException {
+        int length = 0;
+        try {
+            inflater.setInput(data.duplicate());
+            while (!inflater.finished()) {
+                if (length == buffer.length) grow();
+
+                int read = inflater.inflate(buffer, length, buffer.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new EOFException("Unexpected end of compressed chunk-data");
+
+                length += read;
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Invalid compressed chunk-data: " + ex, ex);
+        } finally {
+            // also releases the reference to the input-buffer
+            inflater.reset();
+        }
+
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    /**
+     * Should be called once the data returned by this context is not used anymore.
+     */
+    public void release() {
+        if (buffer.length > MAX_RETAINED_BUFFER_SIZE)
+            buffer = new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    private void grow() {
+        byte[] newBuffer = new byte[buffer.length * 2];
+        System.arraycopy(buffer, 0, newBuffer, 0, buffer.length);
+        buffer = newBuffer;
+    }
+
+    public static DecompressionContext get() {
+        return CONTEXT.get();
+    }
+
+}
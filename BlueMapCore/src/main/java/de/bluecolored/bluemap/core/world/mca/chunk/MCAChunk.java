@@ -27,10 +27,16 @@
 import de.bluecolored.bluemap.core.util.Key;
 import de.bluecolored.bluemap.core.world.BlockState;
 import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.SectionOccupancy;
 import de.bluecolored.bluemap.core.world.block.entity.BlockEntity;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.ToString;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Map;
 
 @Getter
 @ToString
@@ -47,14 +53,131 @@ public abstract class MCAChunk implements Chunk {
     protected static final BlockState[] EMPTY_BLOCKSTATE_ARRAY = new BlockState[0];
     protected static final BlockEntity[] EMPTY_BLOCK_ENTITIES_ARRAY = new BlockEntity[0];
 
+    // rough memory-estimates (in bytes) for estimateSize()
+    protected static final int OBJECT_SIZE = 48;
+    protected static final int ARRAY_HEADER_SIZE = 16;
+    protected static final int BLOCK_ENTITY_SIZE = 256;
+
     private final MCAWorld world;
     private final int dataVersion;
 
+    /**
+     * The highest (index 0-255) and lowest (index 256-511) non-air y of each column, calculated lazily
+     */
+    @Getter(AccessLevel.NONE) @ToString.Exclude
+    private volatile int @Nullable [] columnBounds;
+
     public MCAChunk(MCAWorld world, Data chunkData) {
         this.world = world;
         this.dataVersion = chunkData.getDataVersion();
     }
 
+    @Override
+    public int getMaxNonAirY(int x, int z) {
+        return getColumnBounds()[(z & 0xF) << 4 | x & 0xF];
+    }
+
+    @Override
+    public int getMinNonAirY(int x, int z) {
+        return getColumnBounds()[256 + ((z & 0xF) << 4 | x & 0xF)];
+    }
+
+    /**
+     * Whether this chunk contains any {@link BlockEntity block-entities}.
+     */
+    public abstract boolean hasBlockEntities();
+
+    @Override
+    public int estimateSize() {
+        // the chunk-object itself and the (lazily calculated) column-bounds
+        return 2 * OBJECT_SIZE + ARRAY_HEADER_SIZE + 512 * Integer.BYTES;
+    }
+
+    protected static int sizeOf(byte[] array) {
+        return ARRAY_HEADER_SIZE + array.length;
+    }
+
+    protected static int sizeOf(int[] array) {
+        return ARRAY_HEADER_SIZE + array.length * Integer.BYTES;
+    }
+
+    protected static int sizeOf(long[] array) {
+        return ARRAY_HEADER_SIZE + array.length * Long.BYTES;
+    }
+
+    /**
+     * Estimates the size of an array of references, not including the referenced objects.
+     */
+    protected static int sizeOf(Object[] array) {
+        return ARRAY_HEADER_SIZE + array.length * 4;
+    }
+
+    protected static int sizeOf(Map<?, BlockEntity> blockEntities) {
+        return OBJECT_SIZE + blockEntities.size() * (OBJECT_SIZE + BLOCK_ENTITY_SIZE);
+    }
+
+    /**
+     * Whether any value of the given (light-)data is not zero.
+     */
+    protected static boolean containsNonZero(byte[] data) {
+        for (byte b : data)
+            if (b != 0) return true;
+        return false;
+    }
+
+    private int[] getColumnBounds() {
+        int[] columnBounds = this.columnBounds;
+        if (columnBounds == null) {
+            // calculating this twice in parallel does no harm, the result is always the same
+            columnBounds = calculateColumnBounds();
+            this.columnBounds = columnBounds;
+        }
+        return columnBounds;
+    }
+
+    private int[] calculateColumnBounds() {
+        int[] bounds = new int[512];
+        Arrays.fill(bounds, 0, 256, Integer.MIN_VALUE);
+        Arrays.fill(bounds, 256, 512, Integer.MAX_VALUE);
+
+        int minSection = getMinY(0, 0) >> 4;
+        int maxSection = getMaxY(0, 0) >> 4;
+
+        // highest non-air block, searching top-down
+        int remaining = 256;
+        for (int sectionY = maxSection; sectionY >= minSection && remaining > 0; sectionY--) {
+            SectionOccupancy occupancy = getSectionOccupancy(sectionY);
+            if (occupancy == SectionOccupancy.EMPTY) continue;
+
+            for (int y = sectionY * 16 + 15; y >= sectionY * 16 && remaining > 0; y--) {
+                for (int i = 0; i < 256; i++) {
+                    if (bounds[i] != Integer.MIN_VALUE) continue;
+                    if (occupancy == SectionOccupancy.MIXED && getBlockState(i & 0xF, y, i >> 4).isAir()) continue;
+                    bounds[i] = y;
+                    remaining--;
+                }
+            }
+        }
+
+        // lowest non-air block, searching bottom-up
+        remaining = 256;
+        for (int sectionY = minSection; sectionY <= maxSection && remaining > 0; sectionY++) {
+            SectionOccupancy occupancy = getSectionOccupancy(sectionY);
+            if (occupancy == SectionOccupancy.EMPTY) continue;
+
+            for (int y = sectionY * 16; y <= sectionY * 16 + 15 && remaining > 0; y++) {
+                for (int i = 0; i < 256; i++) {
+                    if (bounds[256 + i] != Integer.MAX_VALUE) continue;
+                    if (occupancy == SectionOccupancy.MIXED && getBlockState(i & 0xF, y, i >> 4).isAir()) continue;
+                    bounds[256 + i] = y;
+                    remaining--;
+                }
+            }
+        }
+
+        return bounds;
+    }
+
     @SuppressWarnings("FieldMayBeFinal")
     @Getter
     public static class Data {
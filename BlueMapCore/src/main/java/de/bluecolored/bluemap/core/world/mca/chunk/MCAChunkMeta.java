@@ -0,0 +1,101 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.util.Key;
+import de.bluecolored.bluemap.core.world.ChunkMeta;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link ChunkMeta} of a chunk, decoded from only the few top-level tags it needs.
+ * All other tags (e.g. the sections) are skipped without being decoded.
+ */
+@ToString
+public class MCAChunkMeta implements ChunkMeta {
+
+    private static final Key STATUS_EMPTY = new Key("minecraft", "empty");
+    private static final Key STATUS_FULL = new Key("minecraft", "full");
+    private static final Key STATUS_FULLCHUNK = new Key("minecraft", "fullchunk");
+    private static final Key STATUS_POSTPROCESSED = new Key("minecraft", "postprocessed");
+
+    // chunks before this version have additional statuses that mean the chunk has light-data (see Chunk_1_13)
+    private static final int DATA_VERSION_1_16 = 2500;
+
+    @Getter private final int dataVersion;
+    private final boolean generated;
+    private final boolean hasLightData;
+    private final long inhabitedTime;
+
+    public MCAChunkMeta(Data data) {
+        this.dataVersion = data.getDataVersion();
+
+        // before 1.18 the data is stored in the "Level" tag
+        Key status = data.level != null ? data.level.status : data.status;
+        this.inhabitedTime = data.level != null ? data.level.inhabitedTime : data.inhabitedTime;
+
+        this.generated = !STATUS_EMPTY.equals(status);
+        if (dataVersion < DATA_VERSION_1_16) {
+            this.hasLightData =
+                    STATUS_FULL.equals(status) ||
+                    STATUS_FULLCHUNK.equals(status) ||
+                    STATUS_POSTPROCESSED.equals(status);
+        } else {
+            this.hasLightData = STATUS_FULL.equals(status);
+        }
+    }
+
+    @Override
+    public boolean isGenerated() {
+        return generated;
+    }
+
+    @Override
+    public boolean hasLightData() {
+        return hasLightData;
+    }
+
+    @Override
+    public long getInhabitedTime() {
+        return inhabitedTime;
+    }
+
+    @Getter
+    @SuppressWarnings("FieldMayBeFinal")
+    public static class Data extends MCAChunk.Data {
+        private Key status = STATUS_EMPTY;
+        private long inhabitedTime = 0;
+        private @Nullable Level level = null;
+    }
+
+    @Getter
+    @SuppressWarnings("FieldMayBeFinal")
+    public static class Level {
+        private Key status = STATUS_EMPTY;
+        private long inhabitedTime = 0;
+    }
+
+}
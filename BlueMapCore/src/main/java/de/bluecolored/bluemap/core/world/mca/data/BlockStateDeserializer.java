@@ -58,7 +58,7 @@ public BlockState read(NBTReader reader) throws IOException {
         reader.endCompound();
 
         if (id == null) throw new IOException("Invalid BlockState, Name is missing!");
-        return properties == null ? new BlockState(id) : new BlockState(id, properties);
+        return (properties == null ? new BlockState(id) : new BlockState(id, properties)).intern();
     }
 
 }
\ No newline at end of file
@@ -25,17 +25,26 @@
 package de.bluecolored.bluemap.core.world.mca.region;
 
 import com.flowpowered.math.vector.Vector2i;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.bluecolored.bluemap.core.BlueMap;
 import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
+import de.bluecolored.bluemap.core.world.ChunkMeta;
 import de.bluecolored.bluemap.core.world.Region;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
 import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunk;
 import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /*
@@ -68,20 +77,25 @@ public class LinearRegion implements Region {
 
     private static final long MAGIC = 0xc3ff13183cca9d9aL;
 
+    // larger region-timestamps (after the year 2286 in seconds) are in milliseconds
+    private static final long MAX_EPOCH_SECONDS = 9_999_999_999L;
+
+    /**
+     * Fully decompressed region-data, shared by all worlds.
+     * The cache is bounded by the (approximate) amount of bytes held by all cached regions.
+     */
+    private static final long DEFAULT_DECOMPRESSED_CACHE_SIZE = 256L * 1024 * 1024; // 256 MiB
+    private static final Cache<Path, DecompressedData> DECOMPRESSED_CACHE = Caffeine.newBuilder()
+            .executor(BlueMap.THREAD_POOL)
+            .maximumWeight(DEFAULT_DECOMPRESSED_CACHE_SIZE)
+            .weigher((Path file, DecompressedData data) -> data.getWeight())
+            .expireAfterAccess(1, TimeUnit.MINUTES)
+            .build();
+
     private final MCAWorld world;
     private final Path regionFile;
     private final Vector2i regionPos;
 
-    private boolean initialized = false;
-
-    private byte version;
-    private long newestTimestamp;
-    private byte compressionLevel;
-    private short chunkCount;
-    private int dataLength;
-    private long dataHash;
-    private byte[] compressedData;
-
     public LinearRegion(MCAWorld world, Path regionFile) throws IllegalArgumentException {
         this.world = world;
         this.regionFile = regionFile;
@@ -99,125 +113,218 @@ public LinearRegion(MCAWorld world, Vector2i regionPos) throws IllegalArgumentEx
         this.regionFile = world.getRegionFolder().resolve(getRegionFileName(regionPos.getX(), regionPos.getY()));
     }
 
-    private synchronized void init() throws IOException {
-        if (initialized) return;
+    @Override
+    public Chunk loadChunk(int chunkX, int chunkZ) throws IOException {
+        DecompressedData data = getDecompressedData();
+        if (data == null) return Chunk.EMPTY_CHUNK;
 
-        if (Files.notExists(regionFile)) return;
+        int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        int offset = data.getChunkOffset(xzChunk);
+        int length = data.getChunkLength(xzChunk);
+        if (length <= 0) return Chunk.EMPTY_CHUNK;
 
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return;
+        return world.getChunkLoader().load(data.getData(), offset, length, Compression.NONE);
+    }
 
-        try (
-                InputStream in = Files.newInputStream(regionFile, StandardOpenOption.READ);
-                BufferedInputStream bIn = new BufferedInputStream(in);
-                DataInputStream dIn = new DataInputStream(bIn)
-        ) {
-            if (dIn.readLong() != MAGIC)
-                throw new IOException("Linear region-file format: invalid header magic");
+    @Override
+    public ChunkMeta loadChunkMeta(int chunkX, int chunkZ) throws IOException {
+        DecompressedData data = getDecompressedData();
+        if (data == null) return Chunk.EMPTY_CHUNK;
 
-            // read the header
-            version = dIn.readByte();
-            newestTimestamp = dIn.readLong();
-            compressionLevel = dIn.readByte();
-            chunkCount = dIn.readShort();
-            dataLength = dIn.readInt();
-            dataHash = dIn.readLong();
+        int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        int offset = data.getChunkOffset(xzChunk);
+        int length = data.getChunkLength(xzChunk);
+        if (length <= 0) return Chunk.EMPTY_CHUNK;
 
-            if (version < 1 || version > 2)
-                throw new IOException("Linear region-file format: Unsupported version: " + version);
+        return world.getChunkLoader().loadMeta(data.getData(), offset, length, Compression.NONE);
+    }
 
-            if (fileLength != dataLength + 40) // 40 = header + footer
-                throw new IOException("Linear region-file format: Invalid file length. Expected " + (dataLength + 40) + " but got " + fileLength);
+    /**
+     * Returns the (cached) decompressed data of this region, or null if the region-file does not exist or is empty.
+     */
+    private @Nullable DecompressedData getDecompressedData() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
 
-            compressedData = new byte[dataLength];
-            dIn.readFully(compressedData, 0, dataLength);
+        if (attributes.size() == 0) return null;
 
-            if (dIn.readLong() != MAGIC)
-                throw new IOException("Linear region-file format: invalid footer magic");
+        try {
+            DecompressedData data = DECOMPRESSED_CACHE.get(regionFile, LinearRegion::decompress);
+            if (data.isValid(attributes)) return data;
 
+            // region-file changed since we decompressed it, so throw it away and decompress again
+            DECOMPRESSED_CACHE.asMap().remove(regionFile, data);
+            return DECOMPRESSED_CACHE.get(regionFile, LinearRegion::decompress);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
         }
+    }
+
+    private static DecompressedData decompress(Path regionFile) {
+        try {
+            // read attributes before the file, so a concurrent modification will be detected on the next access
+            BasicFileAttributes attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            long fileLength = attributes.size();
+
+            if (fileLength == 0)
+                return new DecompressedData(lastModified, fileLength, new byte[0], new int[1025], new int[1024]);
+
+            byte version;
+            long newestTimestamp;
+            byte[] compressedData;
+            try (
+                    InputStream in = Files.newInputStream(regionFile, StandardOpenOption.READ);
+                    BufferedInputStream bIn = new BufferedInputStream(in);
+                    DataInputStream dIn = new DataInputStream(bIn)
+            ) {
+                if (dIn.readLong() != MAGIC)
+                    throw new IOException("Linear region-file format: invalid header magic");
+
+                // read the header
+                version = dIn.readByte();
+                newestTimestamp = dIn.readLong();
+                dIn.readByte(); // compression level
+                dIn.readShort(); // chunk count
+                int dataLength = dIn.readInt();
+                dIn.readLong(); // data hash
+
+                if (version < 1 || version > 2)
+                    throw new IOException("Linear region-file format: Unsupported version: " + version);
+
+                if (fileLength != dataLength + 40) // 40 = header + footer
+                    throw new IOException("Linear region-file format: Invalid file length. Expected " + (dataLength + 40) + " but got " + fileLength);
+
+                compressedData = new byte[dataLength];
+                dIn.readFully(compressedData, 0, dataLength);
+
+                if (dIn.readLong() != MAGIC)
+                    throw new IOException("Linear region-file format: invalid footer magic");
+            }
+
+            // for v1 region-files the newest timestamp of the region is used for all chunks
+            int regionTimestamp = toEpochSeconds(newestTimestamp);
+
+            try (
+                    InputStream in = Compression.ZSTD.decompress(new ByteArrayInputStream(compressedData));
+                    DataInputStream dIn = new DataInputStream(in)
+            ) {
+                int[] chunkOffsets = new int[1025];
+                int[] chunkTimestamps = new int[1024];
+                for (int i = 0; i < 1024; i++) {
+                    int length = dIn.readInt();
+                    int timestamp = dIn.readInt();
+                    chunkOffsets[i + 1] = chunkOffsets[i] + Math.max(length, 0);
+                    chunkTimestamps[i] = version == 2 ? timestamp : regionTimestamp;
+                }
 
-        initialized = true;
+                byte[] data = new byte[chunkOffsets[1024]];
+                dIn.readFully(data);
+
+                return new DecompressedData(lastModified, fileLength, data, chunkOffsets, chunkTimestamps);
+            }
+        } catch (NoSuchFileException ex) {
+            return new DecompressedData(0, 0, new byte[0], new int[1025], new int[1024]);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
     }
 
     @Override
     public void iterateAllChunks(ChunkConsumer consumer) throws IOException {
-        if (!initialized) init();
+        DecompressedData data = getDecompressedData();
+        if (data == null) return;
 
         int chunkStartX = regionPos.getX() * 32;
         int chunkStartZ = regionPos.getY() * 32;
 
-        byte[] chunkDataBuffer = null;
-
-        try (
-                InputStream in = Compression.ZSTD.decompress(new ByteArrayInputStream(compressedData));
-                DataInputStream dIn = new DataInputStream(in)
-        ) {
-            int[] chunkDataLengths = new int[1024];
-            int[] chunkTimestamps = new int[1024];
-            for (int i = 0 ; i < 1024 ; i++) {
-                chunkDataLengths[i] = dIn.readInt();
-                chunkTimestamps[i] = dIn.readInt();
-            }
-
-            int i = 0;
-            int toBeSkipped = 0;
-            for (int z = 0; z < 32; z++) {
-                for (int x = 0; x < 32; x++) {
-                    int length = chunkDataLengths[i];
-                    if (length > 0) {
-                        int chunkX = chunkStartX + x;
-                        int chunkZ = chunkStartZ + z;
-                        int timestamp = version == 2 ? chunkTimestamps[i] : (int) newestTimestamp; //TODO: check if in seconds or milliseconds
-
-                        if (consumer.filter(chunkX, chunkZ, timestamp)) {
-                            if (toBeSkipped > 0) skipNBytes(dIn, toBeSkipped);
-
-                            if (chunkDataBuffer == null || chunkDataBuffer.length < length)
-                                chunkDataBuffer = new byte[length];
-                            dIn.readFully(chunkDataBuffer, 0, length);
-
-                            MCAChunk chunk = world.getChunkLoader().load(chunkDataBuffer, 0, length, Compression.NONE);
-                            consumer.accept(chunkX, chunkZ, chunk);
-                        } else {
-                            // skip before reading the next chunk, but only if there is a next chunk
-                            // that we actually want to read, to avoid decompressing unnecessary data
-                            toBeSkipped += length;
-                        }
+        int i = 0;
+        for (int z = 0; z < 32; z++) {
+            for (int x = 0; x < 32; x++) {
+                int length = data.getChunkLength(i);
+                if (length > 0) {
+                    int chunkX = chunkStartX + x;
+                    int chunkZ = chunkStartZ + z;
+
+                    if (consumer.filter(chunkX, chunkZ, data.getChunkTimestamp(i))) {
+                        MCAChunk chunk = world.getChunkLoader().load(data.getData(), data.getChunkOffset(i), length, Compression.NONE);
+                        consumer.accept(chunkX, chunkZ, chunk);
                     }
-
-                    i++;
                 }
-            }
 
+                i++;
+            }
         }
     }
 
+    /**
+     * Converts the newest timestamp of a v1 region-file to epoch-seconds, like the chunk-timestamps of the mca-header.<br>
+     * The linear-format tools write it in seconds (the newest timestamp of the converted mca-file), but values that can
+     * only be milliseconds are converted as well.
+     */
+    private static int toEpochSeconds(long timestamp) {
+        if (timestamp > MAX_EPOCH_SECONDS) timestamp /= 1000;
+        return (int) Math.max(Math.min(timestamp, Integer.MAX_VALUE), 0);
+    }
+
+    /**
+     * Sets the maximum amount of bytes that decompressed linear region-files are allowed to use in memory,
+     * shared by all worlds. This should only be set once on startup.
+     */
+    public static void setDecompressedCacheSize(long bytes) {
+        DECOMPRESSED_CACHE.policy().eviction().ifPresent(eviction -> eviction.setMaximum(bytes));
+    }
+
     public static String getRegionFileName(int regionX, int regionZ) {
         return "r." + regionX + "." + regionZ + FILE_SUFFIX;
     }
 
     /**
-     * This method is taken here from a newer version of {@link InputStream},
-     * to ensure Java 11 compatibility.
+     * The decompressed chunk-data of a region with a table of the chunk offsets into that data.
      */
-    private static void skipNBytes(InputStream in, long n) throws IOException {
-        while (n > 0) {
-            long ns = in.skip(n);
-            if (ns > 0 && ns <= n) {
-                // adjust number to skip
-                n -= ns;
-            } else if (ns == 0) { // no bytes skipped
-                // read one byte to check for EOS
-                if (in.read() == -1) {
-                    throw new EOFException();
-                }
-                // one byte read so decrement number to skip
-                n--;
-            } else { // skipped negative or too many bytes
-                throw new IOException("Unable to skip exactly");
-            }
+    @Getter
+    private static class DecompressedData {
+
+        private final long lastModified;
+        private final long fileLength;
+        private final byte[] data;
+        private final int[] chunkOffsets;
+        private final int[] chunkTimestamps;
+
+        private DecompressedData(long lastModified, long fileLength, byte[] data, int[] chunkOffsets, int[] chunkTimestamps) {
+            this.lastModified = lastModified;
+            this.fileLength = fileLength;
+            this.data = data;
+            this.chunkOffsets = chunkOffsets;
+            this.chunkTimestamps = chunkTimestamps;
         }
+
+        public int getChunkOffset(int xzChunk) {
+            return chunkOffsets[xzChunk];
+        }
+
+        public int getChunkLength(int xzChunk) {
+            return chunkOffsets[xzChunk + 1] - chunkOffsets[xzChunk];
+        }
+
+        public int getChunkTimestamp(int xzChunk) {
+            return chunkTimestamps[xzChunk];
+        }
+
+        public int getWeight() {
+            return data.length + (chunkOffsets.length + chunkTimestamps.length) * 4;
+        }
+
+        public boolean isValid(BasicFileAttributes attributes) {
+            return
+                    lastModified == attributes.lastModifiedTime().toMillis() &&
+                    fileLength == attributes.size();
+        }
+
     }
 
-}
\ No newline at end of file
+}
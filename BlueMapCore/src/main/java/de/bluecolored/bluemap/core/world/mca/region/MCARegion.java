@@ -28,18 +28,34 @@
 import de.bluecolored.bluemap.core.storage.compression.Compression;
 import de.bluecolored.bluemap.core.world.Chunk;
 import de.bluecolored.bluemap.core.world.ChunkConsumer;
+import de.bluecolored.bluemap.core.world.ChunkMeta;
 import de.bluecolored.bluemap.core.world.Region;
 import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import de.bluecolored.bluemap.core.world.mca.chunk.ChunkDiskCache;
 import de.bluecolored.bluemap.core.world.mca.chunk.MCAChunk;
+import lombok.AccessLevel;
 import lombok.Getter;
+import net.jpountz.xxhash.XXHashFactory;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
-import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 @Getter
@@ -48,6 +64,13 @@ public class MCARegion implements Region {
     public static final String FILE_SUFFIX = ".mca";
     public static final Pattern FILE_PATTERN = Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.mca$");
 
+    private static final int HEADER_SIZE = 8192;
+    private static final XXHashFactory XX_HASH_FACTORY = XXHashFactory.fastestInstance();
+
+    // the read-buffer grows up to the largest possible chunk (255 sectors, about 1 MiB) and is kept per thread
+    private static final int INITIAL_READ_BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = new ThreadLocal<>();
+
     public static final Compression[] CHUNK_COMPRESSION_MAP = new Compression[255];
     static {
         CHUNK_COMPRESSION_MAP[0] = Compression.NONE;
@@ -61,6 +84,9 @@ public class MCARegion implements Region {
     private final Path regionFile;
     private final Vector2i regionPos;
 
+    @Getter(AccessLevel.NONE)
+    private volatile @Nullable RegionFile file;
+
     public MCARegion(MCAWorld world, Path regionFile) throws IllegalArgumentException {
         this.world = world;
         this.regionFile = regionFile;
@@ -80,123 +106,359 @@ public MCARegion(MCAWorld world, Vector2i regionPos) throws IllegalArgumentExcep
 
     @Override
     public Chunk loadChunk(int chunkX, int chunkZ) throws IOException {
-        if (Files.notExists(regionFile)) return Chunk.EMPTY_CHUNK;
+        RegionFile file = getRegionFile();
+        if (file == null) return Chunk.EMPTY_CHUNK;
 
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return Chunk.EMPTY_CHUNK;
+        int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        if (file.getChunkSize(xzChunk) == 0) return Chunk.EMPTY_CHUNK;
 
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        ChunkDiskCache diskCache = world.getChunkDiskCache();
+        if (diskCache != null) {
+            Chunk cachedChunk = diskCache.load(regionPos, xzChunk, file.getChunkTimestamp(xzChunk));
+            if (cachedChunk != null) return cachedChunk;
+        }
 
-            byte[] header = new byte[4];
-            channel.position(xzChunk * 4);
-            readFully(channel, header, 0, 4);
+        ByteBuffer chunkData = readChunkData(file, xzChunk);
+        if (chunkData == null) return Chunk.EMPTY_CHUNK;
 
-            int offset = (header[0] & 0xFF) << 16;
-            offset |= (header[1] & 0xFF) << 8;
-            offset |= header[2] & 0xFF;
-            offset *= 4096;
-            int size = (header[3] & 0xFF) * 4096;
+        return loadChunk(chunkData);
+    }
 
-            if (size == 0) return Chunk.EMPTY_CHUNK;
+    @Override
+    public ChunkMeta loadChunkMeta(int chunkX, int chunkZ) throws IOException {
+        RegionFile file = getRegionFile();
+        if (file == null) return Chunk.EMPTY_CHUNK;
 
-            byte[] chunkDataBuffer = new byte[size];
+        int xzChunk = (chunkZ & 0b11111) << 5 | (chunkX & 0b11111);
+        if (file.getChunkSize(xzChunk) == 0) return Chunk.EMPTY_CHUNK;
 
-            channel.position(offset);
-            readFully(channel, chunkDataBuffer, 0, size);
+        ByteBuffer chunkData = readChunkData(file, xzChunk);
+        if (chunkData == null) return Chunk.EMPTY_CHUNK;
 
-            return loadChunk(chunkDataBuffer, size);
-        }
+        return world.getChunkLoader().loadMeta(chunkData.position(1), getCompression(chunkData));
     }
 
     @Override
     public void iterateAllChunks(ChunkConsumer consumer) throws IOException {
-        if (Files.notExists(regionFile)) return;
-
-        long fileLength = Files.size(regionFile);
-        if (fileLength == 0) return;
+        RegionFile file = getRegionFile();
+        if (file == null) return;
 
         int chunkStartX = regionPos.getX() * 32;
         int chunkStartZ = regionPos.getY() * 32;
 
-        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
-            byte[] header = new byte[1024 * 8];
-            byte[] chunkDataBuffer = null;
+        // iterate over all chunks
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
+                if (file.getChunkSize(xzChunk) == 0) continue;
 
-            // read the header
-            readFully(channel, header, 0, header.length);
+                int chunkX = chunkStartX + x;
+                int chunkZ = chunkStartZ + z;
 
-            // iterate over all chunks
-            for (int x = 0; x < 32; x++) {
-                for (int z = 0; z < 32; z++) {
-                    int xzChunk = (z & 0b11111) << 5 | (x & 0b11111);
+                // load chunk only if consumers filter returns true
+                if (consumer.filter(chunkX, chunkZ, file.getChunkTimestamp(xzChunk))) {
+                    ByteBuffer chunkData = readChunkData(file, xzChunk);
+                    if (chunkData == null) continue;
 
-                    int size = (header[xzChunk * 4 + 3] & 0xFF) * 4096;
-                    if (size == 0) continue;
+                    MCAChunk chunk = loadChunk(chunkData);
+                    consumer.accept(chunkX, chunkZ, chunk);
+                }
+            }
+        }
+    }
 
-                    int chunkX = chunkStartX + x;
-                    int chunkZ = chunkStartZ + z;
+    /**
+     * Submits the chunks in the order they are stored in the region-file,
+     * and reads and decodes them in parallel using the given executor.
+     */
+    @Override
+    public CompletableFuture<Void> iterateAllChunks(ChunkConsumer consumer, Executor executor) {
+        RegionFile file;
+        try {
+            file = getRegionFile();
+        } catch (IOException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        if (file == null) return CompletableFuture.completedFuture(null);
+
+        int chunkStartX = regionPos.getX() * 32;
+        int chunkStartZ = regionPos.getY() * 32;
 
-                    int i = xzChunk * 4 + 4096;
-                    int timestamp = header[i++] << 24;
-                    timestamp |= (header[i++] & 0xFF) << 16;
-                    timestamp |= (header[i++] & 0xFF) << 8;
-                    timestamp |= header[i] & 0xFF;
+        // sort chunks by their position in the file
+        long[] chunks = new long[1024];
+        int chunkCount = 0;
+        for (int xzChunk = 0; xzChunk < 1024; xzChunk++) {
+            if (file.getChunkSize(xzChunk) == 0) continue;
+            chunks[chunkCount++] = (long) file.getChunkOffset(xzChunk) << 10 | xzChunk;
+        }
+        Arrays.sort(chunks, 0, chunkCount);
+
+        // unchanged chunks are restored from the disk-cache, all newly decoded chunks are written to it afterwards
+        ChunkDiskCache diskCache = world.getChunkDiskCache();
+        Map<Integer, Chunk> decodedChunks = new ConcurrentHashMap<>();
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            int xzChunk = (int) (chunks[i] & 0x3FF);
+            int chunkX = chunkStartX + (xzChunk & 0b11111);
+            int chunkZ = chunkStartZ + (xzChunk >> 5);
+            int timestamp = file.getChunkTimestamp(xzChunk);
+
+            // load chunk only if consumers filter returns true
+            if (!consumer.filter(chunkX, chunkZ, timestamp)) continue;
+
+            futures.add(CompletableFuture.runAsync(() -> {
+                try {
+                    Chunk chunk = diskCache != null ? diskCache.load(regionPos, xzChunk, timestamp) : null;
+                    if (chunk == null) {
+                        ByteBuffer chunkData = readChunkData(file, xzChunk);
+                        if (chunkData == null) return;
+
+                        chunk = loadChunk(chunkData);
+                        if (diskCache != null) decodedChunks.put(xzChunk, chunk);
+                    }
+                    consumer.accept(chunkX, chunkZ, chunk);
+                } catch (IOException ex) {
+                    throw new CompletionException(ex);
+                }
+            }, executor));
+        }
 
-                    // load chunk only if consumers filter returns true
-                    if (consumer.filter(chunkX, chunkZ, timestamp)) {
-                        i = xzChunk * 4;
-                        int offset = (header[i++] & 0xFF) << 16;
-                        offset |= (header[i++] & 0xFF) << 8;
-                        offset |= header[i] & 0xFF;
-                        offset *= 4096;
+        CompletableFuture<Void> future = CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new));
+        if (diskCache != null) {
+            // the returned future includes storing the chunks, so callers also see any failure doing that
+            int[] timestamps = file.getChunkTimestamps();
+            future = future.thenRunAsync(() -> {
+                if (!decodedChunks.isEmpty())
+                    diskCache.store(regionPos, timestamps, decodedChunks);
+            }, executor);
+        }
 
-                        if (chunkDataBuffer == null || chunkDataBuffer.length < size)
-                            chunkDataBuffer = new byte[size];
+        return future;
+    }
 
-                        channel.position(offset);
-                        readFully(channel, chunkDataBuffer, 0, size);
+    /**
+     * Closes the region-file if it is currently open.
+     * It will be opened again if this region is used afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        RegionFile file = this.file;
+        this.file = null;
+        if (file != null) file.close();
+    }
 
-                        MCAChunk chunk = loadChunk(chunkDataBuffer, size);
-                        consumer.accept(chunkX, chunkZ, chunk);
-                    }
-                }
+    /**
+     * Hashes the chunk-offset and timestamp table at the start of the region-file.<br>
+     * Only the header is read, so this is much cheaper than reading the whole file.
+     */
+    @Override
+    public long getHeaderChecksum() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ)) {
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) break;
             }
+        } catch (NoSuchFileException ex) {
+            return 0;
         }
+
+        header.flip();
+        if (!header.hasRemaining()) return 0;
+
+        long checksum = XX_HASH_FACTORY.hash64().hash(header, 0, header.limit(), 0);
+        return checksum == 0 ? 1 : checksum;
     }
 
-    private MCAChunk loadChunk(byte[] data, int size) throws IOException {
-        int compressionTypeId = Byte.toUnsignedInt(data[4]);
-        Compression compression = CHUNK_COMPRESSION_MAP[compressionTypeId];
+    private MCAChunk loadChunk(ByteBuffer chunkData) throws IOException {
+        return world.getChunkLoader().load(chunkData.position(1), getCompression(chunkData));
+    }
+
+    private static Compression getCompression(ByteBuffer chunkData) throws IOException {
+        int compressionTypeId = Byte.toUnsignedInt(chunkData.get(0));
+        Compression compression = compressionTypeId < CHUNK_COMPRESSION_MAP.length ? CHUNK_COMPRESSION_MAP[compressionTypeId] : null;
         if (compression == null)
             throw new IOException("Unknown chunk compression-id: " + compressionTypeId);
+        return compression;
+    }
 
-        return world.getChunkLoader().load(data, 5, size - 5, compression);
+    /**
+     * Reads the data of a chunk from the given region-file into the read-buffer of the current thread.<br>
+     * If the file has been closed concurrently, because it changed or this region got evicted, the read is retried
+     * once with the re-opened file.
+     */
+    private @Nullable ByteBuffer readChunkData(RegionFile file, int xzChunk) throws IOException {
+        try {
+            return file.readChunkData(xzChunk);
+        } catch (ClosedByInterruptException ex) {
+            throw ex;
+        } catch (ClosedChannelException ex) {
+            file = getRegionFile();
+            if (file == null) return null;
+            return file.readChunkData(xzChunk);
+        }
+    }
+
+    /**
+     * Returns the open region-file, (re-)opening it if it is not open yet or if the file changed since.
+     * Returns null if the region-file does not exist or is empty.
+     */
+    private @Nullable RegionFile getRegionFile() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(regionFile, BasicFileAttributes.class);
+        } catch (NoSuchFileException ex) {
+            attributes = null;
+        }
+
+        RegionFile file = this.file;
+        if (file != null && file.isValid(attributes)) return file;
+
+        synchronized (this) {
+            file = this.file;
+            if (file != null && file.isValid(attributes)) return file;
+
+            // close the outdated file
+            this.file = null;
+            if (file != null) file.close();
+
+            if (attributes == null || attributes.size() == 0) return null;
+
+            try {
+                file = RegionFile.open(regionFile, attributes);
+            } catch (NoSuchFileException ex) {
+                return null;
+            }
+
+            this.file = file;
+            return file;
+        }
+    }
+
+    /**
+     * Returns a buffer of the current thread with at least the given capacity, limited to the given size.<br>
+     * Chunk-data is always decoded before the next read on the same thread, so the buffer can be reused for every read.
+     */
+    private static ByteBuffer getReadBuffer(int size) {
+        ByteBuffer buffer = READ_BUFFER.get();
+        if (buffer == null || buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, INITIAL_READ_BUFFER_SIZE));
+            READ_BUFFER.set(buffer);
+        }
+        return buffer.clear().limit(size);
     }
 
     public static String getRegionFileName(int regionX, int regionZ) {
         return "r." + regionX + "." + regionZ + FILE_SUFFIX;
     }
 
-    @SuppressWarnings("SameParameterValue")
-    private static void readFully(ReadableByteChannel src, byte[] dst, int off, int len) throws IOException {
-        readFully(src, ByteBuffer.wrap(dst), off, len);
-    }
+    /**
+     * An open region-file together with its parsed header (chunk-offsets, -sizes and -timestamps).<br>
+     * The file is not mapped, the chunk-data is read on demand using positional reads on the open channel.
+     */
+    private static class RegionFile {
+
+        private final FileChannel channel;
+        private final long lastModified;
+        private final long fileSize;
+        private final int[] chunkOffsets;
+        private final int[] chunkSizes;
+        private final int[] chunkTimestamps;
+
+        private RegionFile(FileChannel channel, long lastModified, long fileSize, ByteBuffer header) {
+            this.channel = channel;
+            this.lastModified = lastModified;
+            this.fileSize = fileSize;
+
+            this.chunkOffsets = new int[1024];
+            this.chunkSizes = new int[1024];
+            this.chunkTimestamps = new int[1024];
+
+            // parse the header, a (partially) missing header is treated as zeros
+            for (int i = 0; i < 1024; i++) {
+                int offset = readHeaderInt(header, i * 4);
+                chunkOffsets[i] = (offset >>> 8) * 4096;
+                chunkSizes[i] = (offset & 0xFF) * 4096;
+                chunkTimestamps[i] = readHeaderInt(header, i * 4 + 4096);
+            }
+        }
+
+        private static int readHeaderInt(ByteBuffer header, int index) {
+            if (index + 4 > header.limit()) return 0;
+            return header.getInt(index);
+        }
 
-    private static void readFully(ReadableByteChannel src, ByteBuffer bb, int off, int len) throws IOException {
-        int limit = off + len;
-        if (limit > bb.capacity()) throw new IllegalArgumentException("buffer too small");
+        public int getChunkOffset(int xzChunk) {
+            return chunkOffsets[xzChunk];
+        }
 
-        bb.limit(limit);
-        bb.position(off);
+        public int getChunkSize(int xzChunk) {
+            return chunkSizes[xzChunk];
+        }
+
+        public int getChunkTimestamp(int xzChunk) {
+            return chunkTimestamps[xzChunk];
+        }
+
+        public int[] getChunkTimestamps() {
+            return chunkTimestamps;
+        }
+
+        /**
+         * Reads the sectors of a chunk into the read-buffer of the current thread and returns a slice containing the
+         * compression-type byte followed by the compressed chunk-data, or null if there is no (valid) data for this chunk.
+         * The returned buffer is only valid until the next read on the same thread.
+         */
+        public @Nullable ByteBuffer readChunkData(int xzChunk) throws IOException {
+            long offset = chunkOffsets[xzChunk];
+            int size = chunkSizes[xzChunk];
+            if (size == 0 || offset < HEADER_SIZE) return null;
+
+            // the data can't exceed the sectors of this chunk or the end of the file
+            long available = Math.min(size, fileSize - offset);
+            if (available <= 4) return null;
+
+            ByteBuffer data = getReadBuffer((int) available);
+            while (data.hasRemaining()) {
+                if (channel.read(data, offset + data.position()) < 0) break;
+            }
+            if (data.position() <= 4) return null;
+
+            // the first 4 bytes are the exact length of the data that follows
+            int length = data.getInt(0);
+            if (length <= 0) return null;
+            if (length > data.position() - 4) length = data.position() - 4;
+
+            return data.slice(4, length);
+        }
+
+        public boolean isValid(@Nullable BasicFileAttributes attributes) {
+            return
+                    attributes != null &&
+                    channel.isOpen() &&
+                    lastModified == attributes.lastModifiedTime().toMillis() &&
+                    fileSize == attributes.size();
+        }
+
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        public static RegionFile open(Path regionFile, BasicFileAttributes attributes) throws IOException {
+            FileChannel channel = FileChannel.open(regionFile, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining()) {
+                    if (channel.read(header, header.position()) < 0) break;
+                }
+                header.flip();
+                return new RegionFile(channel, attributes.lastModifiedTime().toMillis(), attributes.size(), header);
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
 
-        do {
-            int read = src.read(bb);
-            if (read < 0)
-                // zero out all the remaining data from the buffer
-                while (bb.remaining() > 0)
-                    bb.put((byte) 0);
-        } while (bb.remaining() > 0);
     }
 
 }
@@ -0,0 +1,278 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.map.hires;
+
+import org.junit.jupiter.api.Test;
+
+import static de.bluecolored.bluemap.core.map.hires.TileModel.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TileModelFaceMergerTest {
+
+    private static final int SIZE = 16;
+    private static final float Y = 64;
+
+    @Test
+    public void testMergedFacesCoverTheSameArea() {
+        TileModel model = new TileModel(10);
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                addTopFace(model, x, z, material(x, z), sunlight(x, z), ao(x, z));
+            }
+        }
+        int originalSize = model.size();
+
+        TileModelFaceMerger.merge(model);
+
+        assertTrue(model.size() < originalSize / 4, "Expected merged model to have a lot less faces");
+
+        // every point of the original faces is covered exactly once by a face with the same attributes
+        // and the same (repeated) texture-coordinates
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                for (float fx : new float[]{ 0.13f, 0.5f, 0.87f }) {
+                    for (float fz : new float[]{ 0.21f, 0.64f, 0.92f }) {
+                        assertCovered(model, x, z, fx, fz);
+                    }
+                }
+            }
+        }
+
+        // the total area didn't change
+        float area = 0;
+        for (int face = 0; face < model.size(); face++) area += Math.abs(signedArea(model, face)) / 2;
+        assertEquals(SIZE * SIZE, area, 0.0001f);
+    }
+
+    @Test
+    public void testUnmergeableFacesAreKept() {
+        TileModel model = new TileModel(10);
+        for (int x = 0; x < 4; x++) {
+            int face = addTopFace(model, x, 0, 1, 15, 1f);
+            model.setUvs(face, 0, 0, 0, 0.5f, 0.5f, 0.5f);
+            model.setUvs(face + 1, 0, 0, 0.5f, 0.5f, 0.5f, 0);
+        }
+
+        TileModelFaceMerger.merge(model);
+
+        assertEquals(8, model.size());
+    }
+
+    @Test
+    public void testMirroredAndRotatedUvsOnVerticalPlanes() {
+        // u = c[0] + c[1] * a + c[2] * b, v = c[3] + c[4] * a + c[5] * b, with a along y and b along z
+        int[][] mappings = {
+                { 0, 1, 0, 0, 0, 1 }, // unchanged
+                { 1, -1, 0, 0, 0, 1 }, // mirrored
+                { 1, 0, -1, 0, 1, 0 }, // rotated 90 degrees
+                { 1, -1, 0, 1, 0, -1 }, // rotated 180 degrees
+                { 0, 0, 1, 1, -1, 0 }, // rotated 270 degrees
+                { 1, 0, -1, 1, -1, 0 } // rotated and mirrored
+        };
+
+        TileModel model = new TileModel(10);
+        for (int x = 0; x < mappings.length; x++) {
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    addSideFace(model, x, y, z, mappings[x]);
+                }
+            }
+        }
+        int originalSize = model.size();
+
+        TileModelFaceMerger.merge(model);
+
+        assertEquals(originalSize / 16, model.size(), "Expected each plane to be merged into a single quad");
+
+        // the texture-coordinates wrapped like the shader does are the same as before merging
+        for (int x = 0; x < mappings.length; x++) {
+            int[] c = mappings[x];
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    for (float fa : new float[]{ 0.13f, 0.5f, 0.87f }) {
+                        for (float fb : new float[]{ 0.21f, 0.64f, 0.92f }) {
+                            float[] uv = interpolateSideUv(model, x, y + fa, z + fb);
+                            assertEquals(c[0] + c[1] * fa + c[2] * fb, shaderWrap(uv[0]), 0.0001f);
+                            assertEquals(c[3] + c[4] * fa + c[5] * fb, shaderWrap(uv[1]), 0.0001f);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static int material(int x, int z) {
+        return x < SIZE / 2 ? 1 : 2;
+    }
+
+    private static int sunlight(int x, int z) {
+        return x == 3 && z == 5 ? 7 : 15;
+    }
+
+    private static float ao(int x, int z) {
+        return z == 9 && x > 10 ? 0.5f : 1f;
+    }
+
+    private static int addTopFace(TileModel model, int x, int z, int material, int sunlight, float ao) {
+        int face = model.add(2);
+        model.setPositions(face,
+                x, Y, z,
+                x, Y, z + 1,
+                x + 1, Y, z + 1
+        );
+        model.setPositions(face + 1,
+                x, Y, z,
+                x + 1, Y, z + 1,
+                x + 1, Y, z
+        );
+        model.setUvs(face, 0, 0, 0, 1, 1, 1);
+        model.setUvs(face + 1, 0, 0, 1, 1, 1, 0);
+
+        for (int f = face; f < face + 2; f++) {
+            model.setAOs(f, ao, ao, ao);
+            model.setColor(f, 1f, 0.5f, 0.25f);
+            model.setSunlight(f, sunlight);
+            model.setBlocklight(f, 0);
+            model.setMaterialIndex(f, material);
+        }
+
+        return face;
+    }
+
+    private static void addSideFace(TileModel model, int x, int y, int z, int[] c) {
+        int face = model.add(2);
+        model.setPositions(face,
+                x, y, z,
+                x, y, z + 1,
+                x, y + 1, z + 1
+        );
+        model.setPositions(face + 1,
+                x, y, z,
+                x, y + 1, z + 1,
+                x, y + 1, z
+        );
+        model.setUvs(face,
+                c[0], c[3],
+                c[0] + c[2], c[3] + c[5],
+                c[0] + c[1] + c[2], c[3] + c[4] + c[5]
+        );
+        model.setUvs(face + 1,
+                c[0], c[3],
+                c[0] + c[1] + c[2], c[3] + c[4] + c[5],
+                c[0] + c[1], c[3] + c[4]
+        );
+
+        for (int f = face; f < face + 2; f++) {
+            model.setAOs(f, 1f, 1f, 1f);
+            model.setColor(f, 1f, 1f, 1f);
+            model.setSunlight(f, 15);
+            model.setBlocklight(f, 0);
+            model.setMaterialIndex(f, 1);
+        }
+    }
+
+    /**
+     * Returns the interpolated uv of the only face on the plane x that covers the point (y, z)
+     */
+    private static float[] interpolateSideUv(TileModel model, int x, float py, float pz) {
+        float[] result = null;
+        for (int face = 0; face < model.size(); face++) {
+            int p = face * FI_POSITION;
+            float[] pos = model.position;
+            if (pos[p] != x || pos[p + 3] != x || pos[p + 6] != x) continue;
+
+            float area = edge(pos[p + 1], pos[p + 2], pos[p + 4], pos[p + 5], pos[p + 7], pos[p + 8]);
+            float w0 = edge(pos[p + 4], pos[p + 5], pos[p + 7], pos[p + 8], py, pz) / area;
+            float w1 = edge(pos[p + 7], pos[p + 8], pos[p + 1], pos[p + 2], py, pz) / area;
+            float w2 = 1 - w0 - w1;
+            if (w0 < 0 || w1 < 0 || w2 < 0) continue;
+
+            assertNull(result, "Point " + x + ", " + py + ", " + pz + " is covered more than once");
+            int t = face * FI_UV;
+            float[] uv = model.uv;
+            result = new float[]{
+                    w0 * uv[t] + w1 * uv[t + 2] + w2 * uv[t + 4],
+                    w0 * uv[t + 1] + w1 * uv[t + 3] + w2 * uv[t + 5]
+            };
+        }
+
+        assertNotNull(result, "Point " + x + ", " + py + ", " + pz + " is not covered");
+        return result;
+    }
+
+    /**
+     * The uv-wrapping of the hires fragment-shader
+     */
+    private static float shaderWrap(float uv) {
+        return uv - Math.max((float) Math.ceil(uv) - 1f, 0f) - Math.min((float) Math.floor(uv), 0f);
+    }
+
+    private static void assertCovered(TileModel model, int x, int z, float fx, float fz) {
+        float px = x + fx, pz = z + fz;
+        int covering = 0;
+
+        for (int face = 0; face < model.size(); face++) {
+            int p = face * FI_POSITION;
+            float[] pos = model.position;
+            if (pos[p + 1] != Y || pos[p + 4] != Y || pos[p + 7] != Y) continue;
+
+            float area = signedArea(model, face);
+            float w0 = edge(pos[p + 3], pos[p + 5], pos[p + 6], pos[p + 8], px, pz) / area;
+            float w1 = edge(pos[p + 6], pos[p + 8], pos[p], pos[p + 2], px, pz) / area;
+            float w2 = 1 - w0 - w1;
+            if (w0 < 0 || w1 < 0 || w2 < 0) continue;
+            covering++;
+
+            assertEquals(material(x, z), model.materialIndex[face]);
+            assertEquals(sunlight(x, z), model.sunlight[face]);
+            assertEquals(0, model.blocklight[face]);
+            for (int i = 0; i < FI_AO; i++)
+                assertEquals(ao(x, z), model.ao[face * FI_AO + i]);
+            assertEquals(1f, model.color[face * FI_COLOR]);
+            assertEquals(0.5f, model.color[face * FI_COLOR + 1]);
+            assertEquals(0.25f, model.color[face * FI_COLOR + 2]);
+
+            int t = face * FI_UV;
+            float[] uv = model.uv;
+            float u = w0 * uv[t] + w1 * uv[t + 2] + w2 * uv[t + 4];
+            float v = w0 * uv[t + 1] + w1 * uv[t + 3] + w2 * uv[t + 5];
+            assertEquals(fx, u - (float) Math.floor(u), 0.0001f);
+            assertEquals(fz, v - (float) Math.floor(v), 0.0001f);
+        }
+
+        assertEquals(1, covering, "Point " + px + ", " + pz + " is covered " + covering + " times");
+    }
+
+    private static float signedArea(TileModel model, int face) {
+        int p = face * FI_POSITION;
+        float[] pos = model.position;
+        return edge(pos[p], pos[p + 2], pos[p + 3], pos[p + 5], pos[p + 6], pos[p + 8]);
+    }
+
+    private static float edge(float ax, float az, float bx, float bz, float px, float pz) {
+        return (bx - ax) * (pz - az) - (bz - az) * (px - ax);
+    }
+
+}
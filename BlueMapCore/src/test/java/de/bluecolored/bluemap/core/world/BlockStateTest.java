@@ -30,8 +30,7 @@
 import java.util.HashMap;
 import java.util.Map;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class BlockStateTest {
 
@@ -87,6 +86,42 @@ public void testFromString() {
         assertEquals("testVal2", blockState.getProperties().get("testProp2"));
     }
 
+    @Test
+    public void testInternedEquality() {
+        BlockState blockState = new BlockState("somemod:internblock", mapOf("testProp", "testVal", "testProp2", "testVal2"));
+        BlockState interned = new BlockState("somemod:internblock", mapOf("testProp2", "testVal2", "testProp", "testVal")).intern();
+
+        assertEquals(interned, blockState);
+        assertEquals(blockState, interned);
+        assertEquals(interned.hashCode(), blockState.hashCode());
+        assertEquals(interned.getId(), blockState.getId());
+
+        assertSame(interned, blockState.intern());
+        assertSame(interned, BlockState.byId(interned.getId()));
+        assertSame(interned, BlockState.fromString("somemod:internblock[testProp=testVal,testProp2=testVal2]"));
+    }
+
+    @Test
+    public void testDistinctIds() {
+        BlockState blockState = BlockState.fromString("somemod:idblock[testProp=testVal]");
+        BlockState otherProperty = BlockState.fromString("somemod:idblock[testProp=otherVal]");
+        BlockState noProperty = BlockState.fromString("somemod:idblock");
+        BlockState otherBlock = BlockState.fromString("somemod:otheridblock[testProp=testVal]");
+
+        assertNotEquals(blockState, otherProperty);
+        assertNotEquals(blockState, noProperty);
+        assertNotEquals(blockState, otherBlock);
+        assertNotEquals(blockState, new BlockState("somemod:idblock", mapOf("testProp", "otherVal")));
+
+        assertNotEquals(blockState.getId(), otherProperty.getId());
+        assertNotEquals(blockState.getId(), noProperty.getId());
+        assertNotEquals(blockState.getId(), otherBlock.getId());
+        assertNotEquals(otherProperty.getId(), noProperty.getId());
+        assertNotEquals(otherProperty.getId(), otherBlock.getId());
+        assertNotEquals(noProperty.getId(), otherBlock.getId());
+        assertTrue(BlockState.getIdCount() > otherBlock.getId());
+    }
+
     private <L, V> Map<L, V> mapOf(L key, V value) {
         Map<L, V> map = new HashMap<>();
         map.put(key, value);
@@ -0,0 +1,244 @@
+/*
+ * This file is part of BlueMap, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) Blue (Lukas Rieger) <https://bluecolored.de>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package de.bluecolored.bluemap.core.world.mca.chunk;
+
+import de.bluecolored.bluemap.core.resources.pack.datapack.DataPack;
+import de.bluecolored.bluemap.core.storage.compression.Compression;
+import de.bluecolored.bluemap.core.world.Chunk;
+import de.bluecolored.bluemap.core.world.LightData;
+import de.bluecolored.bluemap.core.world.mca.MCAWorld;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CachedChunkTest {
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_LONG_ARRAY = 12;
+
+    private static final String[][] BLOCK_PALETTE = {
+            { "minecraft:air" },
+            { "minecraft:stone" },
+            { "minecraft:grass_block", "snowy", "false" },
+            { "minecraft:oak_log", "axis", "y" },
+            { "minecraft:water", "level", "0" }
+    };
+
+    @TempDir
+    Path worldFolder;
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        MCAWorld world = createWorld();
+        Chunk chunk = world.getChunkLoader().load(ByteBuffer.wrap(createChunkNbt()), Compression.NONE);
+        assertInstanceOf(Chunk_1_18.class, chunk);
+        assertTrue(ChunkDiskCache.isCacheable(chunk));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CachedChunk.write(chunk, new DataOutputStream(bytes));
+        Chunk cached = CachedChunk.read(world, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(chunk.isGenerated(), cached.isGenerated());
+        assertEquals(chunk.hasLightData(), cached.hasLightData());
+        assertEquals(chunk.getInhabitedTime(), cached.getInhabitedTime());
+        assertEquals(chunk.hasWorldSurfaceHeights(), cached.hasWorldSurfaceHeights());
+        assertEquals(chunk.hasOceanFloorHeights(), cached.hasOceanFloorHeights());
+
+        int minY = chunk.getMinY(0, 0), maxY = chunk.getMaxY(0, 0);
+        assertEquals(minY, cached.getMinY(0, 0));
+        assertEquals(maxY, cached.getMaxY(0, 0));
+
+        for (int sectionY = (minY >> 4) - 1; sectionY <= (maxY >> 4) + 1; sectionY++)
+            assertEquals(chunk.getSectionOccupancy(sectionY), cached.getSectionOccupancy(sectionY));
+
+        LightData light = new LightData(0, 0), cachedLight = new LightData(0, 0);
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                assertEquals(chunk.getWorldSurfaceY(x, z), cached.getWorldSurfaceY(x, z));
+                assertEquals(chunk.getOceanFloorY(x, z), cached.getOceanFloorY(x, z));
+                assertEquals(chunk.getMaxNonAirY(x, z), cached.getMaxNonAirY(x, z));
+                assertEquals(chunk.getMinNonAirY(x, z), cached.getMinNonAirY(x, z));
+
+                // including the blocks above and below the stored sections
+                for (int y = minY - 16; y <= maxY + 16; y++) {
+                    assertEquals(chunk.getBlockState(x, y, z), cached.getBlockState(x, y, z));
+                    assertEquals(chunk.getBiome(x, y, z).getKey(), cached.getBiome(x, y, z).getKey());
+
+                    chunk.getLightData(x, y, z, light);
+                    cached.getLightData(x, y, z, cachedLight);
+                    assertEquals(light.getSkyLight(), cachedLight.getSkyLight());
+                    assertEquals(light.getBlockLight(), cachedLight.getBlockLight());
+                }
+            }
+        }
+    }
+
+    private MCAWorld createWorld() throws IOException, InterruptedException {
+        // an empty level.dat, the world falls back to the default overworld
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(worldFolder.resolve("level.dat"))))) {
+            out.writeByte(TAG_COMPOUND);
+            out.writeUTF("");
+            out.writeByte(TAG_END);
+        }
+
+        Path biomeFolder = Files.createDirectories(worldFolder.resolve("datapack/data/minecraft/worldgen/biome"));
+        Files.writeString(biomeFolder.resolve("plains.json"), "{\"temperature\": 0.8, \"downfall\": 0.4}", StandardCharsets.UTF_8);
+        Files.writeString(biomeFolder.resolve("desert.json"), "{\"temperature\": 2.0, \"downfall\": 0.0}", StandardCharsets.UTF_8);
+
+        DataPack dataPack = new DataPack(15);
+        dataPack.loadResources(List.of(worldFolder.resolve("datapack")));
+
+        return MCAWorld.load(worldFolder, DataPack.DIMENSION_OVERWORLD, dataPack);
+    }
+
+    /**
+     * A 1.20 chunk with a mixed section, an air-only section, a missing section and a sparse section.
+     */
+    private static byte[] createChunkNbt() throws IOException {
+        Random random = new Random(0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(TAG_COMPOUND);
+        out.writeUTF("");
+        tag(out, TAG_INT, "DataVersion").writeInt(3465);
+        tag(out, TAG_STRING, "Status").writeUTF("minecraft:full");
+        tag(out, TAG_LONG, "InhabitedTime").writeLong(1234);
+
+        int[] worldSurface = new int[256], oceanFloor = new int[256];
+        for (int i = 0; i < 256; i++) {
+            worldSurface[i] = 60 + 64 + random.nextInt(20);
+            oceanFloor[i] = worldSurface[i] - random.nextInt(5);
+        }
+        tag(out, TAG_COMPOUND, "Heightmaps");
+        longArray(tag(out, TAG_LONG_ARRAY, "WORLD_SURFACE"), pack(worldSurface, 9));
+        longArray(tag(out, TAG_LONG_ARRAY, "OCEAN_FLOOR"), pack(oceanFloor, 9));
+        out.writeByte(TAG_END);
+
+        tag(out, TAG_LIST, "sections");
+        out.writeByte(TAG_COMPOUND);
+        out.writeInt(3);
+        section(out, random, -1, 5, 1.0);
+        section(out, random, 0, 1, 0);
+        section(out, random, 4, 3, 0.1);
+
+        out.writeByte(TAG_END);
+        return bytes.toByteArray();
+    }
+
+    private static void section(DataOutputStream out, Random random, int y, int paletteSize, double density) throws IOException {
+        tag(out, TAG_BYTE, "Y").writeByte(y);
+
+        tag(out, TAG_COMPOUND, "block_states");
+        tag(out, TAG_LIST, "palette");
+        out.writeByte(TAG_COMPOUND);
+        out.writeInt(paletteSize);
+        for (int i = 0; i < paletteSize; i++) {
+            String[] state = BLOCK_PALETTE[i];
+            tag(out, TAG_STRING, "Name").writeUTF(state[0]);
+            if (state.length > 1) {
+                tag(out, TAG_COMPOUND, "Properties");
+                tag(out, TAG_STRING, state[1]).writeUTF(state[2]);
+                out.writeByte(TAG_END);
+            }
+            out.writeByte(TAG_END);
+        }
+        if (paletteSize > 1) {
+            int[] blocks = new int[4096];
+            for (int i = 0; i < blocks.length; i++)
+                blocks[i] = random.nextDouble() < density ? random.nextInt(paletteSize) : 0;
+            longArray(tag(out, TAG_LONG_ARRAY, "data"), pack(blocks, 4));
+        }
+        out.writeByte(TAG_END);
+
+        tag(out, TAG_COMPOUND, "biomes");
+        tag(out, TAG_LIST, "palette");
+        out.writeByte(TAG_STRING);
+        out.writeInt(2);
+        out.writeUTF("minecraft:plains");
+        out.writeUTF("minecraft:desert");
+        int[] biomes = new int[64];
+        for (int i = 0; i < biomes.length; i++)
+            biomes[i] = random.nextInt(2);
+        longArray(tag(out, TAG_LONG_ARRAY, "data"), pack(biomes, 1));
+        out.writeByte(TAG_END);
+
+        // air-only sections have no light-data
+        if (paletteSize > 1) {
+            byte[] light = new byte[2048];
+            random.nextBytes(light);
+            byteArray(tag(out, TAG_BYTE_ARRAY, "BlockLight"), light);
+            random.nextBytes(light);
+            byteArray(tag(out, TAG_BYTE_ARRAY, "SkyLight"), light);
+        }
+
+        out.writeByte(TAG_END);
+    }
+
+    private static DataOutputStream tag(DataOutputStream out, byte type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+        return out;
+    }
+
+    private static void longArray(DataOutputStream out, long[] data) throws IOException {
+        out.writeInt(data.length);
+        for (long value : data) out.writeLong(value);
+    }
+
+    private static void byteArray(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Packs the values like minecraft does since 1.16 (values don't span across multiple longs)
+     */
+    private static long[] pack(int[] values, int bitsPerValue) {
+        int valuesPerLong = 64 / bitsPerValue;
+        long[] data = new long[(values.length + valuesPerLong - 1) / valuesPerLong];
+        for (int i = 0; i < values.length; i++)
+            data[i / valuesPerLong] |= (long) values[i] << (i % valuesPerLong) * bitsPerValue;
+        return data;
+    }
+
+}
@@ -39,6 +39,7 @@
 import de.bluecolored.bluemap.common.rendermanager.RenderManager;
 import de.bluecolored.bluemap.common.rendermanager.RenderTask;
 import de.bluecolored.bluemap.common.web.*;
+import de.bluecolored.bluemap.common.web.http.HttpRequestExecutor;
 import de.bluecolored.bluemap.common.web.http.HttpRequestHandler;
 import de.bluecolored.bluemap.common.web.http.HttpServer;
 import de.bluecolored.bluemap.core.BlueMap;
@@ -262,7 +263,11 @@ public void startWebserver(BlueMapService blueMap, boolean verbose) throws IOExc
 
         try {
             //noinspection resource
-            HttpServer webServer = new HttpServer(handler);
+            HttpServer webServer = new HttpServer(handler, new HttpRequestExecutor(
+                    config.resolveRequestHandlerThreadCount(),
+                    config.getRequestQueueSize(),
+                    config.isVirtualThreads()
+            ));
             webServer.bind(new InetSocketAddress(
                     config.resolveIp(),
                     config.getPort()